@@ -0,0 +1,93 @@
+package text.file.indexing.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Writes a synthetic corpus whose term frequencies follow Zipf's law like natural language: the term of rank
+ * {@code r} occurs with a probability proportional to {@code 1 / r^exponent}, so a few terms occur in almost every
+ * file and most terms in very few. The same arguments always produce the same corpus.
+ */
+public final class CorpusGenerator {
+
+    private static final int WORDS_PER_LINE = 16;
+
+    private final double[] cumulativeProbabilities;
+
+    /**
+     * @param vocabularySize the number of distinct terms
+     * @param exponent       the exponent of the distribution, about 1 for natural language
+     */
+    public CorpusGenerator(int vocabularySize, double exponent) {
+        if (vocabularySize < 1) {
+            throw new IllegalArgumentException("vocabularySize must be positive");
+        }
+        cumulativeProbabilities = new double[vocabularySize];
+        double sum = 0;
+        for (int rank = 1; rank <= vocabularySize; rank++) {
+            sum += 1 / Math.pow(rank, exponent);
+            cumulativeProbabilities[rank - 1] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            cumulativeProbabilities[i] /= sum;
+        }
+    }
+
+    /**
+     * Returns the term of the rank, {@code 1} being the most frequent one.
+     */
+    public String term(int rank) {
+        if (rank < 1 || rank > cumulativeProbabilities.length) {
+            throw new IllegalArgumentException("rank must be in [1, " + cumulativeProbabilities.length + "]");
+        }
+        return "term" + rank;
+    }
+
+    /**
+     * Writes {@code fileCount} files of about {@code fileSize} bytes each to a new temporary directory.
+     */
+    public Path writeCorpus(int fileCount, int fileSize, long seed) throws IOException {
+        Path directory = Files.createTempDirectory("corpus");
+        for (int i = 0; i < fileCount; i++) {
+            writeFile(directory.resolve("file" + i + ".txt"), fileSize, seed * 31 + i);
+        }
+        return directory;
+    }
+
+    /**
+     * Writes one file of about {@code fileSize} bytes, replacing its content.
+     */
+    public Path writeFile(Path file, int fileSize, long seed) throws IOException {
+        return Files.writeString(file, content(fileSize, seed));
+    }
+
+    /**
+     * Returns about {@code size} bytes of text: lines of words drawn from the distribution.
+     */
+    public String content(int size, long seed) {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder(size + 16);
+        for (int word = 1; content.length() < size; word++) {
+            content.append(term(nextRank(random))).append(word % WORDS_PER_LINE == 0 ? '\n' : ' ');
+        }
+        return content.toString();
+    }
+
+    private int nextRank(Random random) {
+        int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        return Math.min(index < 0 ? -index : index + 1, cumulativeProbabilities.length);
+    }
+
+    public static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package text.file.indexing.engine.core.index;
+
+import org.openjdk.jmh.annotations.*;
+import text.file.indexing.engine.CorpusGenerator;
+import text.file.indexing.engine.core.Token;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bulk indexing of a whole Zipfian corpus by {@link SimpleTextFileIndexer#indexFiles}, into a new
+ * index every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexingBenchmark {
+
+    @Param({"InvertedIndex", "CompactInvertedIndex"})
+    public String index;
+
+    @Param({"1000", "10000"})
+    public int fileCount;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    @Param({"50000"})
+    public int vocabularySize;
+
+    private Path corpus;
+
+    private SimpleTextFileIndexer indexer;
+
+    @Setup(Level.Trial)
+    public void writeCorpus() throws IOException {
+        corpus = new CorpusGenerator(vocabularySize, 1.0).writeCorpus(fileCount, fileSize, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void newIndexer() {
+        indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), newIndex(index));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        CorpusGenerator.deleteDirectory(corpus);
+    }
+
+    @Benchmark
+    public SimpleTextFileIndexer indexFiles() {
+        indexer.indexFiles(List.of(corpus));
+        return indexer;
+    }
+
+    static Index newIndex(String name) {
+        return switch (name) {
+            case "InvertedIndex" -> new InvertedIndex();
+            case "CompactInvertedIndex" -> new CompactInvertedIndex();
+            case "PositionalCompactInvertedIndex" -> new CompactInvertedIndex(true);
+            default -> throw new IllegalArgumentException("Unknown index " + name);
+        };
+    }
+}
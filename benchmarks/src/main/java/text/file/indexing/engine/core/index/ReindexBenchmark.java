@@ -0,0 +1,116 @@
+package text.file.indexing.engine.core.index;
+
+import org.openjdk.jmh.annotations.*;
+import text.file.indexing.engine.CorpusGenerator;
+import text.file.indexing.engine.core.Token;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SimpleTextFileIndexer#reIndexFile} of one file of an indexed corpus: with a new content, with the
+ * same content rewritten, which is recognized by its checksum, and untouched, which is recognized by its
+ * fingerprint. The file is rewritten before every invocation, outside of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReindexBenchmark {
+
+    @Param({"InvertedIndex", "CompactInvertedIndex", "PositionalCompactInvertedIndex"})
+    public String index;
+
+    @Param({"4096", "262144"})
+    public int fileSize;
+
+    private CorpusGenerator generator;
+
+    private Path corpus;
+
+    private Path file;
+
+    private SimpleTextFileIndexer indexer;
+
+    @Setup(Level.Trial)
+    public void indexCorpus() throws IOException {
+        generator = new CorpusGenerator(50_000, 1.0);
+        corpus = generator.writeCorpus(1000, 4096, 42);
+        file = generator.writeFile(corpus.resolve("reindexed.txt"), fileSize, 0);
+        indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), IndexingBenchmark.newIndex(index));
+        indexer.indexFiles(List.of(corpus));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        CorpusGenerator.deleteDirectory(corpus);
+    }
+
+    /**
+     * Alternates the content of the file between two versions which differ in a tenth of their lines.
+     */
+    @State(Scope.Benchmark)
+    public static class ChangedContent {
+
+        private String[] versions;
+
+        private int version;
+
+        @Setup(Level.Trial)
+        public void generateVersions(ReindexBenchmark benchmark) {
+            String content = benchmark.generator.content(benchmark.fileSize, 0);
+            String[] lines = content.split("\n", -1);
+            String edited = benchmark.generator.content(benchmark.fileSize, 1);
+            String[] editedLines = edited.split("\n", -1);
+            for (int i = 0; i < Math.min(lines.length, editedLines.length); i += 10) {
+                lines[i] = editedLines[i];
+            }
+            versions = new String[]{content, String.join("\n", lines)};
+        }
+
+        @Setup(Level.Invocation)
+        public void writeNextVersion(ReindexBenchmark benchmark) throws IOException {
+            version ^= 1;
+            Files.writeString(benchmark.file, versions[version]);
+        }
+    }
+
+    /**
+     * Rewrites the file with its current content, which changes its modification time only.
+     */
+    @State(Scope.Benchmark)
+    public static class RewrittenContent {
+
+        private String content;
+
+        @Setup(Level.Iteration)
+        public void readContent(ReindexBenchmark benchmark) throws IOException {
+            content = Files.readString(benchmark.file);
+        }
+
+        @Setup(Level.Invocation)
+        public void rewrite(ReindexBenchmark benchmark) throws IOException {
+            Files.writeString(benchmark.file, content);
+        }
+    }
+
+    @Benchmark
+    public void reIndexChangedFile(ChangedContent content) {
+        indexer.reIndexFile(file);
+    }
+
+    @Benchmark
+    public void reIndexRewrittenFile(RewrittenContent content) {
+        indexer.reIndexFile(file);
+    }
+
+    @Benchmark
+    public void reIndexUntouchedFile() {
+        indexer.reIndexFile(file);
+    }
+}
@@ -0,0 +1,55 @@
+package text.file.indexing.engine.core.index;
+
+import org.openjdk.jmh.annotations.*;
+import text.file.indexing.engine.CorpusGenerator;
+import text.file.indexing.engine.core.Token;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency distribution of {@link SimpleTextFileIndexer#searchFiles} for terms of decreasing frequency
+ * in a Zipfian corpus: the term of rank 1 occurs in every file, the term of rank 10000 in a few.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"InvertedIndex", "CompactInvertedIndex"})
+    public String index;
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int termRank;
+
+    private Path corpus;
+
+    private SimpleTextFileIndexer indexer;
+
+    private String term;
+
+    @Setup(Level.Trial)
+    public void indexCorpus() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(50_000, 1.0);
+        corpus = generator.writeCorpus(10_000, 2048, 42);
+        indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), IndexingBenchmark.newIndex(index));
+        indexer.indexFiles(List.of(corpus));
+        term = generator.term(termRank);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        CorpusGenerator.deleteDirectory(corpus);
+    }
+
+    @Benchmark
+    public Set<Path> searchFiles() {
+        return indexer.searchFiles(term);
+    }
+}
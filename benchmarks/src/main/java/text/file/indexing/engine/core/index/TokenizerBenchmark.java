@@ -0,0 +1,75 @@
+package text.file.indexing.engine.core.index;
+
+import org.openjdk.jmh.annotations.*;
+import text.file.indexing.engine.core.Token;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming {@link Tokenizer} with the former {@code String.split} based tokenization
+ * on one file of random words. Run with {@code java -jar target/benchmarks.jar Tokenizer -prof gc}
+ * to also compare the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    @Param({"\\s+", "[,;\\s]+", "\\s*[,;]\\s*|\\s+"})
+    public String regex;
+
+    private Path file;
+
+    private Token token;
+
+    private Tokenizer tokenizer;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 20_000; line++) {
+            for (int word = 0; word < 12; word++) {
+                text.append(word == 0 ? "" : random.nextInt(8) == 0 ? ", " : " ");
+                text.append(random.nextBoolean() ? "Word" : "word").append(random.nextInt(5_000));
+            }
+            text.append('\n');
+        }
+        file = Files.createTempFile("tokenizer-benchmark", ".txt");
+        Files.writeString(file, text);
+        token = new Token(regex);
+        tokenizer = Tokenizer.forToken(token);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<String> streamingTokenizer() throws IOException {
+        return TermReader.readTerms(file, tokenizer, () -> false);
+    }
+
+    @Benchmark
+    public Set<String> splitTokenizer() throws IOException {
+        Set<String> terms = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                terms.addAll(Arrays.stream(line.split(token.token()))
+                        .map(String::toLowerCase)
+                        .toList());
+            }
+        }
+        return terms;
+    }
+}
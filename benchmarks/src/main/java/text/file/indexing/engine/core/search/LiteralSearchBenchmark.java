@@ -0,0 +1,108 @@
+package text.file.indexing.engine.core.search;
+
+import org.openjdk.jmh.annotations.*;
+import text.file.indexing.engine.CorpusGenerator;
+import text.file.indexing.engine.core.index.TextFileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares {@link BoyerMooreTextFileSearcher} with {@link LiteralTextFileSearcher}, scalar and with the Vector API,
+ * verifying every file of a random text for patterns of several lengths over alphabets of several sizes: the smaller
+ * the alphabet, the shorter the shifts and the more candidate offsets. The vectorized variant needs the library
+ * installed with {@code mvn -Pvector install}, otherwise it falls back to the scalar search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LiteralSearchBenchmark {
+
+    private static final int FILE_COUNT = 8;
+
+    private static final int FILE_SIZE = 1024 * 1024;
+
+    @Param({"4", "16", "64"})
+    public int patternLength;
+
+    @Param({"4", "26", "90"})
+    public int alphabetSize;
+
+    private Path directory;
+
+    private String pattern;
+
+    private BoyerMooreTextFileSearcher boyerMooreSearcher;
+
+    private LiteralTextFileSearcher literalSearcher;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        Random random = new Random(42);
+        directory = Files.createTempDirectory("literal-search");
+        List<Path> files = new ArrayList<>();
+        String content = null;
+        for (int i = 0; i < FILE_COUNT; i++) {
+            StringBuilder text = new StringBuilder(FILE_SIZE);
+            while (text.length() < FILE_SIZE) {
+                text.append(text.length() % 80 == 79 ? '\n' : (char) ('!' + random.nextInt(alphabetSize)));
+            }
+            content = text.toString();
+            files.add(Files.writeString(directory.resolve("file" + i + ".txt"), content));
+        }
+        // an occurrence near the end of the last file, on one line
+        int start = content.lastIndexOf('\n', content.length() - 1000) + 1;
+        pattern = content.substring(start, start + patternLength);
+        TextFileIndexer indexer = new AllFilesIndexer(files);
+        boyerMooreSearcher = new BoyerMooreTextFileSearcher(indexer);
+        literalSearcher = new LiteralTextFileSearcher(indexer);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        CorpusGenerator.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public List<PathWithPosition> boyerMoore() {
+        return boyerMooreSearcher.searchPathWithPosition(pattern);
+    }
+
+    @Benchmark
+    public List<PathWithPosition> literal() {
+        return literalSearcher.searchPathWithPosition(pattern);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector",
+            "-Dtext.file.indexing.engine.vectorSearch=true"})
+    public List<PathWithPosition> literalVectorized() {
+        return literalSearcher.searchPathWithPosition(pattern);
+    }
+
+    /**
+     * Returns every file as a candidate, so the searchers verify the same bytes whatever the pattern.
+     */
+    private record AllFilesIndexer(List<Path> files) implements TextFileIndexer {
+
+        @Override
+        public Set<Path> searchFiles(String queryWord) {
+            return Set.copyOf(files);
+        }
+
+        @Override
+        public Stream<Path> searchCandidates(String literal) {
+            return files.stream();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package text.file.indexing.engine.core.search;
+
+import org.openjdk.jmh.annotations.*;
+import text.file.indexing.engine.CorpusGenerator;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Searches many literals of two words, taken from the corpus, in a trigram index: one by one with
+ * {@link LiteralTextFileSearcher}, reading the candidate files once per pattern, and all at once with
+ * {@link AhoCorasickTextFileSearcher}, reading each candidate file once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiPatternSearchBenchmark {
+
+    @Param({"10", "200"})
+    public int patternCount;
+
+    @Param({"500"})
+    public int fileCount;
+
+    @Param({"16384"})
+    public int fileSize;
+
+    private Path directory;
+
+    private List<String> patterns;
+
+    private LiteralTextFileSearcher literalSearcher;
+
+    private AhoCorasickTextFileSearcher ahoCorasickSearcher;
+
+    @Setup(Level.Trial)
+    public void indexCorpus() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(10_000, 1.0);
+        directory = generator.writeCorpus(fileCount, fileSize, 42);
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.toList();
+        }
+        SimpleTextFileIndexer indexer =
+                new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex(false, true));
+        indexer.indexFiles(files);
+        Random random = new Random(7);
+        patterns = new ArrayList<>(patternCount);
+        while (patterns.size() < patternCount) {
+            String[] words = generator.content(fileSize, random.nextLong()).split("\\s+");
+            int word = random.nextInt(words.length - 1);
+            String pattern = words[word] + " " + words[word + 1];
+            if (!patterns.contains(pattern)) {
+                patterns.add(pattern);
+            }
+        }
+        literalSearcher = new LiteralTextFileSearcher(indexer);
+        ahoCorasickSearcher = new AhoCorasickTextFileSearcher(indexer);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        CorpusGenerator.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public Map<String, List<PathWithPosition>> onePatternAtATime() {
+        Map<String, List<PathWithPosition>> results = new LinkedHashMap<>();
+        for (String pattern : patterns) {
+            results.put(pattern, literalSearcher.searchPathWithPosition(pattern));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public Map<String, List<PathWithPosition>> ahoCorasick() {
+        return ahoCorasickSearcher.searchPatterns(patterns);
+    }
+}
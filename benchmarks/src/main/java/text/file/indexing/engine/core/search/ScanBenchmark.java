@@ -0,0 +1,84 @@
+package text.file.indexing.engine.core.search;
+
+import org.openjdk.jmh.annotations.*;
+import text.file.indexing.engine.CorpusGenerator;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the scan throughput of {@link BoyerMooreTextFileSearcher#searchPathWithPosition}: the {@code megabytes}
+ * counter reports the megabytes of candidate files verified per second. The pattern is a frequent term, so most of
+ * the corpus is scanned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Param({"1000"})
+    public int fileCount;
+
+    @Param({"16384", "1048576"})
+    public int fileSize;
+
+    @Param({"1", "10"})
+    public int termRank;
+
+    private Path corpus;
+
+    private BoyerMooreTextFileSearcher searcher;
+
+    private String pattern;
+
+    private double candidateMegabytes;
+
+    @Setup(Level.Trial)
+    public void indexCorpus() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(50_000, 1.0);
+        corpus = generator.writeCorpus(fileCount, fileSize, 42);
+        SimpleTextFileIndexer indexer =
+                new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex());
+        indexer.indexFiles(List.of(corpus));
+        searcher = new BoyerMooreTextFileSearcher(indexer);
+        pattern = generator.term(termRank);
+        candidateMegabytes = indexer.searchCandidates(pattern).mapToLong(ScanBenchmark::size).sum() / (1024.0 * 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        CorpusGenerator.deleteDirectory(corpus);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ScannedBytes {
+
+        public double megabytes;
+    }
+
+    @Benchmark
+    public List<PathWithPosition> searchPathWithPosition(ScannedBytes scanned) {
+        List<PathWithPosition> found = searcher.searchPathWithPosition(pattern);
+        scanned.megabytes += candidateMegabytes;
+        return found;
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package text.file.indexing.engine.watcher;
+
+import org.openjdk.jmh.annotations.*;
+import text.file.indexing.engine.CorpusGenerator;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the latency from writing a file in a watched directory until its content is found by
+ * {@link SimpleTextFileIndexer#searchFiles}: the watch service delivery, the quiet window and the reindex.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WatcherBenchmark {
+
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Param({"10", "200"})
+    public long quietWindowMillis;
+
+    private CorpusGenerator generator;
+
+    private Path directory;
+
+    private SimpleTextFileIndexer indexer;
+
+    private FileSystemWatchServiceWatcher watcher;
+
+    private long change;
+
+    @Setup(Level.Trial)
+    public void startWatching() throws IOException {
+        generator = new CorpusGenerator(50_000, 1.0);
+        directory = generator.writeCorpus(100, 4096, 42);
+        indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex());
+        indexer.indexFiles(List.of(directory));
+        watcher = new FileSystemWatchServiceWatcher(indexer, Duration.ofMillis(quietWindowMillis), 2);
+        watcher.startWatching(List.of(directory));
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (watcher.watchedDirsCount() == 0) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException(directory + " was not registered within 30 seconds");
+            }
+            LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopWatching() throws IOException {
+        watcher.close();
+        CorpusGenerator.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public void writeAndAwaitSearchable() throws IOException {
+        String marker = "marker" + change;
+        Path file = directory.resolve("changed" + change++ % 10 + ".txt");
+        Files.writeString(file, generator.content(4096, change) + marker + "\n");
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (indexer.searchFiles(marker).isEmpty()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException(marker + " was not indexed within 30 seconds");
+            }
+            LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package text.file.indexing.engine.core.search;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * Searches a byte pattern with the Vector API: the first and the last byte of the pattern are compared with the
+ * text at as many consecutive offsets as a vector has lanes, and only the offsets matching both are compared in
+ * full. The offsets left at the end of the text, fewer than a vector, are searched by a {@link HorspoolByteMatcher}.
+ * Built only by the {@code vector} Maven profile, see {@link ByteMatcher}.
+ */
+final class VectorByteMatcher extends ByteMatcher {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final byte[] pattern;
+
+    private final ByteVector firstBytes;
+
+    private final ByteVector lastBytes;
+
+    private final HorspoolByteMatcher tail;
+
+    VectorByteMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+        this.firstBytes = ByteVector.broadcast(SPECIES, pattern[0]);
+        this.lastBytes = ByteVector.broadcast(SPECIES, pattern[pattern.length - 1]);
+        this.tail = new HorspoolByteMatcher(pattern);
+    }
+
+    @Override
+    int indexOf(byte[] text, int from, int to) {
+        int last = pattern.length - 1;
+        int start = from;
+        // the last lane of the block reads the byte at start + lanes - 1 + last
+        for (int bound = to - last - SPECIES.length(); start <= bound; start += SPECIES.length()) {
+            long candidates = ByteVector.fromArray(SPECIES, text, start).eq(firstBytes)
+                    .and(ByteVector.fromArray(SPECIES, text, start + last).eq(lastBytes))
+                    .toLong();
+            while (candidates != 0) {
+                int candidate = start + Long.numberOfTrailingZeros(candidates);
+                if (last < 2 || Arrays.equals(text, candidate + 1, candidate + last, pattern, 1, last)) {
+                    return candidate;
+                }
+                candidates &= candidates - 1;
+            }
+        }
+        return tail.indexOf(text, start, to);
+    }
+}
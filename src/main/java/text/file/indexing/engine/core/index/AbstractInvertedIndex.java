@@ -0,0 +1,666 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.metrics.IndexMetrics;
+import text.file.indexing.engine.utils.PathValidator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.logging.Level.SEVERE;
+import static text.file.indexing.engine.core.index.FileIndexState.*;
+
+/**
+ * Base class of the inverted indexes which keeps the file bookkeeping shared by all posting list layouts.
+ * Files are indexed incrementally: only files in the {@link FileIndexState#PENDING} state are tokenized
+ * by {@link #indexFiles(Token)}, so adding one file costs time proportional to that file.
+ * A forward index keeps the terms of every file, so removing or reindexing a file touches only its own
+ * posting lists instead of the whole vocabulary. The terms are also kept sorted in {@link IndexedTerms}, which
+ * expands prefix, wildcard and fuzzy queries.
+ * <p>
+ * Searches read a consistent snapshot without locking: the postings of the terms a reindex adds are hidden from the
+ * searches started before the new content is published, and the postings of the terms it removes are kept for
+ * them, see {@link VersionClock} and {@link IndexedFile.TermDelta}. A file whose content is unchanged, judged by its
+ * fingerprint and then by the checksum of its content, is not reindexed at all.
+ */
+abstract class AbstractInvertedIndex extends Index {
+
+    private static final Logger LOGGER = Logger.getLogger(AbstractInvertedIndex.class.getName());
+
+    // the coarsest resolution of the modification times of common file systems, FAT
+    private static final long MODIFICATION_TIME_RESOLUTION_MILLIS = 2000;
+
+    // the approximate heap of a file entry with its path, and of a term reference kept by the forward index
+    private static final long FILE_ENTRY_BYTES = 256;
+
+    private static final long FORWARD_POSTING_BYTES = 12;
+
+    private final ConcurrentSkipListMap<Path, IndexedFile> processedPaths;
+
+    private final Set<Path> pendingPaths;
+
+    private final AtomicInteger indexedFilesCount;
+
+    private final AtomicLong skippedReindexes;
+
+    private final IndexedTerms indexedTerms;
+
+    private final VersionClock versions;
+
+    AbstractInvertedIndex() {
+        processedPaths = new ConcurrentSkipListMap<>();
+        pendingPaths = ConcurrentHashMap.newKeySet();
+        indexedFilesCount = new AtomicInteger();
+        skippedReindexes = new AtomicLong();
+        indexedTerms = new IndexedTerms(this::containsTerm);
+        versions = new VersionClock();
+    }
+
+    /**
+     * Adds the file to the posting list of the term, or updates the frequency of the term if the file is present.
+     *
+     * @param frequency the number of occurrences of the term in the file
+     * @return the instance of the term kept by the index, which is then referenced by the forward index
+     */
+    abstract String addPosting(String term, IndexedFile file, int frequency);
+
+    /**
+     * Adds all files to the posting list of the term at once.
+     *
+     * @return the instance of the term kept by the index, which is then referenced by the forward index
+     */
+    String addPostings(String term, FilePostings postings) {
+        String indexedTerm = term;
+        for (int i = 0; i < postings.size(); i++) {
+            indexedTerm = addPosting(term, postings.file(i), postings.frequency(i));
+        }
+        return indexedTerm;
+    }
+
+    /**
+     * Removes the file from the posting list of the term, dropping the posting list once it is empty.
+     */
+    abstract void removePosting(String term, IndexedFile file);
+
+    /**
+     * Returns whether the index has a posting list for the term.
+     */
+    abstract boolean containsTerm(String term);
+
+    /**
+     * Must be called by the implementations once they create the posting list of a new term.
+     */
+    void termAdded(String term) {
+        indexedTerms.add(term);
+    }
+
+    /**
+     * Returns the files containing the term whose entries are visible at the sequence number. The set may be a view
+     * of the postings, which must only be read while the epoch of the sequence number is open.
+     */
+    abstract Set<Path> searchFiles(String term, long sequence);
+
+    Set<Path> searchFiles(String queryWord) {
+        try (VersionClock.ReadEpoch epoch = startRead()) {
+            return searchFiles(queryWord, epoch.sequence());
+        }
+    }
+
+    /**
+     * Evaluates all terms of the query at the same epoch, so a file reindexed meanwhile is matched either as a whole
+     * by its old terms or as a whole by its new ones. The epoch stays open until the stream is exhausted or closed,
+     * as the files of the terms are read lazily.
+     */
+    @Override
+    Stream<Path> search(Query query) {
+        VersionClock.ReadEpoch epoch = startRead();
+        try {
+            Iterator<Path> paths = PathMatches.of(query, term -> searchFiles(term, epoch.sequence()), this::expandTerms)
+                    .stream()
+                    .iterator();
+            Spliterator<Path> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                    Spliterator.DISTINCT | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Path> action) {
+                    if (paths.hasNext()) {
+                        action.accept(paths.next());
+                        return true;
+                    }
+                    epoch.close();
+                    return false;
+                }
+            };
+            epoch.closeWhenUnreachable(spliterator);
+            return StreamSupport.stream(spliterator, false).onClose(epoch::close);
+        } catch (RuntimeException e) {
+            epoch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the epoch of a search, see {@link VersionClock#enter()}.
+     */
+    VersionClock.ReadEpoch startRead() {
+        return versions.enter();
+    }
+
+    @Override
+    List<String> expandTerms(Query.MultiTerm query) {
+        return indexedTerms.expand(query, Query.MultiTerm.MAX_EXPANDED_TERMS);
+    }
+
+    /**
+     * Called once a new file entry is registered, before its content is indexed.
+     */
+    void fileAdded(IndexedFile file) {
+    }
+
+    /**
+     * Called once the postings of a tombstoned file entry are removed and the entry is dropped.
+     */
+    void fileDropped(IndexedFile file) {
+    }
+
+    void reIndexFile(Path path, Token token) {
+        Set<Path> validPaths = PathValidator.getValidPathSet(Set.of(path));
+        for (IndexedFile file : filesUnder(path)) {
+            if (!validPaths.contains(file.path())) {
+                removeFile(file);
+            }
+        }
+        validPaths.forEach(validPath -> reIndexSingleFile(validPath, token));
+        cleanupIndex();
+    }
+
+    private void reIndexSingleFile(Path path, Token token) {
+        IndexedFile file = processedPaths.get(path);
+        if (file == null || file.state() != INDEXED) {
+            registerFile(path);
+            if (pendingPaths.remove(path)) {
+                indexFile(path, token);
+            }
+            return;
+        }
+        IndexedFile next = new IndexedFile(path);
+        if (contentUnchanged(file, next)) {
+            skippedReindexes.incrementAndGet();
+            return;
+        }
+        FileTerms fileTerms = readTerms(next, token, file::isTombstoned);
+        if (fileTerms == null) {
+            removeFile(file);
+            return;
+        }
+        IndexedFile.TermDelta delta = null;
+        synchronized (file) {
+            if (file.isTombstoned()) {
+                return;
+            }
+            if (fileTerms.contentHash() == file.contentHash()) {
+                file.setFingerprint(next.fingerprint(), next.hasRacyFingerprint());
+                skippedReindexes.incrementAndGet();
+                return;
+            }
+            if (file.termDelta() == null) {
+                delta = updateTerms(file, next, fileTerms);
+            }
+        }
+        if (delta != null) {
+            retireTermDelta(file, delta);
+        } else {
+            replaceFile(file, next, fileTerms);
+        }
+        indexedTerms.maybeMerge();
+    }
+
+    /**
+     * Returns whether the content of the indexed file is unchanged, reading the current fingerprint into the new
+     * entry. The fingerprint alone is trusted unless it is racy; otherwise the checksum of the content, computed
+     * without tokenizing it, is compared, and the fingerprint of an unchanged file is updated.
+     */
+    private boolean contentUnchanged(IndexedFile file, IndexedFile next) {
+        try {
+            readFingerprint(next);
+            FileFingerprint indexed = file.fingerprint();
+            if (indexed == null || next.fingerprint().size() != indexed.size()) {
+                return false;
+            }
+            if (next.fingerprint().matches(indexed) && !file.hasRacyFingerprint()) {
+                return true;
+            }
+            if (TermReader.contentHash(next.path()) != file.contentHash()) {
+                return false;
+            }
+        } catch (IOException e) {
+            // reading the content reports the problem
+            return false;
+        }
+        synchronized (file) {
+            if (file.isTombstoned()) {
+                return false;
+            }
+            file.setFingerprint(next.fingerprint(), next.hasRacyFingerprint());
+        }
+        return true;
+    }
+
+    /**
+     * Applies the term diff of the new content to the postings of the entry, while holding its monitor: only the
+     * added terms and the terms whose frequency changed are posted, and the removed ones are retired later.
+     *
+     * @return the published diff
+     */
+    private IndexedFile.TermDelta updateTerms(IndexedFile file, IndexedFile next, FileTerms fileTerms) {
+        TermVector oldTerms = file.terms();
+        Map<String, Integer> removedOrdinals = oldTerms.ordinals();
+        int[] oldOrdinals = new int[fileTerms.terms().size()];
+        Set<String> added = new HashSet<>();
+        for (int i = 0; i < oldOrdinals.length; i++) {
+            Integer ordinal = removedOrdinals.remove(fileTerms.terms().get(i));
+            oldOrdinals[i] = ordinal == null ? -1 : ordinal;
+            if (ordinal == null) {
+                added.add(fileTerms.terms().get(i));
+            }
+        }
+        IndexedFile.TermDelta delta = new IndexedFile.TermDelta(added, Set.copyOf(removedOrdinals.keySet()),
+                file.positions());
+        // the delta hides the added postings until it is published
+        file.setTermDelta(delta);
+        TermVector.Builder terms = new TermVector.Builder(oldOrdinals.length);
+        for (int i = 0; i < oldOrdinals.length; i++) {
+            String term = fileTerms.terms().get(i);
+            int frequency = fileTerms.frequencies()[i];
+            if (oldOrdinals[i] < 0) {
+                terms.add(addPosting(term, file, frequency), frequency);
+            } else {
+                if (oldTerms.frequency(oldOrdinals[i]) != frequency) {
+                    addPosting(term, file, frequency);
+                }
+                terms.add(oldTerms.term(oldOrdinals[i]), frequency);
+            }
+        }
+        file.setTerms(terms.build());
+        file.setFingerprint(next.fingerprint(), next.hasRacyFingerprint());
+        file.setContentHash(fileTerms.contentHash());
+        contentChanged(file, fileTerms);
+        versions.publish(delta::setSequence);
+        return delta;
+    }
+
+    /**
+     * Drops the postings of the removed terms once no search started before the diff was published is still
+     * reading, and the diff itself once no search started before the postings were dropped is still reading.
+     */
+    private void retireTermDelta(IndexedFile file, IndexedFile.TermDelta delta) {
+        versions.retire(delta.sequence(), () -> {
+            synchronized (file) {
+                // the entry may have been retired as a whole meanwhile
+                if (file.termDelta() != delta) {
+                    return;
+                }
+                delta.removed().forEach(term -> removePosting(term, file));
+            }
+            versions.retire(versions.publish(sequence -> {
+            }), () -> {
+                synchronized (file) {
+                    if (file.termDelta() == delta) {
+                        file.setTermDelta(null);
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Replaces the entry of the file by a new one holding the new content, used while a previous diff of the entry
+     * is not settled yet.
+     */
+    private void replaceFile(IndexedFile file, IndexedFile next, FileTerms fileTerms) {
+        fileAdded(next);
+        long sequence;
+        synchronized (file) {
+            if (file.isTombstoned()) {
+                fileDropped(next);
+                return;
+            }
+            synchronized (next) {
+                TermVector.Builder terms = new TermVector.Builder(fileTerms.terms().size());
+                for (int i = 0; i < fileTerms.terms().size(); i++) {
+                    int frequency = fileTerms.frequencies()[i];
+                    terms.add(addPosting(fileTerms.terms().get(i), next, frequency), frequency);
+                }
+                next.setTerms(terms.build());
+                contentChanged(next, fileTerms);
+                next.setState(INDEXED);
+                // the new entry is registered before the old one is tombstoned, so no pending entry can take its place
+                processedPaths.replace(next.path(), file, next);
+                file.setState(TOMBSTONED);
+                sequence = versions.publish(published -> {
+                    next.setVisibleFrom(published);
+                    file.setVisibleUntil(published);
+                });
+            }
+        }
+        retire(file, sequence);
+    }
+
+    void addFilesToIndex(Collection<Path> paths, Token token) {
+        Set<Path> validPaths = PathValidator.getValidPathSet(paths);
+        validPaths.forEach(this::registerFile);
+    }
+
+    /**
+     * Registers the file as pending unless it is already known to the index.
+     *
+     * @return {@code true} if the file was registered
+     */
+    boolean registerFile(Path path) {
+        IndexedFile pending = new IndexedFile(path);
+        synchronized (pending) {
+            IndexedFile file = processedPaths.merge(path, pending,
+                    (current, added) -> current.isTombstoned() ? added : current);
+            if (file != pending) {
+                return false;
+            }
+            fileAdded(file);
+        }
+        pendingPaths.add(path);
+        return true;
+    }
+
+    /**
+     * Takes the file out of the pending queue, so no other thread indexes it.
+     *
+     * @return the pending file, or {@code null} if the file is not pending or is claimed by another thread
+     */
+    IndexedFile claimPendingFile(Path path) {
+        if (!pendingPaths.remove(path)) {
+            return null;
+        }
+        IndexedFile file = processedPaths.get(path);
+        return file != null && file.state() == PENDING ? file : null;
+    }
+
+    @Override
+    IndexingTask indexFilesAsync(Collection<Path> paths, Token token, int parallelism) {
+        return indexFilesAsync(paths, token, parallelism, path -> true);
+    }
+
+    /**
+     * Indexes the discovered files accepted by the filter, as well as all files already pending.
+     */
+    IndexingTask indexFilesAsync(Collection<Path> paths, Token token, int parallelism, Predicate<Path> filter) {
+        return new BulkIndexingPipeline(this, token, parallelism, filter).start(paths);
+    }
+
+    /**
+     * Returns the files registered but not tokenized yet.
+     */
+    List<Path> pendingPaths() {
+        return List.copyOf(pendingPaths);
+    }
+
+    void forEachIndexedFile(Consumer<IndexedFile> action) {
+        processedPaths.values().forEach(file -> {
+            if (file.state() == INDEXED) {
+                action.accept(file);
+            }
+        });
+    }
+
+    /**
+     * Merges the terms of a batch of tokenized files into the shared posting lists
+     * and marks the files as indexed.
+     *
+     * @param termToFiles the files of the batch containing each term
+     * @param files       all files of the batch
+     * @param contents    the content read from every file of the batch
+     */
+    void publish(Map<String, FilePostings> termToFiles, List<IndexedFile> files, List<FileTerms> contents) {
+        Map<IndexedFile, TermVector.Builder> fileToTerms = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            fileToTerms.put(files.get(i), new TermVector.Builder(contents.get(i).terms().size()));
+        }
+        termToFiles.forEach((term, postings) -> {
+            postings.removeTombstoned();
+            if (postings.size() > 0) {
+                String indexedTerm = addPostings(term, postings);
+                for (int i = 0; i < postings.size(); i++) {
+                    fileToTerms.get(postings.file(i)).add(indexedTerm, postings.frequency(i));
+                }
+            }
+        });
+        for (int i = 0; i < files.size(); i++) {
+            IndexedFile file = files.get(i);
+            TermVector terms = fileToTerms.get(file).build();
+            synchronized (file) {
+                if (file.isTombstoned()) {
+                    terms.forEachTerm(term -> removePosting(term, file));
+                } else {
+                    file.setTerms(terms);
+                    contentChanged(file, contents.get(i));
+                    file.setState(INDEXED);
+                    indexedFilesCount.incrementAndGet();
+                    versions.publish(file::setVisibleFrom);
+                }
+            }
+        }
+        indexedTerms.maybeMerge();
+    }
+
+    void indexFiles(Token token) {
+        for (Path path : pendingPaths) {
+            if (pendingPaths.remove(path)) {
+                indexFile(path, token);
+            }
+        }
+    }
+
+    void indexFile(Path path, Token token) {
+        IndexedFile file = processedPaths.get(path);
+        if (file == null || file.state() != PENDING) {
+            return;
+        }
+        FileTerms fileTerms = readTerms(file, token);
+        if (fileTerms == null) {
+            removeFile(file);
+            return;
+        }
+        synchronized (file) {
+            if (file.isTombstoned()) {
+                return;
+            }
+            TermVector.Builder terms = new TermVector.Builder(fileTerms.terms().size());
+            for (int i = 0; i < fileTerms.terms().size(); i++) {
+                int frequency = fileTerms.frequencies()[i];
+                terms.add(addPosting(fileTerms.terms().get(i), file, frequency), frequency);
+            }
+            file.setTerms(terms.build());
+            contentChanged(file, fileTerms);
+            file.setState(INDEXED);
+            indexedFilesCount.incrementAndGet();
+            versions.publish(file::setVisibleFrom);
+        }
+        indexedTerms.maybeMerge();
+    }
+
+    /**
+     * Returns whether the positions of all term occurrences are kept, see {@link IndexedFile#positions()}.
+     */
+    boolean storesPositions() {
+        return false;
+    }
+
+    /**
+     * Returns whether the trigrams of the raw content are collected, see {@link FileTerms#trigrams()}.
+     */
+    boolean indexesTrigrams() {
+        return false;
+    }
+
+    /**
+     * Called while holding the monitor of the file once the content read from it is published,
+     * or with {@code null} once the postings of the removed or replaced entry are removed.
+     */
+    void contentChanged(IndexedFile file, FileTerms fileTerms) {
+        file.setPositions(fileTerms == null ? null : fileTerms.positions());
+    }
+
+    /**
+     * Reads and tokenizes the content of the file.
+     *
+     * @return the content of the file, or {@code null} if the file could not be read
+     */
+    FileTerms readTerms(IndexedFile file, Token token) {
+        return readTerms(file, token, file::isTombstoned);
+    }
+
+    private FileTerms readTerms(IndexedFile file, Token token, BooleanSupplier cancelled) {
+        IndexMetrics metrics = metrics();
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        try {
+            readFingerprint(file);
+            FileTerms fileTerms = TermReader.read(file.path(), Tokenizer.forToken(token), cancelled,
+                    storesPositions(), indexesTrigrams());
+            file.setContentHash(fileTerms.contentHash());
+            if (metrics.isEnabled()) {
+                metrics.fileIndexed(file.fingerprint().size(), fileTerms.length(), System.nanoTime() - start);
+            }
+            return fileTerms;
+        } catch (IOException e) {
+            LOGGER.log(SEVERE, "A problem has occurred while indexing the file.", e);
+        }
+        return null;
+    }
+
+    private static void readFingerprint(IndexedFile file) throws IOException {
+        long readTime = System.currentTimeMillis();
+        FileFingerprint fingerprint = FileFingerprint.read(file.path());
+        file.setFingerprint(fingerprint,
+                fingerprint.lastModified() > readTime - MODIFICATION_TIME_RESOLUTION_MILLIS);
+    }
+
+    /**
+     * Returns the entry of the file, or {@code null} if the file is unknown to the index.
+     */
+    IndexedFile indexedFile(Path path) {
+        return processedPaths.get(path);
+    }
+
+    /**
+     * Returns the number of files whose content is present in the index.
+     */
+    int indexedFilesCount() {
+        return indexedFilesCount.get();
+    }
+
+    int pendingFilesCount() {
+        return pendingPaths.size();
+    }
+
+    @Override
+    long skippedReindexCount() {
+        return skippedReindexes.get();
+    }
+
+    /**
+     * Counts the postings of the forward index and of the posting lists, without the positions.
+     */
+    @Override
+    long estimatedHeapBytes() {
+        return indexedFilesCount() * FILE_ENTRY_BYTES + postingCount() * FORWARD_POSTING_BYTES + postingsHeapBytes();
+    }
+
+    /**
+     * Returns the approximate heap taken by the terms and their posting lists.
+     */
+    abstract long postingsHeapBytes();
+
+    Map<Path, FileFingerprint> fingerprintsUnder(Path path) {
+        Map<Path, FileFingerprint> fingerprints = new HashMap<>();
+        for (IndexedFile file : filesUnder(path)) {
+            if (file.state() == INDEXED && file.fingerprint() != null) {
+                fingerprints.put(file.path(), file.fingerprint());
+            }
+        }
+        return fingerprints;
+    }
+
+    void removeFileFromIndex(Path path) {
+        filesUnder(path).forEach(this::removeFile);
+    }
+
+    void removeFile(IndexedFile file) {
+        long sequence;
+        synchronized (file) {
+            if (file.isTombstoned()) {
+                return;
+            }
+            if (file.state() == INDEXED) {
+                indexedFilesCount.decrementAndGet();
+            }
+            file.setState(TOMBSTONED);
+            sequence = versions.publish(file::setVisibleUntil);
+        }
+        pendingPaths.remove(file.path());
+        retire(file, sequence);
+    }
+
+    /**
+     * Removes the postings of the tombstoned entry and drops it once no search started before the sequence number
+     * is still reading.
+     */
+    private void retire(IndexedFile file, long sequence) {
+        versions.retire(sequence, () -> {
+            synchronized (file) {
+                file.terms().forEachTerm(term -> removePosting(term, file));
+                IndexedFile.TermDelta delta = file.termDelta();
+                if (delta != null) {
+                    delta.removed().forEach(term -> removePosting(term, file));
+                    file.setTermDelta(null);
+                }
+                file.setTerms(TermVector.EMPTY);
+                contentChanged(file, null);
+            }
+            processedPaths.remove(file.path(), file);
+            fileDropped(file);
+        });
+    }
+
+    /**
+     * Returns the files equal to or located under the given path.
+     * Paths are kept sorted, so all candidates are found in one contiguous range starting at the path itself.
+     */
+    private List<IndexedFile> filesUnder(Path path) {
+        String prefix = path.toString();
+        List<IndexedFile> files = new ArrayList<>();
+        for (IndexedFile file : processedPaths.tailMap(path).values()) {
+            if (!file.path().toString().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            if (file.path().startsWith(path)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Removes the postings of the tombstoned entries which were still read by a search when they were tombstoned.
+     */
+    void cleanupIndex() {
+        versions.reclaim();
+    }
+}
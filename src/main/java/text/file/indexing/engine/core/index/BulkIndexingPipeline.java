@@ -0,0 +1,173 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.utils.PathValidator;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Indexes many files in parallel.
+ * A discovery thread first queues the files which are already pending, then walks the given paths and registers
+ * every new file as pending. Files are handed to the workers through a bounded queue, so discovery blocks while
+ * the workers are behind. Every worker reads and tokenizes files into its own local term dictionary and merges it
+ * into the shared index once per batch of files, so the shared posting lists are updated once per term and batch
+ * instead of once per token.
+ */
+final class BulkIndexingPipeline {
+
+    static final int BATCH_SIZE = 256;
+
+    private static final int QUEUE_CAPACITY_PER_WORKER = 1024;
+
+    private static final Path END_OF_FILES = Path.of("");
+
+    private final AbstractInvertedIndex index;
+
+    private final Token token;
+
+    private final int parallelism;
+
+    private final BlockingQueue<Path> discoveredPaths;
+
+    private final Predicate<Path> filter;
+
+    private final IndexingTask task;
+
+    private final AtomicInteger runningWorkers;
+
+    BulkIndexingPipeline(AbstractInvertedIndex index, Token token, int parallelism, Predicate<Path> filter) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.index = index;
+        this.token = token;
+        this.parallelism = parallelism;
+        this.filter = filter;
+        this.discoveredPaths = new ArrayBlockingQueue<>(parallelism * QUEUE_CAPACITY_PER_WORKER);
+        this.task = new IndexingTask();
+        this.runningWorkers = new AtomicInteger(parallelism);
+    }
+
+    IndexingTask start(Collection<Path> paths) {
+        PathValidator.validatePaths(paths);
+        List<Path> roots = List.copyOf(paths);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism + 1, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-indexing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(() -> discover(roots));
+        for (int i = 0; i < parallelism; i++) {
+            executor.execute(this::indexDiscoveredFiles);
+        }
+        executor.shutdown();
+        return task;
+    }
+
+    private void discover(List<Path> roots) {
+        try {
+            for (Path path : index.pendingPaths()) {
+                task.fileDiscovered();
+                put(path);
+            }
+            PathValidator.forEachValidPath(roots, path -> {
+                if (filter.test(path) && index.registerFile(path)) {
+                    task.fileDiscovered();
+                    put(path);
+                }
+            });
+        } catch (RuntimeException e) {
+            task.completion().completeExceptionally(e);
+        } finally {
+            for (int i = 0; i < parallelism; i++) {
+                put(END_OF_FILES);
+            }
+        }
+    }
+
+    private void put(Path path) {
+        try {
+            discoveredPaths.put(path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Bulk indexing interrupted");
+        }
+    }
+
+    private void indexDiscoveredFiles() {
+        Batch batch = new Batch();
+        try {
+            Path path;
+            while ((path = discoveredPaths.take()) != END_OF_FILES) {
+                if (task.isDone()) {
+                    continue;
+                }
+                try {
+                    batch = indexFile(path, batch);
+                } catch (RuntimeException e) {
+                    task.completion().completeExceptionally(e);
+                }
+            }
+            batch.merge();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.completion().completeExceptionally(e);
+        } catch (RuntimeException e) {
+            task.completion().completeExceptionally(e);
+        } finally {
+            if (runningWorkers.decrementAndGet() == 0) {
+                task.completion().complete(null);
+            }
+        }
+    }
+
+    private Batch indexFile(Path path, Batch batch) {
+        IndexedFile file = index.claimPendingFile(path);
+        if (file == null) {
+            return batch;
+        }
+        FileTerms fileTerms = index.readTerms(file, token);
+        if (fileTerms == null) {
+            index.removeFile(file);
+            return batch;
+        }
+        batch.add(file, fileTerms);
+        if (batch.files.size() < BATCH_SIZE) {
+            return batch;
+        }
+        batch.merge();
+        return new Batch();
+    }
+
+    /**
+     * Terms of the files tokenized by one worker since its last merge.
+     */
+    private final class Batch {
+
+        private final Map<String, FilePostings> termToFiles = new HashMap<>();
+
+        private final List<IndexedFile> files = new ArrayList<>(BATCH_SIZE);
+
+        private final List<FileTerms> contents = new ArrayList<>(BATCH_SIZE);
+
+        void add(IndexedFile file, FileTerms fileTerms) {
+            files.add(file);
+            contents.add(fileTerms);
+            for (int i = 0; i < fileTerms.terms().size(); i++) {
+                termToFiles.computeIfAbsent(fileTerms.terms().get(i), k -> new FilePostings())
+                        .add(file, fileTerms.frequencies()[i]);
+            }
+        }
+
+        void merge() {
+            if (!files.isEmpty()) {
+                index.publish(termToFiles, files, contents);
+                task.filesIndexed(files.size());
+            }
+        }
+    }
+}
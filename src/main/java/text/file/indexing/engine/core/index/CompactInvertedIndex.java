@@ -0,0 +1,443 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.core.search.Position;
+import text.file.indexing.engine.core.search.ScoredPath;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Inverted index which identifies files by dense int document ids and keeps every posting list as
+ * compressed sorted ints ({@link PostingList}) instead of a set of {@link Path} references.
+ * Document ids are mapped back to paths only when a search result is returned, and only for the entries visible at
+ * the epoch of the search. Posting list cursors skip the postings of a reindexed file which do not belong to its
+ * content visible at the epoch, see {@link IndexedFile#containsAt(String, long)}.
+ * <p>
+ * In positional mode the index also keeps the token ordinal, line and column of every term occurrence
+ * ({@link PositionTable}), so {@link Query.Phrase} queries and their positions are resolved without reading
+ * the files. Positions take several times more memory than the posting lists.
+ * <p>
+ * With a trigram index, every distinct trigram of the lower-cased raw content also gets a posting list, so any
+ * literal of three or more chars, even inside a term or spanning delimiters, is turned into candidate files by
+ * intersecting the posting lists of its trigrams, like Google Code Search does.
+ */
+public class CompactInvertedIndex extends AbstractInvertedIndex {
+
+    // the approximate heap of a term with its map entry and posting list, without the encoded postings
+    private static final long TERM_BYTES = 160;
+
+    private final Map<String, PostingList> termToPostingsMap;
+
+    private final DocumentDictionary documents;
+
+    private final Map<Long, PostingList> trigramToPostingsMap;
+
+    private final boolean storePositions;
+
+    private final boolean indexTrigrams;
+
+    public CompactInvertedIndex() {
+        this(false);
+    }
+
+    /**
+     * @param storePositions whether to keep the positions of all term occurrences, needed by phrase queries
+     */
+    public CompactInvertedIndex(boolean storePositions) {
+        this(storePositions, false);
+    }
+
+    /**
+     * @param storePositions whether to keep the positions of all term occurrences, needed by phrase queries
+     * @param indexTrigrams  whether to index the trigrams of the content, used to find the candidate files of
+     *                       substring searches
+     */
+    public CompactInvertedIndex(boolean storePositions, boolean indexTrigrams) {
+        termToPostingsMap = new ConcurrentHashMap<>();
+        trigramToPostingsMap = new ConcurrentHashMap<>();
+        documents = new DocumentDictionary();
+        this.storePositions = storePositions;
+        this.indexTrigrams = indexTrigrams;
+    }
+
+    @Override
+    boolean storesPositions() {
+        return storePositions;
+    }
+
+    @Override
+    boolean indexesTrigrams() {
+        return indexTrigrams;
+    }
+
+    @Override
+    void contentChanged(IndexedFile file, FileTerms fileTerms) {
+        super.contentChanged(file, fileTerms);
+        documents.setLength(file.docId(), fileTerms == null ? 0 : fileTerms.length());
+        if (!indexTrigrams) {
+            return;
+        }
+        long[] oldTrigrams = file.trigrams();
+        long[] newTrigrams = fileTerms == null || fileTerms.trigrams() == null ? new long[0] : fileTerms.trigrams();
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < oldTrigrams.length || newIndex < newTrigrams.length) {
+            if (newIndex == newTrigrams.length
+                    || oldIndex < oldTrigrams.length && oldTrigrams[oldIndex] < newTrigrams[newIndex]) {
+                removeTrigramPosting(oldTrigrams[oldIndex++], file);
+            } else if (oldIndex == oldTrigrams.length || newTrigrams[newIndex] < oldTrigrams[oldIndex]) {
+                addTrigramPosting(newTrigrams[newIndex++], file);
+            } else {
+                oldIndex++;
+                newIndex++;
+            }
+        }
+        file.setTrigrams(newTrigrams);
+    }
+
+    private void addTrigramPosting(long trigram, IndexedFile file) {
+        trigramToPostingsMap.compute(trigram, (k, postings) -> {
+            PostingList current = postings == null ? new PostingList(trigramString(k)) : postings;
+            current.add(file.docId());
+            return current;
+        });
+    }
+
+    private void removeTrigramPosting(long trigram, IndexedFile file) {
+        trigramToPostingsMap.computeIfPresent(trigram, (k, postings) -> {
+            postings.remove(file.docId());
+            return postings.isEmpty() ? null : postings;
+        });
+    }
+
+    private static String trigramString(long trigram) {
+        return new String(new char[]{(char) (trigram >>> 32), (char) (trigram >>> 16), (char) trigram});
+    }
+
+    @Override
+    void fileAdded(IndexedFile file) {
+        file.setDocId(documents.add(file));
+    }
+
+    @Override
+    void fileDropped(IndexedFile file) {
+        documents.release(file.docId());
+    }
+
+    String addPosting(String term, IndexedFile file, int frequency) {
+        PostingList postingList = termToPostingsMap.compute(term, (k, postings) -> {
+            PostingList current = postings == null ? newPostings(k) : postings;
+            current.add(file.docId(), frequency);
+            return current;
+        });
+        return postingList.term();
+    }
+
+    @Override
+    String addPostings(String term, FilePostings files) {
+        PostingList postingList = termToPostingsMap.compute(term, (k, postings) -> {
+            PostingList current = postings == null ? newPostings(k) : postings;
+            for (int i = 0; i < files.size(); i++) {
+                current.add(files.file(i).docId(), files.frequency(i));
+            }
+            return current;
+        });
+        return postingList.term();
+    }
+
+    private PostingList newPostings(String term) {
+        termAdded(term);
+        return new PostingList(term, true);
+    }
+
+    void removePosting(String term, IndexedFile file) {
+        termToPostingsMap.computeIfPresent(term, (k, postings) -> {
+            postings.remove(file.docId());
+            return postings.isEmpty() ? null : postings;
+        });
+    }
+
+    boolean containsTerm(String term) {
+        return termToPostingsMap.containsKey(term);
+    }
+
+    void forEachPostingList(Consumer<PostingList> action) {
+        termToPostingsMap.values().forEach(action);
+    }
+
+    @Override
+    long termCount() {
+        return termToPostingsMap.size();
+    }
+
+    @Override
+    long postingCount() {
+        long count = 0;
+        for (PostingList postings : termToPostingsMap.values()) {
+            count += postings.size();
+        }
+        return count;
+    }
+
+    @Override
+    long postingsHeapBytes() {
+        long bytes = 0;
+        for (PostingList postings : termToPostingsMap.values()) {
+            bytes += TERM_BYTES + postings.term().length() + postings.encodedLength();
+        }
+        for (PostingList postings : trigramToPostingsMap.values()) {
+            bytes += TERM_BYTES + postings.encodedLength();
+        }
+        return bytes;
+    }
+
+    Set<Path> searchFiles(String queryWord, long sequence) {
+        PostingList postings = termToPostingsMap.get(Tokenizer.foldCase(queryWord));
+        if (postings == null) {
+            return Collections.emptySet();
+        }
+        int[] docIds = postings.toArray();
+        Set<Path> paths = new HashSet<>(docIds.length * 4 / 3 + 1);
+        for (int docId : docIds) {
+            Path path = path(docId, sequence);
+            if (path != null && containsAt(docId, postings.term(), sequence)) {
+                paths.add(path);
+            }
+        }
+        return Collections.unmodifiableSet(paths);
+    }
+
+    /**
+     * Returns the path of the document if its entry is visible at the sequence number, or {@code null}.
+     */
+    private Path path(int docId, long sequence) {
+        IndexedFile file = documents.file(docId);
+        return file != null && file.visibleAt(sequence) ? file.path() : null;
+    }
+
+    private boolean containsAt(int docId, String term, long sequence) {
+        IndexedFile file = documents.file(docId);
+        return file != null && file.containsAt(term, sequence);
+    }
+
+    /**
+     * Returns the documents of the posting list without those whose posting is kept only for the searches still
+     * reading the previous content of a reindexed file.
+     */
+    int[] currentDocIds(PostingList postings) {
+        int[] docIds = postings.toArray();
+        int count = 0;
+        for (int docId : docIds) {
+            if (containsAt(docId, postings.term(), Long.MAX_VALUE)) {
+                docIds[count++] = docId;
+            }
+        }
+        return count == docIds.length ? docIds : Arrays.copyOf(docIds, count);
+    }
+
+    /**
+     * Evaluates the query over posting list cursors, see {@link DocIdIterator}.
+     * Document ids are mapped to paths only for the matching documents, as the stream is consumed.
+     */
+    @Override
+    Stream<Path> search(Query query) {
+        VersionClock.ReadEpoch epoch = startRead();
+        try {
+            return paths(iterator(query, epoch.sequence()), epoch);
+        } catch (RuntimeException e) {
+            epoch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the paths of the documents of the iterator. The epoch stays open until the stream is exhausted or
+     * closed, as the entries of the documents are looked up lazily.
+     */
+    private Stream<Path> paths(DocIdIterator iterator, VersionClock.ReadEpoch epoch) {
+        int characteristics = Spliterator.DISTINCT | Spliterator.NONNULL;
+        Spliterator<Path> paths = new Spliterators.AbstractSpliterator<>(iterator.cost(), characteristics) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Path> action) {
+                int docId;
+                while ((docId = iterator.nextDoc()) != DocIdIterator.NO_MORE_DOCS) {
+                    Path path = path(docId, epoch.sequence());
+                    if (path != null) {
+                        action.accept(path);
+                        return true;
+                    }
+                }
+                epoch.close();
+                return false;
+            }
+        };
+        epoch.closeWhenUnreachable(paths);
+        return StreamSupport.stream(paths, false).onClose(epoch::close);
+    }
+
+    private DocIdIterator iterator(Query query, long sequence) {
+        if (query instanceof Query.Term term) {
+            return cursor(Tokenizer.foldCase(term.term()), sequence);
+        }
+        if (query instanceof Query.MultiTerm multiTerm) {
+            List<DocIdIterator> cursors = expandTerms(multiTerm).stream()
+                    .map(term -> cursor(term, sequence)).toList();
+            return cursors.isEmpty() ? DocIdIterator.EMPTY : DocIdIterator.or(cursors);
+        }
+        if (query instanceof Query.And and) {
+            List<DocIdIterator> required = new ArrayList<>();
+            List<DocIdIterator> excluded = new ArrayList<>();
+            for (Query clause : and.clauses()) {
+                if (clause instanceof Query.Not not) {
+                    excluded.add(iterator(not.query(), sequence));
+                } else {
+                    required.add(iterator(clause, sequence));
+                }
+            }
+            if (required.isEmpty()) {
+                throw PathMatches.negativeQuery();
+            }
+            return DocIdIterator.and(required, excluded);
+        }
+        if (query instanceof Query.Or or) {
+            return DocIdIterator.or(or.clauses().stream().map(clause -> iterator(clause, sequence)).toList());
+        }
+        if (query instanceof Query.Phrase phrase) {
+            List<String> terms = phraseTerms(phrase);
+            return DocIdIterator.filter(phraseCandidates(terms, sequence), docId ->
+                    !PhraseMatcher.match(positions(docId, sequence), terms, phrase.slop(), true).isEmpty());
+        }
+        throw PathMatches.negativeQuery();
+    }
+
+    private DocIdIterator phraseCandidates(List<String> terms, long sequence) {
+        return DocIdIterator.and(terms.stream().distinct().map(term -> cursor(term, sequence)).toList(), List.of());
+    }
+
+    private DocIdIterator cursor(String term, long sequence) {
+        PostingList postings = termToPostingsMap.get(term);
+        return postings == null ? DocIdIterator.EMPTY
+                : DocIdIterator.filter(postings.cursor(), docId -> containsAt(docId, term, sequence));
+    }
+
+    /**
+     * Intersects the posting lists of the trigrams of the literal when trigrams are indexed. Literals shorter than
+     * three chars match every indexed file.
+     */
+    @Override
+    Stream<Path> searchCandidates(String literal) {
+        if (!indexTrigrams) {
+            return super.searchCandidates(literal);
+        }
+        if (literal.length() < 3) {
+            List<Path> paths = new ArrayList<>();
+            forEachIndexedFile(file -> paths.add(file.path()));
+            return paths.stream();
+        }
+        VersionClock.ReadEpoch epoch = startRead();
+        return paths(trigrams(literal), epoch);
+    }
+
+    /**
+     * Intersects the trigrams of the literals of every clause and unites the literals of a clause. A clause with a
+     * literal shorter than three chars matches every indexed file and is dropped.
+     */
+    @Override
+    Stream<Path> searchRegexCandidates(List<List<String>> clauses) {
+        if (!indexTrigrams) {
+            return super.searchRegexCandidates(clauses);
+        }
+        List<List<String>> selective = clauses.stream()
+                .filter(clause -> clause.stream().allMatch(literal -> literal.length() >= 3))
+                .toList();
+        if (selective.isEmpty()) {
+            List<Path> paths = new ArrayList<>();
+            forEachIndexedFile(file -> paths.add(file.path()));
+            return paths.stream();
+        }
+        VersionClock.ReadEpoch epoch = startRead();
+        List<DocIdIterator> required = new ArrayList<>();
+        for (List<String> clause : selective) {
+            required.add(DocIdIterator.or(clause.stream().map(this::trigrams).toList()));
+        }
+        return paths(DocIdIterator.and(required, List.of()), epoch);
+    }
+
+    private DocIdIterator trigrams(String literal) {
+        List<DocIdIterator> trigrams = new ArrayList<>();
+        for (long trigram : TrigramSet.of(literal)) {
+            PostingList postings = trigramToPostingsMap.get(trigram);
+            if (postings == null) {
+                return DocIdIterator.EMPTY;
+            }
+            trigrams.add(postings.cursor());
+        }
+        return DocIdIterator.and(trigrams, List.of());
+    }
+
+    /**
+     * Ranks the files containing any of the terms by BM25 with {@link WandSearcher}. The term frequencies and the
+     * length of a reindexed file are updated in place, so a search running meanwhile may score it by a mix of its
+     * old and new content.
+     */
+    @Override
+    List<ScoredPath> searchTopK(List<String> terms, int k) {
+        Map<String, Integer> queryCounts = new LinkedHashMap<>();
+        terms.forEach(term -> queryCounts.merge(Tokenizer.foldCase(term), 1, Integer::sum));
+        int documentCount = indexedFilesCount();
+        try (VersionClock.ReadEpoch epoch = startRead()) {
+            List<WandSearcher.TermCursor> cursors = new ArrayList<>();
+            queryCounts.forEach((term, queryCount) -> {
+                PostingList postings = termToPostingsMap.get(term);
+                if (postings != null) {
+                    cursors.add(new WandSearcher.TermCursor(postings.cursor(), documentCount,
+                            postings.maxFrequency(), queryCount));
+                }
+            });
+            List<ScoredPath> paths = new ArrayList<>(k);
+            for (WandSearcher.ScoredDocument document : WandSearcher.search(cursors, k, documents::length,
+                    documents.averageLength(), docId -> path(docId, epoch.sequence()) != null)) {
+                paths.add(new ScoredPath(documents.file(document.docId()).path(), document.score()));
+            }
+            return paths;
+        }
+    }
+
+    @Override
+    Map<Path, List<Position>> searchPositions(Query.Phrase phrase) {
+        List<String> terms = phraseTerms(phrase);
+        try (VersionClock.ReadEpoch epoch = startRead()) {
+            DocIdIterator candidates = phraseCandidates(terms, epoch.sequence());
+            Map<Path, List<Position>> positions = new TreeMap<>();
+            int docId;
+            while ((docId = candidates.nextDoc()) != DocIdIterator.NO_MORE_DOCS) {
+                Path path = path(docId, epoch.sequence());
+                if (path == null) {
+                    continue;
+                }
+                List<Position> matches = PhraseMatcher.match(positions(docId, epoch.sequence()), terms, phrase.slop(),
+                        false);
+                if (!matches.isEmpty()) {
+                    positions.put(path, matches);
+                }
+            }
+            return Collections.unmodifiableMap(positions);
+        }
+    }
+
+    private List<String> phraseTerms(Query.Phrase phrase) {
+        if (!storePositions) {
+            throw PathMatches.positionsNotStored();
+        }
+        return phrase.terms().stream().map(Tokenizer::foldCase).toList();
+    }
+
+    private PositionTable positions(int docId, long sequence) {
+        IndexedFile file = documents.file(docId);
+        return file == null ? null : file.positionsAt(sequence);
+    }
+}
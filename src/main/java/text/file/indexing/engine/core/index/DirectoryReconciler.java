@@ -0,0 +1,105 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.core.Token;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Brings an index back in line with a directory tree whose changes were not all seen, for example after the watch
+ * service overflowed. The tree is walked once and the fingerprint of every file is compared with the one taken
+ * when it was indexed; only the files which differ are reindexed and only the indexed files no longer found are
+ * removed. The changes are applied at a limited rate, so reconciling a large tree does not starve the other work.
+ */
+final class DirectoryReconciler {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectoryReconciler.class.getName());
+
+    private final Index index;
+
+    private final Token token;
+
+    private final long intervalNanos;
+
+    private long nextChangeNanos;
+
+    /**
+     * @param maxFilesPerSecond the maximal number of files reindexed or removed per second
+     */
+    DirectoryReconciler(Index index, Token token, int maxFilesPerSecond) {
+        if (maxFilesPerSecond < 1) {
+            throw new IllegalArgumentException("maxFilesPerSecond must be positive");
+        }
+        this.index = index;
+        this.token = token;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / maxFilesPerSecond;
+    }
+
+    /**
+     * @return the number of files reindexed or removed
+     * @throws InterruptedException if the thread is interrupted while waiting for the rate limit, in which case the
+     *                              remaining changes are not applied
+     */
+    int reconcile(Path directory) throws InterruptedException {
+        Map<Path, FileFingerprint> vanished = new HashMap<>(index.fingerprintsUnder(directory));
+        List<Path> changed = new ArrayList<>();
+        if (Files.exists(directory)) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Iterator<Path> it = files.filter(Files::isRegularFile).iterator(); it.hasNext(); ) {
+                    Path file = it.next();
+                    FileFingerprint indexed = vanished.remove(file);
+                    FileFingerprint current;
+                    try {
+                        current = FileFingerprint.read(file);
+                    } catch (IOException e) {
+                        // the file was removed since it was listed
+                        if (indexed != null) {
+                            vanished.put(file, indexed);
+                        }
+                        continue;
+                    }
+                    if (!current.matches(indexed)) {
+                        changed.add(file);
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                // a partial walk would report the files not reached yet as removed
+                LOGGER.log(SEVERE, "A problem has occurred while reconciling " + directory, e);
+                return 0;
+            }
+        }
+        nextChangeNanos = System.nanoTime();
+        for (Path file : changed) {
+            awaitRateLimit();
+            index.reIndexFile(file, token);
+        }
+        for (Path file : vanished.keySet()) {
+            awaitRateLimit();
+            index.removeFileFromIndex(file);
+        }
+        if (!vanished.isEmpty()) {
+            index.cleanupIndex();
+        }
+        return changed.size() + vanished.size();
+    }
+
+    private void awaitRateLimit() throws InterruptedException {
+        long wait = nextChangeNanos - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        nextChangeNanos = Math.max(nextChangeNanos, System.nanoTime() - intervalNanos) + intervalNanos;
+    }
+}
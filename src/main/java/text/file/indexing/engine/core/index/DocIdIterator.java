@@ -0,0 +1,187 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Iterator over increasing document ids, which can skip ahead to a target id.
+ * Conjunctions are evaluated by leapfrogging: the cheapest clause leads and every other clause is only advanced
+ * to the current candidate, so the cost follows the rarest clause instead of the sum of all of them.
+ */
+abstract class DocIdIterator {
+
+    static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    static final DocIdIterator EMPTY = new DocIdIterator() {
+
+        private int docId = -1;
+
+        int docId() {
+            return docId;
+        }
+
+        int nextDoc() {
+            return docId = NO_MORE_DOCS;
+        }
+
+        int advance(int target) {
+            return docId = NO_MORE_DOCS;
+        }
+
+        long cost() {
+            return 0;
+        }
+    };
+
+    /**
+     * Returns the current document id, {@code -1} before the first call of {@link #nextDoc()} or
+     * {@link #advance(int)}, or {@link #NO_MORE_DOCS} once the iterator is exhausted.
+     */
+    abstract int docId();
+
+    abstract int nextDoc();
+
+    /**
+     * Moves to the first document id not less than the target, which must be greater than {@link #docId()}.
+     */
+    abstract int advance(int target);
+
+    /**
+     * Returns an upper bound of the number of documents.
+     */
+    abstract long cost();
+
+    /**
+     * Returns the documents matched by all required iterators and by none of the excluded ones.
+     */
+    static DocIdIterator and(List<DocIdIterator> required, List<DocIdIterator> excluded) {
+        List<DocIdIterator> sorted = required.stream().sorted(Comparator.comparingLong(DocIdIterator::cost)).toList();
+        if (sorted.get(0).cost() == 0) {
+            return EMPTY;
+        }
+        return sorted.size() == 1 && excluded.isEmpty() ? sorted.get(0) : new Conjunction(sorted, excluded);
+    }
+
+    static DocIdIterator or(List<DocIdIterator> clauses) {
+        return clauses.size() == 1 ? clauses.get(0) : new Disjunction(clauses);
+    }
+
+    /**
+     * Returns the documents of the iterator accepted by the filter, which is evaluated only for those documents.
+     */
+    static DocIdIterator filter(DocIdIterator iterator, IntPredicate filter) {
+        return new DocIdIterator() {
+
+            int docId() {
+                return iterator.docId();
+            }
+
+            int nextDoc() {
+                return accept(iterator.nextDoc());
+            }
+
+            int advance(int target) {
+                return accept(iterator.advance(target));
+            }
+
+            private int accept(int docId) {
+                while (docId != NO_MORE_DOCS && !filter.test(docId)) {
+                    docId = iterator.nextDoc();
+                }
+                return docId;
+            }
+
+            long cost() {
+                return iterator.cost();
+            }
+        };
+    }
+
+    private static final class Conjunction extends DocIdIterator {
+
+        private final DocIdIterator lead;
+
+        private final List<DocIdIterator> others;
+
+        private final List<DocIdIterator> excluded;
+
+        private int docId = -1;
+
+        Conjunction(List<DocIdIterator> required, List<DocIdIterator> excluded) {
+            this.lead = required.get(0);
+            this.others = required.subList(1, required.size());
+            this.excluded = excluded;
+        }
+
+        int docId() {
+            return docId;
+        }
+
+        int nextDoc() {
+            return docId = align(lead.nextDoc());
+        }
+
+        int advance(int target) {
+            return docId = align(lead.advance(target));
+        }
+
+        private int align(int candidate) {
+            candidates:
+            while (candidate != NO_MORE_DOCS) {
+                for (DocIdIterator other : others) {
+                    int otherDocId = other.docId() < candidate ? other.advance(candidate) : other.docId();
+                    if (otherDocId > candidate) {
+                        candidate = otherDocId == NO_MORE_DOCS ? NO_MORE_DOCS : lead.advance(otherDocId);
+                        continue candidates;
+                    }
+                }
+                for (DocIdIterator other : excluded) {
+                    int otherDocId = other.docId() < candidate ? other.advance(candidate) : other.docId();
+                    if (otherDocId == candidate) {
+                        candidate = lead.nextDoc();
+                        continue candidates;
+                    }
+                }
+                return candidate;
+            }
+            return NO_MORE_DOCS;
+        }
+
+        long cost() {
+            return lead.cost();
+        }
+    }
+
+    private static final class Disjunction extends DocIdIterator {
+
+        private final List<DocIdIterator> clauses;
+
+        private int docId = -1;
+
+        Disjunction(List<DocIdIterator> clauses) {
+            this.clauses = clauses;
+        }
+
+        int docId() {
+            return docId;
+        }
+
+        int nextDoc() {
+            return docId == NO_MORE_DOCS ? NO_MORE_DOCS : advance(docId + 1);
+        }
+
+        int advance(int target) {
+            int min = NO_MORE_DOCS;
+            for (DocIdIterator clause : clauses) {
+                int clauseDocId = clause.docId() < target ? clause.advance(target) : clause.docId();
+                min = Math.min(min, clauseDocId);
+            }
+            return docId = min;
+        }
+
+        long cost() {
+            return clauses.stream().mapToLong(DocIdIterator::cost).sum();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package text.file.indexing.engine.core.index;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Assigns dense int document ids to file entries, so posting lists can store ints instead of {@link Path}
+ * references.
+ * Ids of dropped documents are reused by later documents. The length of every document, its number of term
+ * occurrences, is kept for scoring.
+ */
+final class DocumentDictionary {
+
+    private volatile IndexedFile[] files;
+
+    private volatile int[] lengths;
+
+    private long totalLength;
+
+    private int lengthCount;
+
+    private int nextId;
+
+    private int[] freeIds;
+
+    private int freeCount;
+
+    DocumentDictionary() {
+        files = new IndexedFile[16];
+        lengths = new int[16];
+        freeIds = new int[16];
+    }
+
+    synchronized int add(IndexedFile file) {
+        int docId;
+        if (freeCount > 0) {
+            docId = freeIds[--freeCount];
+        } else {
+            docId = nextId++;
+            if (docId == files.length) {
+                files = Arrays.copyOf(files, files.length * 2);
+                lengths = Arrays.copyOf(lengths, files.length);
+            }
+        }
+        files[docId] = file;
+        return docId;
+    }
+
+    synchronized void release(int docId) {
+        setLength(docId, 0);
+        files[docId] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeCount++] = docId;
+    }
+
+    /**
+     * Returns the entry of the document, or {@code null} if the id is not assigned.
+     */
+    IndexedFile file(int docId) {
+        IndexedFile[] current = files;
+        return docId < current.length ? current[docId] : null;
+    }
+
+    synchronized void setLength(int docId, int length) {
+        int oldLength = lengths[docId];
+        totalLength += length - oldLength;
+        lengthCount += (length > 0 ? 1 : 0) - (oldLength > 0 ? 1 : 0);
+        lengths[docId] = length;
+    }
+
+    /**
+     * Returns the number of term occurrences in the document, or {@code 0} if it is not indexed.
+     */
+    int length(int docId) {
+        int[] current = lengths;
+        return docId < current.length ? current[docId] : 0;
+    }
+
+    /**
+     * Returns the average length of the indexed documents.
+     */
+    synchronized double averageLength() {
+        return lengthCount == 0 ? 1 : (double) totalLength / lengthCount;
+    }
+
+    synchronized int size() {
+        return nextId - freeCount;
+    }
+}
@@ -0,0 +1,31 @@
+package text.file.indexing.engine.core.index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Size, modification time and file key, such as the inode, of a file at the moment its content was indexed.
+ * Segments do not store the file key, so it is {@code null} for the fingerprints read from them.
+ */
+record FileFingerprint(long size, long lastModified, Object fileKey) {
+
+    FileFingerprint(long size, long lastModified) {
+        this(size, lastModified, null);
+    }
+
+    static FileFingerprint read(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileFingerprint(attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+    }
+
+    /**
+     * Returns whether the file seems unchanged since the other fingerprint was taken. The file keys are compared
+     * only if both are known, so a file replaced by another one of the same size and time is still detected.
+     */
+    boolean matches(FileFingerprint other) {
+        return other != null && size == other.size && lastModified == other.lastModified
+                && (fileKey == null || other.fileKey == null || fileKey.equals(other.fileKey));
+    }
+}
@@ -0,0 +1,20 @@
+package text.file.indexing.engine.core.index;
+
+/**
+ * Indexing state of a single file tracked by an {@link Index}.
+ */
+enum FileIndexState {
+    /**
+     * The file was added to the index but its content has not been tokenized yet.
+     */
+    PENDING,
+    /**
+     * The file content is present in the index.
+     */
+    INDEXED,
+    /**
+     * The file was removed from the index, or this version of it was replaced by a reindex. Its postings are removed
+     * once no open search may read them.
+     */
+    TOMBSTONED
+}
@@ -0,0 +1,53 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The files of a batch containing one term, with the frequency of the term in each of them.
+ */
+final class FilePostings {
+
+    private final List<IndexedFile> files = new ArrayList<>();
+
+    private int[] frequencies = new int[4];
+
+    void add(IndexedFile file, int frequency) {
+        if (files.size() == frequencies.length) {
+            frequencies = Arrays.copyOf(frequencies, frequencies.length * 2);
+        }
+        frequencies[files.size()] = frequency;
+        files.add(file);
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    IndexedFile file(int index) {
+        return files.get(index);
+    }
+
+    int frequency(int index) {
+        return frequencies[index];
+    }
+
+    List<IndexedFile> files() {
+        return files;
+    }
+
+    /**
+     * Drops the files removed from the index while the batch was read.
+     */
+    void removeTombstoned() {
+        int kept = 0;
+        for (int i = 0; i < files.size(); i++) {
+            if (!files.get(i).isTombstoned()) {
+                frequencies[kept] = frequencies[i];
+                files.set(kept++, files.get(i));
+            }
+        }
+        files.subList(kept, files.size()).clear();
+    }
+}
@@ -0,0 +1,27 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.List;
+
+/**
+ * The content read from a file by a {@link TermReader}.
+ *
+ * @param terms       the distinct lower-cased terms
+ * @param frequencies the number of occurrences of every term, in the order of the terms
+ * @param positions   the positions of all term occurrences, or {@code null} if they were not collected
+ * @param trigrams    the sorted distinct trigrams of the lower-cased content, see {@link TrigramSet},
+ *                    or {@code null} if they were not collected
+ * @param contentHash the checksum of the raw bytes of the file, see {@link TermReader#contentHash(java.nio.file.Path)}
+ */
+record FileTerms(List<String> terms, int[] frequencies, PositionTable positions, long[] trigrams, long contentHash) {
+
+    /**
+     * Returns the number of term occurrences in the file.
+     */
+    int length() {
+        int length = 0;
+        for (int frequency : frequencies) {
+            length += frequency;
+        }
+        return length;
+    }
+}
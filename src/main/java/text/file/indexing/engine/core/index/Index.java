@@ -1,10 +1,16 @@
 package text.file.indexing.engine.core.index;
 
 import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.search.Position;
+import text.file.indexing.engine.core.search.ScoredPath;
+import text.file.indexing.engine.metrics.IndexMetrics;
 
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * An abstract class representing an Index for searching files.
@@ -12,14 +18,131 @@ import java.util.Set;
  */
 public abstract class Index {
 
+    private volatile IndexMetrics metrics = IndexMetrics.NONE;
+
     abstract void addFilesToIndex(Collection<Path> path, Token token);
 
     abstract void indexFiles(Token token);
 
+    /**
+     * Adds the files to the index and indexes them using up to {@code parallelism} worker threads.
+     * The default implementation indexes the files on the calling thread.
+     */
+    IndexingTask indexFilesAsync(Collection<Path> paths, Token token, int parallelism) {
+        addFilesToIndex(paths, token);
+        indexFiles(token);
+        return IndexingTask.completed();
+    }
+
     abstract void reIndexFile(Path path, Token token);
 
     abstract Set<Path> searchFiles(String queryWord);
 
+    /**
+     * Returns the fingerprints of the indexed files equal to or located under the path, taken when their content
+     * was read.
+     */
+    abstract Map<Path, FileFingerprint> fingerprintsUnder(Path path);
+
+    /**
+     * Returns the files matching the query. The default implementation combines the results of
+     * {@link #searchFiles(String)} without copying them, see {@link PathMatches}; indexes updated concurrently
+     * override it to read all terms at the same version of every file.
+     */
+    Stream<Path> search(Query query) {
+        return PathMatches.of(query, this::searchFiles, this::expandTerms).stream();
+    }
+
+    /**
+     * Returns the indexed terms matched by the query, in sorted order.
+     *
+     * @throws IllegalArgumentException      if the query matches more than {@link Query.MultiTerm#MAX_EXPANDED_TERMS}
+     *                                       terms
+     * @throws UnsupportedOperationException if the index does not keep a term dictionary
+     */
+    List<String> expandTerms(Query.MultiTerm query) {
+        throw PathMatches.termsNotEnumerable();
+    }
+
+    /**
+     * Returns the files which may contain the literal anywhere in their content, to be verified by a searcher.
+     * The default implementation returns the files containing the literal as a whole term.
+     */
+    Stream<Path> searchCandidates(String literal) {
+        return searchFiles(literal).stream();
+    }
+
+    /**
+     * Returns the files which may contain a match of a regex: for every clause, the files containing one of its
+     * literals anywhere in their content, see {@link RegexLiterals}. Without clauses every indexed file is returned.
+     *
+     * @throws UnsupportedOperationException if the index does not index trigrams
+     */
+    Stream<Path> searchRegexCandidates(List<List<String>> clauses) {
+        throw PathMatches.trigramsNotIndexed();
+    }
+
+    /**
+     * Returns the position of every occurrence of the phrase, by file, using only the index.
+     *
+     * @throws UnsupportedOperationException if the index does not store positions
+     */
+    Map<Path, List<Position>> searchPositions(Query.Phrase phrase) {
+        throw PathMatches.positionsNotStored();
+    }
+
+    /**
+     * Returns the {@code k} files with the highest BM25 scores for the terms, from the highest score.
+     *
+     * @throws UnsupportedOperationException if the index does not store term frequencies
+     */
+    List<ScoredPath> searchTopK(List<String> terms, int k) {
+        throw PathMatches.frequenciesNotStored();
+    }
+
+    abstract int pendingFilesCount();
+
+    /**
+     * Returns the number of files given to {@link #reIndexFile(Path, Token)} whose content was found unchanged and
+     * whose postings were therefore left untouched. The default implementation reindexes every file.
+     */
+    long skippedReindexCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of distinct indexed terms, or {@code -1} if the index does not count them.
+     */
+    long termCount() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of postings, one for every term of every file, or {@code -1} if the index does not count
+     * them.
+     */
+    long postingCount() {
+        return -1;
+    }
+
+    /**
+     * Returns the approximate heap taken by the index in bytes, or {@code -1} if the index does not estimate it.
+     */
+    long estimatedHeapBytes() {
+        return -1;
+    }
+
+    IndexMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics receiving the measurements of the files indexed from now on.
+     */
+    void setMetrics(IndexMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     abstract void removeFileFromIndex(Path path);
 
     abstract void cleanupIndex();
@@ -0,0 +1,218 @@
+package text.file.indexing.engine.core.index;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Forward index entry of a single version of a file: its indexing state and the terms it contributed to the index.
+ * State transitions and term updates are made while holding the monitor of the entry. Searches return only the
+ * entries visible at their {@link VersionClock} epoch. Reindexing a file updates the postings of its entry in place
+ * by the term diff, see {@link TermDelta}, or replaces the entry while a previous diff is not settled yet.
+ */
+final class IndexedFile {
+
+    private final Path path;
+
+    private volatile FileIndexState state;
+
+    private int docId = -1;
+
+    private TermVector terms;
+
+    private volatile FileFingerprint fingerprint;
+
+    private volatile boolean racyFingerprint;
+
+    private volatile long contentHash;
+
+    private volatile TermDelta termDelta;
+
+    private volatile PositionTable positions;
+
+    private long[] trigrams;
+
+    private volatile long visibleFrom = Long.MAX_VALUE;
+
+    private volatile long visibleUntil = Long.MAX_VALUE;
+
+    IndexedFile(Path path) {
+        this.path = path;
+        this.state = FileIndexState.PENDING;
+        this.terms = TermVector.EMPTY;
+        this.trigrams = new long[0];
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Returns the document id assigned by a {@link DocumentDictionary}, or {@code -1} if the index does not use one.
+     */
+    int docId() {
+        return docId;
+    }
+
+    void setDocId(int docId) {
+        this.docId = docId;
+    }
+
+    FileIndexState state() {
+        return state;
+    }
+
+    void setState(FileIndexState state) {
+        this.state = state;
+    }
+
+    boolean isTombstoned() {
+        return state == FileIndexState.TOMBSTONED;
+    }
+
+    /**
+     * Returns the fingerprint of the file taken when its content was last read, or {@code null} if it was not read yet.
+     */
+    FileFingerprint fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param racy whether the file was modified so shortly before the fingerprint was taken that a later change
+     *             may keep the same modification time, like git's racily clean entries
+     */
+    void setFingerprint(FileFingerprint fingerprint, boolean racy) {
+        this.fingerprint = fingerprint;
+        this.racyFingerprint = racy;
+    }
+
+    /**
+     * Returns whether an unchanged fingerprint does not prove that the content is unchanged.
+     */
+    boolean hasRacyFingerprint() {
+        return racyFingerprint;
+    }
+
+    /**
+     * Returns the checksum of the content last read, see {@link FileTerms#contentHash()}.
+     */
+    long contentHash() {
+        return contentHash;
+    }
+
+    void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    TermVector terms() {
+        return terms;
+    }
+
+    void setTerms(TermVector terms) {
+        this.terms = terms;
+    }
+
+    /**
+     * Returns the positions of the terms of the file, or {@code null} if the index does not store positions.
+     */
+    PositionTable positions() {
+        return positions;
+    }
+
+    /**
+     * Returns the positions of the terms of the content visible at the sequence number.
+     */
+    PositionTable positionsAt(long sequence) {
+        TermDelta delta = termDelta;
+        return delta == null || sequence >= delta.sequence ? positions : delta.previousPositions;
+    }
+
+    void setPositions(PositionTable positions) {
+        this.positions = positions;
+    }
+
+    /**
+     * Returns the sorted trigrams of the file added to a trigram index.
+     */
+    long[] trigrams() {
+        return trigrams;
+    }
+
+    void setTrigrams(long[] trigrams) {
+        this.trigrams = trigrams;
+    }
+
+    /**
+     * Returns whether the entry is published at the sequence number and not yet replaced or removed.
+     */
+    boolean visibleAt(long sequence) {
+        return visibleFrom <= sequence && sequence < visibleUntil;
+    }
+
+    void setVisibleFrom(long sequence) {
+        this.visibleFrom = sequence;
+    }
+
+    void setVisibleUntil(long sequence) {
+        this.visibleUntil = sequence;
+    }
+
+    /**
+     * Returns whether the posting of the term, which the index holds for this entry, belongs to the content
+     * visible at the sequence number.
+     */
+    boolean containsAt(String term, long sequence) {
+        TermDelta delta = termDelta;
+        if (delta == null) {
+            return true;
+        }
+        return sequence >= delta.sequence ? !delta.removed.contains(term) : !delta.added.contains(term);
+    }
+
+    /**
+     * Returns the term diff of the last reindex, or {@code null} once it is settled.
+     */
+    TermDelta termDelta() {
+        return termDelta;
+    }
+
+    void setTermDelta(TermDelta termDelta) {
+        this.termDelta = termDelta;
+    }
+
+    /**
+     * The terms a reindex added to and removed from an entry. The postings of the added terms are hidden from
+     * the searches started before the new content is published and those of the removed terms from the searches
+     * started after it, until the removed postings are dropped and no search can read them anymore.
+     */
+    static final class TermDelta {
+
+        private final Set<String> added;
+
+        private final Set<String> removed;
+
+        private final PositionTable previousPositions;
+
+        private volatile long sequence = Long.MAX_VALUE;
+
+        TermDelta(Set<String> added, Set<String> removed, PositionTable previousPositions) {
+            this.added = added;
+            this.removed = removed;
+            this.previousPositions = previousPositions;
+        }
+
+        Set<String> removed() {
+            return removed;
+        }
+
+        /**
+         * Returns the sequence number the new content is published at, or {@link Long#MAX_VALUE} before.
+         */
+        long sequence() {
+            return sequence;
+        }
+
+        void setSequence(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
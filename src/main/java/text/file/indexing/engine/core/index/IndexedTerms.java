@@ -0,0 +1,135 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Sorted view of the terms of a mutable index, used to expand {@link Query.MultiTerm} queries.
+ * <p>
+ * Most terms live in an immutable {@link TermDictionary}; terms whose posting list was created since the dictionary
+ * was built are kept in a small sorted map. Once that map grows past a quarter of the dictionary, both are merged into
+ * a new dictionary, leaving out the terms which no longer have a posting list. Removed terms are only dropped by the
+ * merge, so every term found is checked against the index.
+ */
+final class IndexedTerms {
+
+    private static final int MIN_MERGED_TERMS = 4096;
+
+    private final Predicate<String> indexed;
+
+    private final ConcurrentSkipListMap<String, Long> addedTerms;
+
+    private final AtomicInteger addedTermsCount;
+
+    private final AtomicLong sequence;
+
+    private final ReentrantLock mergeLock;
+
+    private volatile TermDictionary dictionary;
+
+    /**
+     * @param indexed whether the index has a posting list for a term
+     */
+    IndexedTerms(Predicate<String> indexed) {
+        this.indexed = indexed;
+        this.addedTerms = new ConcurrentSkipListMap<>();
+        this.addedTermsCount = new AtomicInteger();
+        this.sequence = new AtomicLong();
+        this.mergeLock = new ReentrantLock();
+        this.dictionary = TermDictionary.EMPTY;
+    }
+
+    /**
+     * Called once a posting list is created for the term.
+     */
+    void add(String term) {
+        // a new sequence number tells a merge running concurrently that the term was added again
+        if (addedTerms.put(term, sequence.incrementAndGet()) == null) {
+            addedTermsCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Merges the added terms into the dictionary if there are enough of them and no other thread is merging.
+     */
+    void maybeMerge() {
+        if (addedTermsCount.get() < Math.max(MIN_MERGED_TERMS, dictionary.size() / 4) || !mergeLock.tryLock()) {
+            return;
+        }
+        try {
+            merge();
+        } finally {
+            mergeLock.unlock();
+        }
+    }
+
+    private void merge() {
+        Map<String, Long> merged = new TreeMap<>(addedTerms);
+        TermDictionary current = dictionary;
+        TermDictionary.Builder builder = new TermDictionary.Builder();
+        Iterator<String> added = merged.keySet().iterator();
+        String nextAdded = added.hasNext() ? added.next() : null;
+        List<String> dictionaryTerms = new ArrayList<>(current.size());
+        current.visit(TermAutomaton.of(new Query.Wildcard("*")), dictionaryTerms::add);
+        for (String term : dictionaryTerms) {
+            while (nextAdded != null && nextAdded.compareTo(term) < 0) {
+                addIfIndexed(builder, nextAdded);
+                nextAdded = added.hasNext() ? added.next() : null;
+            }
+            if (term.equals(nextAdded)) {
+                nextAdded = added.hasNext() ? added.next() : null;
+            }
+            addIfIndexed(builder, term);
+        }
+        while (nextAdded != null) {
+            addIfIndexed(builder, nextAdded);
+            nextAdded = added.hasNext() ? added.next() : null;
+        }
+        dictionary = builder.build();
+        merged.forEach((term, addedSequence) -> {
+            if (addedTerms.remove(term, addedSequence)) {
+                addedTermsCount.decrementAndGet();
+            }
+        });
+    }
+
+    private void addIfIndexed(TermDictionary.Builder builder, String term) {
+        if (indexed.test(term)) {
+            builder.add(term);
+        }
+    }
+
+    /**
+     * Returns the indexed terms matched by the query, in sorted order.
+     *
+     * @throws IllegalArgumentException if the query matches more than {@code maxTerms} terms
+     */
+    List<String> expand(Query.MultiTerm query, int maxTerms) {
+        TermAutomaton automaton = TermAutomaton.of(query);
+        SortedSet<String> terms = new TreeSet<>();
+        Predicate<String> collector = term -> {
+            if (indexed.test(term)) {
+                terms.add(term);
+            }
+            return terms.size() <= maxTerms;
+        };
+        boolean complete = dictionary.visit(automaton, collector);
+        String prefix = automaton.prefix();
+        for (String term : addedTerms.tailMap(prefix).keySet()) {
+            if (!complete || !term.startsWith(prefix)) {
+                break;
+            }
+            if (automaton.matches(term)) {
+                complete = collector.test(term);
+            }
+        }
+        if (!complete) {
+            throw new IllegalArgumentException(query + " matches more than " + maxTerms + " terms");
+        }
+        return List.copyOf(terms);
+    }
+}
@@ -0,0 +1,72 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a bulk indexing run started by {@link SimpleTextFileIndexer#indexFilesAsync(java.util.Collection)}.
+ * The files are searchable once {@link #completion()} is completed.
+ */
+public final class IndexingTask {
+
+    private final CompletableFuture<Void> completion;
+
+    private final AtomicLong discoveredFiles;
+
+    private final AtomicLong indexedFiles;
+
+    IndexingTask() {
+        this(new CompletableFuture<>(), new AtomicLong(), new AtomicLong());
+    }
+
+    private IndexingTask(CompletableFuture<Void> completion, AtomicLong discoveredFiles, AtomicLong indexedFiles) {
+        this.completion = completion;
+        this.discoveredFiles = discoveredFiles;
+        this.indexedFiles = indexedFiles;
+    }
+
+    static IndexingTask completed() {
+        IndexingTask task = new IndexingTask();
+        task.completion.complete(null);
+        return task;
+    }
+
+    /**
+     * Returns a task sharing the progress of this one, completed only once the action has run after this task
+     * completed, so waiting for it also waits for the action.
+     */
+    IndexingTask whenComplete(Runnable action) {
+        return new IndexingTask(completion.whenComplete((result, error) -> action.run()), discoveredFiles,
+                indexedFiles);
+    }
+
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Returns the number of files found so far while walking the given paths.
+     */
+    public long discoveredFiles() {
+        return discoveredFiles.get();
+    }
+
+    /**
+     * Returns the number of files whose terms are already merged into the index.
+     */
+    public long indexedFiles() {
+        return indexedFiles.get();
+    }
+
+    void fileDiscovered() {
+        discoveredFiles.incrementAndGet();
+    }
+
+    void filesIndexed(int count) {
+        indexedFiles.addAndGet(count);
+    }
+}
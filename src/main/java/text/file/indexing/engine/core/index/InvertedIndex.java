@@ -1,103 +1,162 @@
 package text.file.indexing.engine.core.index;
 
-import text.file.indexing.engine.core.Token;
-import text.file.indexing.engine.utils.PathValidator;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.*;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.logging.Logger;
-
-import static java.util.logging.Level.SEVERE;
+import java.util.stream.Stream;
 
 /**
  * InvertedIndex class represents an inverted index data structure used for text indexing and searching.
+ * Every posting list is a set of the file entries containing the term, so the entries of an old and a new version
+ * of a file can both be present while the file is reindexed. A search reads the posting sets through views keeping
+ * only the entries visible at its epoch, without copying them.
  */
-class InvertedIndex extends Index {
+class InvertedIndex extends AbstractInvertedIndex {
 
-    private static final Logger LOGGER = Logger.getLogger(InvertedIndex.class.getName());
+    // the approximate heap of a term with its map entry and posting set, and of an entry of a posting set
+    private static final long TERM_BYTES = 200;
 
-    private final Map<String, Set<Path>> wordToFilesMap;
+    private static final long POSTING_BYTES = 40;
 
-    private final Map<Path, AtomicBoolean> processedPaths;
+    private final Map<String, Set<IndexedFile>> wordToFilesMap;
 
     public InvertedIndex() {
         wordToFilesMap = new ConcurrentHashMap<>();
-        processedPaths = new ConcurrentHashMap<>();
     }
 
-    void reIndexFile(Path path, Token token) {
-        removeFileFromIndex(path);
-        addFilesToIndex(Set.of(path), token);
-        indexFiles(token);
-        cleanupIndex();
+    String addPosting(String word, IndexedFile file, int frequency) {
+        wordToFilesMap.compute(word, (k, v) -> {
+            Set<IndexedFile> files = v == null ? newPostings(k) : v;
+            files.add(file);
+            return files;
+        });
+        return word;
     }
 
-    void addFilesToIndex(Collection<Path> paths, Token token) {
-        Set<Path> validPaths = PathValidator.getValidPathSet(paths);
-        validPaths.forEach(path -> processedPaths.put(path, new AtomicBoolean(true)));
+    @Override
+    String addPostings(String word, FilePostings postings) {
+        wordToFilesMap.compute(word, (k, v) -> {
+            Set<IndexedFile> files = v == null ? newPostings(k) : v;
+            files.addAll(postings.files());
+            return files;
+        });
+        return word;
     }
 
-    void indexFiles(Token token) {
-        processedPaths.forEach((key, value) -> indexFile(key, token));
+    private Set<IndexedFile> newPostings(String word) {
+        termAdded(word);
+        return ConcurrentHashMap.newKeySet();
     }
 
-    void indexFile(Path path, Token token) {
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
-            String line;
-            boolean isProcessed = processedPaths.getOrDefault(path, new AtomicBoolean(false)).get();
-            while ((line = reader.readLine()) != null && isProcessed) {
-                isProcessed = processedPaths.getOrDefault(path, new AtomicBoolean(false)).get();
-                if (isProcessed) {
-                    var words = tokenize(line, token);
-                    indexWords(words, path);
-                }
-            }
-        } catch (IOException e) {
-            LOGGER.log(SEVERE, "A problem has occurred while indexing the file.", e);
-        }
+    void removePosting(String word, IndexedFile file) {
+        wordToFilesMap.computeIfPresent(word, (k, files) -> {
+            files.remove(file);
+            return files.isEmpty() ? null : files;
+        });
+    }
+
+    boolean containsTerm(String term) {
+        return wordToFilesMap.containsKey(term);
     }
 
-    private List<String> tokenize(String line, Token token) {
-        return Arrays.stream(line.split(token.token()))
-                .map(String::toLowerCase)
-                .toList();
+    @Override
+    long termCount() {
+        return wordToFilesMap.size();
     }
 
-    private void indexWords(List<String> words, Path path) {
-        words.forEach(word ->
-                wordToFilesMap.compute(word, (k, v) -> {
-                    Set<Path> paths = v == null ? new ConcurrentSkipListSet<>() : v;
-                    if (processedPaths.getOrDefault(path, new AtomicBoolean(false)).get()) {
-                        paths.add(path);
-                    }
-                    return paths;
-                }));
+    @Override
+    long postingCount() {
+        long count = 0;
+        for (Set<IndexedFile> files : wordToFilesMap.values()) {
+            count += files.size();
+        }
+        return count;
     }
 
+    @Override
+    long postingsHeapBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, Set<IndexedFile>> entry : wordToFilesMap.entrySet()) {
+            bytes += TERM_BYTES + entry.getKey().length() + POSTING_BYTES * entry.getValue().size();
+        }
+        return bytes;
+    }
+
+    @Override
     Set<Path> searchFiles(String queryWord) {
-        queryWord = queryWord.toLowerCase();
-        return wordToFilesMap.getOrDefault(queryWord, Collections.emptySet());
+        try (VersionClock.ReadEpoch epoch = startRead()) {
+            return Collections.unmodifiableSet(new HashSet<>(searchFiles(queryWord, epoch.sequence())));
+        }
     }
 
+    /**
+     * Returns a view of the posting set, valid while the epoch of the sequence number is open.
+     */
+    Set<Path> searchFiles(String queryWord, long sequence) {
+        String term = Tokenizer.foldCase(queryWord);
+        Set<IndexedFile> files = wordToFilesMap.get(term);
+        if (files == null) {
+            return Collections.emptySet();
+        }
+        return new VisibleFiles(term, files, sequence);
+    }
+
+    /**
+     * The paths of the entries of a posting set visible at a sequence number.
+     */
+    private final class VisibleFiles extends PathMatches.LazyFileSet {
+
+        private final String term;
 
-    void removeFileFromIndex(Path path) {
-        processedPaths.forEach((key, atomicBoolean) -> {
-            if (key.startsWith(path)) {
-                atomicBoolean.compareAndSet(true, false);
+        private final Set<IndexedFile> files;
+
+        private final long sequence;
+
+        VisibleFiles(String term, Set<IndexedFile> files, long sequence) {
+            this.term = term;
+            this.files = files;
+            this.sequence = sequence;
+        }
+
+        private boolean isVisible(IndexedFile file) {
+            return file.visibleAt(sequence) && file.containsAt(term, sequence);
+        }
+
+        @Override
+        long sizeUpperBound() {
+            return files.size();
+        }
+
+        @Override
+        public int size() {
+            return (int) files.stream().filter(this::isVisible).count();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Path path)) {
+                return false;
             }
-        });
-        wordToFilesMap.values()
-                .forEach(files -> files.removeIf(cur -> cur.startsWith(path)));
-    }
+            IndexedFile file = indexedFile(path);
+            if (file != null && file.visibleAt(sequence)) {
+                return file.containsAt(term, sequence) && files.contains(file);
+            }
+            // the entry visible at the sequence number was replaced or removed since, it is only in the postings
+            return files.stream().anyMatch(posting -> posting.path().equals(path) && isVisible(posting));
+        }
+
+        @Override
+        public Iterator<Path> iterator() {
+            return stream().iterator();
+        }
 
-    void cleanupIndex() {
-        processedPaths.entrySet().removeIf(entry -> !entry.getValue().get());
-        wordToFilesMap.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+        @Override
+        public Stream<Path> stream() {
+            return files.stream().filter(this::isVisible).map(IndexedFile::path);
+        }
     }
-}
\ No newline at end of file
+}
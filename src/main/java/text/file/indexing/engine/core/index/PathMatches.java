@@ -0,0 +1,178 @@
+package text.file.indexing.engine.core.index;
+
+import java.nio.file.Path;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Files matching a {@link Query}, evaluated over the result sets of single terms.
+ * A conjunction streams its cheapest clause and only probes the other clauses with {@link #contains(Path)},
+ * a disjunction streams its clauses one after another, skipping files matched by an earlier clause.
+ * No intermediate set is built, so files are produced lazily.
+ */
+abstract class PathMatches {
+
+    /**
+     * Returns an upper bound of the number of matching files.
+     */
+    abstract long cost();
+
+    abstract boolean contains(Path path);
+
+    abstract Stream<Path> stream();
+
+    /**
+     * @param termFiles   returns the files containing a term
+     * @param expandTerms returns the indexed terms matched by a multi-term query
+     * @throws IllegalArgumentException if a {@link Query.Not} is not a clause of an {@link Query.And}
+     *                                  with a positive clause
+     */
+    static PathMatches of(Query query, Function<String, Set<Path>> termFiles,
+                          Function<Query.MultiTerm, List<String>> expandTerms) {
+        if (query instanceof Query.Term term) {
+            return new TermMatches(termFiles.apply(term.term()));
+        }
+        if (query instanceof Query.MultiTerm multiTerm) {
+            return new OrMatches(expandTerms.apply(multiTerm).stream()
+                    .<PathMatches>map(term -> new TermMatches(termFiles.apply(term)))
+                    .toList());
+        }
+        if (query instanceof Query.And and) {
+            List<PathMatches> required = new ArrayList<>();
+            List<PathMatches> excluded = new ArrayList<>();
+            for (Query clause : and.clauses()) {
+                if (clause instanceof Query.Not not) {
+                    excluded.add(of(not.query(), termFiles, expandTerms));
+                } else {
+                    required.add(of(clause, termFiles, expandTerms));
+                }
+            }
+            if (required.isEmpty()) {
+                throw negativeQuery();
+            }
+            required.sort(Comparator.comparingLong(PathMatches::cost));
+            return new AndMatches(required, excluded);
+        }
+        if (query instanceof Query.Or or) {
+            return new OrMatches(or.clauses().stream().map(clause -> of(clause, termFiles, expandTerms)).toList());
+        }
+        if (query instanceof Query.Phrase) {
+            throw positionsNotStored();
+        }
+        throw negativeQuery();
+    }
+
+    static UnsupportedOperationException positionsNotStored() {
+        return new UnsupportedOperationException("Phrase queries require an index which stores positions");
+    }
+
+    static UnsupportedOperationException trigramsNotIndexed() {
+        return new UnsupportedOperationException("Regex search requires an index which indexes trigrams");
+    }
+
+    static UnsupportedOperationException frequenciesNotStored() {
+        return new UnsupportedOperationException("Ranked queries require an index which stores term frequencies");
+    }
+
+    static UnsupportedOperationException termsNotEnumerable() {
+        return new UnsupportedOperationException("Prefix, wildcard and fuzzy queries require an index with a term dictionary");
+    }
+
+    static IllegalArgumentException negativeQuery() {
+        return new IllegalArgumentException("NOT must be combined by AND with a clause which is not negated");
+    }
+
+    /**
+     * A set of files filtered lazily from a posting list, whose size is only known by counting them.
+     */
+    abstract static class LazyFileSet extends AbstractSet<Path> {
+
+        /**
+         * Returns an upper bound of the size known without counting the files.
+         */
+        abstract long sizeUpperBound();
+    }
+
+    private static final class TermMatches extends PathMatches {
+
+        private final Set<Path> files;
+
+        private final long cost;
+
+        TermMatches(Set<Path> files) {
+            this.files = files;
+            this.cost = files instanceof LazyFileSet lazyFiles ? lazyFiles.sizeUpperBound() : files.size();
+        }
+
+        long cost() {
+            return cost;
+        }
+
+        boolean contains(Path path) {
+            return files.contains(path);
+        }
+
+        Stream<Path> stream() {
+            return files.stream();
+        }
+    }
+
+    private static final class AndMatches extends PathMatches {
+
+        private final List<PathMatches> required;
+
+        private final List<PathMatches> excluded;
+
+        AndMatches(List<PathMatches> required, List<PathMatches> excluded) {
+            this.required = required;
+            this.excluded = excluded;
+        }
+
+        long cost() {
+            return required.get(0).cost();
+        }
+
+        boolean contains(Path path) {
+            return required.stream().allMatch(matches -> matches.contains(path))
+                    && excluded.stream().noneMatch(matches -> matches.contains(path));
+        }
+
+        Stream<Path> stream() {
+            if (cost() == 0) {
+                return Stream.empty();
+            }
+            List<PathMatches> others = required.subList(1, required.size());
+            return required.get(0).stream()
+                    .filter(path -> others.stream().allMatch(matches -> matches.contains(path)))
+                    .filter(path -> excluded.stream().noneMatch(matches -> matches.contains(path)));
+        }
+    }
+
+    private static final class OrMatches extends PathMatches {
+
+        private final List<PathMatches> clauses;
+
+        OrMatches(List<PathMatches> clauses) {
+            this.clauses = clauses;
+        }
+
+        long cost() {
+            return clauses.stream().mapToLong(PathMatches::cost).sum();
+        }
+
+        boolean contains(Path path) {
+            return clauses.stream().anyMatch(matches -> matches.contains(path));
+        }
+
+        Stream<Path> stream() {
+            return Stream.iterate(0, i -> i < clauses.size(), i -> i + 1)
+                    .flatMap(i -> clauses.get(i).stream()
+                            .filter(path -> clauses.subList(0, i).stream().noneMatch(matches -> matches.contains(path))));
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.metrics.IndexMetrics;
+import text.file.indexing.engine.utils.PathValidator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Index which can be flushed to an immutable on-disk {@link Segment} and reopened after a restart
+ * without reading the indexed files again.
+ * <p>
+ * The index consists of the last flushed segment, read through a memory-mapped file, and a
+ * {@link CompactInvertedIndex} holding the files added or changed since then. Segment documents which are
+ * removed or reindexed are marked as deleted. {@link #flush()} merges both parts into a new segment.
+ * On {@link #open(Path)} the size and modification time of every file of the segment are compared with the
+ * snapshot: missing files are deleted and changed files are queued for indexing.
+ */
+public class PersistentIndex extends Index {
+
+    private static final Logger LOGGER = Logger.getLogger(PersistentIndex.class.getName());
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".tfi";
+
+    private final Path directory;
+
+    private final StampedLock flushLock;
+
+    // the bulk indexings writing into the live index, which flush() waits for without holding the lock
+    private final Object bulkIndexingMonitor;
+
+    // guarded by bulkIndexingMonitor
+    private int runningBulkIndexings;
+
+    // the skipped reindexes counted by the live indexes flushed so far
+    private final AtomicLong flushedSkippedReindexes;
+
+    private volatile Snapshot snapshot;
+
+    private PersistentIndex(Path directory, Snapshot snapshot) {
+        this.directory = directory;
+        this.flushLock = new StampedLock();
+        this.bulkIndexingMonitor = new Object();
+        this.flushedSkippedReindexes = new AtomicLong();
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Opens the index stored in the directory, creating an empty one if the directory holds no segment.
+     */
+    public static PersistentIndex open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        long generation = -1;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                long fileGeneration = segmentGeneration(file);
+                if (fileGeneration > generation) {
+                    generation = fileGeneration;
+                }
+            }
+        }
+        if (generation < 0) {
+            return new PersistentIndex(directory, new Snapshot(Segment.empty(), new AtomicBitSet(0),
+                    new CompactInvertedIndex(), 0));
+        }
+        Segment segment = Segment.map(directory.resolve(segmentFileName(generation)));
+        Snapshot snapshot = new Snapshot(segment, new AtomicBitSet(segment.documentCount()),
+                new CompactInvertedIndex(), generation);
+        IntStream.range(0, segment.documentCount()).parallel().forEach(docId -> recheckDocument(snapshot, docId));
+        return new PersistentIndex(directory, snapshot);
+    }
+
+    private static void recheckDocument(Snapshot snapshot, int docId) {
+        Path path = snapshot.segment.path(docId);
+        try {
+            if (!FileFingerprint.read(path).matches(snapshot.segment.fingerprint(docId))) {
+                snapshot.deletedDocs.set(docId);
+                snapshot.live.registerFile(path);
+            }
+        } catch (NoSuchFileException e) {
+            snapshot.deletedDocs.set(docId);
+        } catch (IOException e) {
+            snapshot.deletedDocs.set(docId);
+            LOGGER.log(WARNING, "Can't check the indexed file " + path, e);
+        }
+    }
+
+    void addFilesToIndex(Collection<Path> paths, Token token) {
+        long stamp = flushLock.readLock();
+        try {
+            Snapshot current = snapshot;
+            PathValidator.getValidPathSet(paths).stream()
+                    .filter(path -> !current.containsDocument(path))
+                    .forEach(current.live::registerFile);
+        } finally {
+            flushLock.unlockRead(stamp);
+        }
+    }
+
+    void indexFiles(Token token) {
+        long stamp = flushLock.readLock();
+        try {
+            snapshot.live.indexFiles(token);
+        } finally {
+            flushLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    IndexingTask indexFilesAsync(Collection<Path> paths, Token token, int parallelism) {
+        long stamp = flushLock.readLock();
+        try {
+            // registered under the lock, so no flush can swap the live index until the bulk indexing completes
+            bulkIndexingStarted();
+            Snapshot current = snapshot;
+            IndexingTask task;
+            try {
+                task = current.live.indexFilesAsync(paths, token, parallelism,
+                        path -> !current.containsDocument(path));
+            } catch (RuntimeException e) {
+                bulkIndexingFinished();
+                throw e;
+            }
+            return task.whenComplete(this::bulkIndexingFinished);
+        } finally {
+            flushLock.unlockRead(stamp);
+        }
+    }
+
+    private void bulkIndexingStarted() {
+        synchronized (bulkIndexingMonitor) {
+            runningBulkIndexings++;
+        }
+    }
+
+    private void bulkIndexingFinished() {
+        synchronized (bulkIndexingMonitor) {
+            if (--runningBulkIndexings == 0) {
+                bulkIndexingMonitor.notifyAll();
+            }
+        }
+    }
+
+    void reIndexFile(Path path, Token token) {
+        long stamp = flushLock.readLock();
+        try {
+            Snapshot current = snapshot;
+            current.deleteDocumentsUnder(path);
+            current.live.reIndexFile(path, token);
+        } finally {
+            flushLock.unlockRead(stamp);
+        }
+    }
+
+    Set<Path> searchFiles(String queryWord) {
+        Snapshot current = snapshot;
+        Set<Path> liveFiles = current.live.searchFiles(queryWord);
+        int ordinal = current.segment.findTerm(Tokenizer.foldCase(queryWord));
+        if (ordinal < 0) {
+            return liveFiles;
+        }
+        int[] docIds = current.segment.postings(ordinal);
+        Set<Path> paths = new HashSet<>((docIds.length + liveFiles.size()) * 4 / 3 + 1);
+        for (int docId : docIds) {
+            if (!current.deletedDocs.get(docId)) {
+                paths.add(current.segment.path(docId));
+            }
+        }
+        paths.addAll(liveFiles);
+        return Collections.unmodifiableSet(paths);
+    }
+
+    int pendingFilesCount() {
+        return snapshot.live.pendingFilesCount();
+    }
+
+    /**
+     * Counts only the files whose unchanged content was still in the live index, segments do not keep the
+     * checksums of their documents.
+     */
+    @Override
+    long skippedReindexCount() {
+        return flushedSkippedReindexes.get() + snapshot.live.skippedReindexCount();
+    }
+
+    /**
+     * Counts a term once in the segment and once in the live index.
+     */
+    @Override
+    long termCount() {
+        Snapshot current = snapshot;
+        return current.segment.termCount() + current.live.termCount();
+    }
+
+    /**
+     * Counts the postings of the deleted documents not flushed away yet.
+     */
+    @Override
+    long postingCount() {
+        Snapshot current = snapshot;
+        return current.segment.postingCount() + current.live.postingCount();
+    }
+
+    /**
+     * Counts the live index and the deleted documents of the segment; the segment itself is memory-mapped.
+     */
+    @Override
+    long estimatedHeapBytes() {
+        Snapshot current = snapshot;
+        return current.live.estimatedHeapBytes() + current.segment.documentCount() / 8;
+    }
+
+    @Override
+    void setMetrics(IndexMetrics metrics) {
+        long stamp = flushLock.writeLock();
+        try {
+            super.setMetrics(metrics);
+            snapshot.live.setMetrics(metrics);
+        } finally {
+            flushLock.unlockWrite(stamp);
+        }
+    }
+
+    Map<Path, FileFingerprint> fingerprintsUnder(Path path) {
+        Snapshot current = snapshot;
+        Map<Path, FileFingerprint> fingerprints = new HashMap<>();
+        current.segment.forEachDocumentUnder(path, docId -> {
+            if (!current.deletedDocs.get(docId)) {
+                fingerprints.put(current.segment.path(docId), current.segment.fingerprint(docId));
+            }
+        });
+        fingerprints.putAll(current.live.fingerprintsUnder(path));
+        return fingerprints;
+    }
+
+    void removeFileFromIndex(Path path) {
+        long stamp = flushLock.readLock();
+        try {
+            Snapshot current = snapshot;
+            current.deleteDocumentsUnder(path);
+            current.live.removeFileFromIndex(path);
+        } finally {
+            flushLock.unlockRead(stamp);
+        }
+    }
+
+    void cleanupIndex() {
+        snapshot.live.cleanupIndex();
+    }
+
+    /**
+     * Writes the whole index to a new segment file and switches the index to it.
+     * Waits for running indexing operations; searches are not blocked.
+     *
+     * @throws InterruptedIOException if interrupted while waiting for a bulk indexing
+     */
+    public void flush() throws IOException {
+        long stamp = lockForFlush();
+        try {
+            Snapshot current = snapshot;
+            current.live.cleanupIndex();
+            long generation = current.generation + 1;
+            Path file = directory.resolve(segmentFileName(generation));
+            Path tempFile = directory.resolve(file.getFileName() + ".tmp");
+            try (SegmentWriter writer = new SegmentWriter(Files.newOutputStream(tempFile))) {
+                new SegmentMerger(List.of(current.segment), List.of(current.deletedDocs), current.live).merge(writer);
+            }
+            Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            Segment segment = Segment.map(file);
+            CompactInvertedIndex live = new CompactInvertedIndex();
+            live.setMetrics(metrics());
+            current.live.pendingPaths().forEach(live::registerFile);
+            flushedSkippedReindexes.addAndGet(current.live.skippedReindexCount());
+            snapshot = new Snapshot(segment, new AtomicBitSet(segment.documentCount()), live, generation);
+            deleteSegmentsBefore(generation);
+        } finally {
+            flushLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Takes the write lock once no bulk indexing is running. Waiting for a bulk indexing while queued for the lock
+     * would stall every other writer until the bulk indexing completes.
+     */
+    private long lockForFlush() throws InterruptedIOException {
+        while (true) {
+            synchronized (bulkIndexingMonitor) {
+                while (runningBulkIndexings > 0) {
+                    try {
+                        bulkIndexingMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for bulk indexing");
+                    }
+                }
+            }
+            long stamp = flushLock.writeLock();
+            synchronized (bulkIndexingMonitor) {
+                if (runningBulkIndexings == 0) {
+                    return stamp;
+                }
+            }
+            flushLock.unlockWrite(stamp);
+        }
+    }
+
+    private void deleteSegmentsBefore(long generation) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                long fileGeneration = segmentGeneration(file);
+                if (fileGeneration >= 0 && fileGeneration < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(WARNING, "Can't delete old index segments", e);
+        }
+    }
+
+    private static String segmentFileName(long generation) {
+        return SEGMENT_PREFIX + generation + SEGMENT_SUFFIX;
+    }
+
+    private static long segmentGeneration(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The segment, its deleted documents and the files indexed since the segment was written.
+     */
+    private record Snapshot(Segment segment, AtomicBitSet deletedDocs, CompactInvertedIndex live, long generation) {
+
+        boolean containsDocument(Path path) {
+            int docId = segment.findDocument(path);
+            return docId >= 0 && !deletedDocs.get(docId);
+        }
+
+        void deleteDocumentsUnder(Path path) {
+            segment.forEachDocumentUnder(path, deletedDocs::set);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.core.search.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the occurrences of a {@link Query.Phrase} in a file from its {@link PositionTable}, without reading the file.
+ */
+final class PhraseMatcher {
+
+    private PhraseMatcher() {
+    }
+
+    /**
+     * Returns the positions of the first term of every occurrence of the phrase.
+     *
+     * @param terms    the lower-cased terms of the phrase
+     * @param firstOnly whether to stop at the first occurrence
+     */
+    static List<Position> match(PositionTable positions, List<String> terms, int slop, boolean firstOnly) {
+        if (positions == null) {
+            return List.of();
+        }
+        PositionTable.Occurrences[] occurrences = new PositionTable.Occurrences[terms.size()];
+        for (int i = 0; i < occurrences.length; i++) {
+            occurrences[i] = positions.occurrences(terms.get(i));
+            if (occurrences[i] == null) {
+                return List.of();
+            }
+        }
+        List<Position> matches = new ArrayList<>();
+        int[] reachable = new int[occurrences[0].size()];
+        int[] next = new int[reachable.length];
+        for (int start = 0; start < occurrences[0].size(); start++) {
+            reachable[0] = occurrences[0].ordinals()[start];
+            int reachableCount = 1;
+            for (int i = 1; i < occurrences.length && reachableCount > 0; i++) {
+                // keeps the occurrences of the next term following a reachable one within the slop
+                int[] ordinals = occurrences[i].ordinals();
+                if (next.length < ordinals.length) {
+                    next = new int[ordinals.length];
+                }
+                int nextCount = 0;
+                int previous = 0;
+                for (int ordinal : ordinals) {
+                    while (previous < reachableCount && reachable[previous] + 1 + slop < ordinal) {
+                        previous++;
+                    }
+                    if (previous < reachableCount && reachable[previous] < ordinal) {
+                        next[nextCount++] = ordinal;
+                    }
+                }
+                int[] swap = reachable;
+                reachable = next;
+                next = swap;
+                reachableCount = nextCount;
+            }
+            if (reachableCount > 0) {
+                matches.add(new Position(occurrences[0].lines()[start], occurrences[0].columns()[start]));
+                if (firstOnly) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,127 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Positions of every term occurrence in one file: the token ordinal, used to match phrases,
+ * and the line and column, reported in search results. The occurrences of a term are stored as
+ * delta-encoded {@link VarInt}s in one byte array shared by all terms of the file.
+ */
+final class PositionTable {
+
+    private final String[] terms;
+
+    private final int[] offsets;
+
+    private final byte[] data;
+
+    private PositionTable(String[] terms, int[] offsets, byte[] data) {
+        this.terms = terms;
+        this.offsets = offsets;
+        this.data = data;
+    }
+
+    /**
+     * Occurrences of a term, in the order of their token ordinals.
+     */
+    record Occurrences(int[] ordinals, int[] lines, int[] columns) {
+
+        int size() {
+            return ordinals.length;
+        }
+    }
+
+    /**
+     * Returns the occurrences of the term, or {@code null} if the file does not contain it.
+     */
+    Occurrences occurrences(String term) {
+        int index = Arrays.binarySearch(terms, term);
+        if (index < 0) {
+            return null;
+        }
+        int offset = offsets[index];
+        int count = VarInt.read(data, offset);
+        offset += VarInt.length(count);
+        int[] ordinals = new int[count];
+        int[] lines = new int[count];
+        int[] columns = new int[count];
+        int ordinal = -1;
+        int line = 0;
+        int column = 0;
+        for (int i = 0; i < count; i++) {
+            int ordinalDelta = VarInt.read(data, offset);
+            offset += VarInt.length(ordinalDelta);
+            int lineDelta = VarInt.read(data, offset);
+            offset += VarInt.length(lineDelta);
+            int columnValue = VarInt.read(data, offset);
+            offset += VarInt.length(columnValue);
+            ordinal += ordinalDelta;
+            line += lineDelta;
+            column = lineDelta == 0 ? column + columnValue : columnValue;
+            ordinals[i] = ordinal;
+            lines[i] = line;
+            columns[i] = column;
+        }
+        return new Occurrences(ordinals, lines, columns);
+    }
+
+    /**
+     * Collects the occurrences of the terms of a file in the order they are read.
+     */
+    static final class Builder {
+
+        private final Map<String, int[]> occurrences = new HashMap<>();
+
+        private int ordinal;
+
+        void add(String term, int line, int column) {
+            int[] termOccurrences = occurrences.get(term);
+            if (termOccurrences == null) {
+                termOccurrences = new int[1 + 3 * 2];
+                occurrences.put(term, termOccurrences);
+            }
+            int length = termOccurrences[0];
+            if (length + 3 >= termOccurrences.length) {
+                termOccurrences = Arrays.copyOf(termOccurrences, termOccurrences.length * 2);
+                occurrences.put(term, termOccurrences);
+            }
+            termOccurrences[length + 1] = ordinal++;
+            termOccurrences[length + 2] = line;
+            termOccurrences[length + 3] = column;
+            termOccurrences[0] = length + 3;
+        }
+
+        PositionTable build() {
+            String[] terms = occurrences.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            int[] offsets = new int[terms.length];
+            byte[] data = new byte[64];
+            int length = 0;
+            for (int i = 0; i < terms.length; i++) {
+                int[] termOccurrences = occurrences.get(terms[i]);
+                int count = termOccurrences[0] / 3;
+                if (length + (1 + count * 3) * VarInt.MAX_LENGTH > data.length) {
+                    data = Arrays.copyOf(data, Math.max(data.length * 2, length + (1 + count * 3) * VarInt.MAX_LENGTH));
+                }
+                offsets[i] = length;
+                length = VarInt.write(data, length, count);
+                int previousOrdinal = -1;
+                int previousLine = 0;
+                int previousColumn = 0;
+                for (int j = 1; j <= termOccurrences[0]; j += 3) {
+                    int line = termOccurrences[j + 1];
+                    int column = termOccurrences[j + 2];
+                    length = VarInt.write(data, length, termOccurrences[j] - previousOrdinal);
+                    length = VarInt.write(data, length, line - previousLine);
+                    length = VarInt.write(data, length, line == previousLine ? column - previousColumn : column);
+                    previousOrdinal = termOccurrences[j];
+                    previousLine = line;
+                    previousColumn = column;
+                }
+            }
+            return new PositionTable(terms, offsets, Arrays.copyOf(data, length));
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.Arrays;
+
+/**
+ * Posting list of a single term: a sorted set of document ids stored as delta-encoded {@link VarInt}s, each one
+ * optionally followed by the frequency of the term in the document.
+ * Document ids are mostly assigned in increasing order, so adding a document usually appends a few bytes;
+ * other updates splice the encoded bytes in place.
+ * <p>
+ * A skip entry is kept for every {@link #SKIP_INTERVAL} documents, so a {@link Cursor} can jump close to a
+ * target id without decoding the ids before it. Cursors read a snapshot of the encoded bytes; bytes already
+ * visible to a cursor are copied before they are overwritten.
+ */
+final class PostingList {
+
+    static final int SKIP_INTERVAL = 64;
+
+    private final String term;
+
+    private final boolean frequencies;
+
+    private byte[] data;
+
+    private int length;
+
+    private int size;
+
+    private int last;
+
+    private int maxFrequency;
+
+    private int sharedLength;
+
+    private int[] skipDocIds;
+
+    private int[] skipOffsets;
+
+    // -1 once an insert or removal invalidated the skip entries; they are rebuilt by the next cursor
+    private int skipCount;
+
+    private int sharedSkipCount;
+
+    // the document id before the entry found by the last seek
+    private int seekPrevious;
+
+    PostingList(String term) {
+        this(term, false);
+    }
+
+    /**
+     * @param frequencies whether the frequency of the term is stored for every document
+     */
+    PostingList(String term, boolean frequencies) {
+        this.term = term;
+        this.frequencies = frequencies;
+        this.data = new byte[4];
+        this.last = -1;
+        this.skipDocIds = new int[0];
+        this.skipOffsets = new int[0];
+    }
+
+    String term() {
+        return term;
+    }
+
+    synchronized boolean add(int docId) {
+        return add(docId, 1);
+    }
+
+    /**
+     * Adds the document, or updates its frequency if it is already present.
+     *
+     * @return {@code true} if the document was added
+     */
+    synchronized boolean add(int docId, int frequency) {
+        maxFrequency = Math.max(maxFrequency, frequency);
+        if (docId > last) {
+            ensureCapacity(length + 2 * VarInt.MAX_LENGTH);
+            beforeWrite(length);
+            length = VarInt.write(data, length, docId - last);
+            if (frequencies) {
+                length = VarInt.write(data, length, frequency);
+            }
+            last = docId;
+            size++;
+            if (skipCount >= 0 && size % SKIP_INTERVAL == 0) {
+                addSkip(docId, length);
+            }
+            return true;
+        }
+        int offset = seek(docId);
+        int delta = VarInt.read(data, offset);
+        int next = offset + VarInt.length(delta);
+        int current = seekPrevious + delta;
+        if (current == docId) {
+            if (frequencies) {
+                updateFrequency(next, frequency);
+            }
+            return false;
+        }
+        byte[] replacement = new byte[3 * VarInt.MAX_LENGTH];
+        int replacementLength = VarInt.write(replacement, 0, docId - seekPrevious);
+        if (frequencies) {
+            replacementLength = VarInt.write(replacement, replacementLength, frequency);
+        }
+        replacementLength = VarInt.write(replacement, replacementLength, current - docId);
+        splice(offset, next, replacement, replacementLength);
+        size++;
+        return true;
+    }
+
+    private void updateFrequency(int offset, int frequency) {
+        int oldFrequency = VarInt.read(data, offset);
+        if (oldFrequency == frequency) {
+            return;
+        }
+        byte[] replacement = new byte[VarInt.MAX_LENGTH];
+        int replacementLength = VarInt.write(replacement, 0, frequency);
+        if (replacementLength == VarInt.length(oldFrequency)) {
+            beforeWrite(offset);
+            System.arraycopy(replacement, 0, data, offset, replacementLength);
+        } else {
+            splice(offset, offset + VarInt.length(oldFrequency), replacement, replacementLength);
+        }
+    }
+
+    synchronized boolean remove(int docId) {
+        if (docId > last) {
+            return false;
+        }
+        int offset = seek(docId);
+        int delta = VarInt.read(data, offset);
+        if (seekPrevious + delta != docId) {
+            return false;
+        }
+        int next = skipEntry(offset);
+        skipCount = -1;
+        if (next == length) {
+            length = offset;
+            last = seekPrevious;
+        } else {
+            int nextDelta = VarInt.read(data, next);
+            byte[] replacement = new byte[VarInt.MAX_LENGTH];
+            int replacementLength = VarInt.write(replacement, 0, delta + nextDelta);
+            splice(offset, next + VarInt.length(nextDelta), replacement, replacementLength);
+        }
+        size--;
+        return true;
+    }
+
+    synchronized boolean contains(int docId) {
+        if (docId > last) {
+            return false;
+        }
+        int offset = seek(docId);
+        return seekPrevious + VarInt.read(data, offset) == docId;
+    }
+
+    /**
+     * Returns the offset of the entry of the first document not lower than the given one, which must not be
+     * greater than the last document, and sets {@link #seekPrevious} to the document before it.
+     * Valid skip entries are used to start close to the document.
+     */
+    private int seek(int docId) {
+        int offset = 0;
+        int previous = -1;
+        int low = 0;
+        int high = skipCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (skipDocIds[middle] < docId) {
+                offset = skipOffsets[middle];
+                previous = skipDocIds[middle];
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        while (true) {
+            int current = previous + VarInt.read(data, offset);
+            if (current >= docId) {
+                seekPrevious = previous;
+                return offset;
+            }
+            previous = current;
+            offset = skipEntry(offset);
+        }
+    }
+
+    /**
+     * Returns the offset of the entry following the entry at the offset.
+     */
+    private int skipEntry(int offset) {
+        offset += VarInt.length(VarInt.read(data, offset));
+        return frequencies ? offset + VarInt.length(VarInt.read(data, offset)) : offset;
+    }
+
+    synchronized int[] toArray() {
+        int[] docIds = new int[size];
+        int offset = 0;
+        int current = -1;
+        for (int i = 0; i < size; i++) {
+            current += VarInt.read(data, offset);
+            offset = skipEntry(offset);
+            docIds[i] = current;
+        }
+        return docIds;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the highest frequency ever added, an upper bound of the frequency of the term in any document.
+     */
+    synchronized int maxFrequency() {
+        return maxFrequency;
+    }
+
+    /**
+     * Returns the number of bytes used by the encoded document ids.
+     */
+    synchronized int encodedLength() {
+        return length;
+    }
+
+    /**
+     * Returns a cursor over the document ids present at the time of the call.
+     */
+    synchronized Cursor cursor() {
+        if (skipCount < 0) {
+            rebuildSkips();
+        }
+        sharedLength = length;
+        sharedSkipCount = skipCount;
+        return new Cursor(data, length, size, frequencies, skipDocIds, skipOffsets, skipCount);
+    }
+
+    private void rebuildSkips() {
+        skipDocIds = new int[size / SKIP_INTERVAL];
+        skipOffsets = new int[skipDocIds.length];
+        skipCount = 0;
+        sharedSkipCount = 0;
+        int offset = 0;
+        int current = -1;
+        for (int i = 1; i <= size; i++) {
+            current += VarInt.read(data, offset);
+            offset = skipEntry(offset);
+            if (i % SKIP_INTERVAL == 0) {
+                addSkip(current, offset);
+            }
+        }
+    }
+
+    private void addSkip(int docId, int offset) {
+        if (skipCount == skipDocIds.length || skipCount < sharedSkipCount) {
+            int capacity = Math.max(4, skipDocIds.length * 2);
+            skipDocIds = Arrays.copyOf(skipDocIds, capacity);
+            skipOffsets = Arrays.copyOf(skipOffsets, capacity);
+            sharedSkipCount = 0;
+        }
+        skipDocIds[skipCount] = docId;
+        skipOffsets[skipCount] = offset;
+        skipCount++;
+    }
+
+    /**
+     * Copies the encoded bytes before a write at the offset would change bytes read by a cursor.
+     */
+    private void beforeWrite(int offset) {
+        if (offset < sharedLength) {
+            data = data.clone();
+            sharedLength = 0;
+        }
+    }
+
+    private void splice(int from, int to, byte[] replacement, int replacementLength) {
+        int newLength = length - (to - from) + replacementLength;
+        skipCount = -1;
+        ensureCapacity(newLength);
+        beforeWrite(from);
+        System.arraycopy(data, to, data, from + replacementLength, length - to);
+        System.arraycopy(replacement, 0, data, from, replacementLength);
+        length = newLength;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length + (data.length >> 1)));
+            sharedLength = 0;
+        }
+    }
+
+    /**
+     * Iterator over a snapshot of the posting list.
+     */
+    static final class Cursor extends DocIdIterator {
+
+        private final byte[] data;
+
+        private final int length;
+
+        private final int size;
+
+        private final boolean frequencies;
+
+        private final int[] skipDocIds;
+
+        private final int[] skipOffsets;
+
+        private final int skipCount;
+
+        private int offset;
+
+        private int index;
+
+        private int docId = -1;
+
+        private int frequency;
+
+        Cursor(byte[] data, int length, int size, boolean frequencies, int[] skipDocIds, int[] skipOffsets,
+               int skipCount) {
+            this.data = data;
+            this.length = length;
+            this.size = size;
+            this.frequencies = frequencies;
+            this.skipDocIds = skipDocIds;
+            this.skipOffsets = skipOffsets;
+            this.skipCount = skipCount;
+        }
+
+        int docId() {
+            return docId;
+        }
+
+        int nextDoc() {
+            if (offset >= length) {
+                return docId = NO_MORE_DOCS;
+            }
+            int delta = VarInt.read(data, offset);
+            offset += VarInt.length(delta);
+            if (frequencies) {
+                frequency = VarInt.read(data, offset);
+                offset += VarInt.length(frequency);
+            } else {
+                frequency = 1;
+            }
+            index++;
+            return docId += delta;
+        }
+
+        /**
+         * Returns the frequency of the term in the current document, {@code 1} if frequencies are not stored.
+         */
+        int frequency() {
+            return frequency;
+        }
+
+        int advance(int target) {
+            int skip = index / SKIP_INTERVAL;
+            if (skip < skipCount && skipDocIds[skip] < target) {
+                // gallop over the skip entries, then binary search the last one before the target
+                int step = 1;
+                while (skip + step < skipCount && skipDocIds[skip + step] < target) {
+                    skip += step;
+                    step <<= 1;
+                }
+                int high = Math.min(skip + step, skipCount) - 1;
+                while (skip < high) {
+                    int middle = (skip + high + 1) >>> 1;
+                    if (skipDocIds[middle] < target) {
+                        skip = middle;
+                    } else {
+                        high = middle - 1;
+                    }
+                }
+                offset = skipOffsets[skip];
+                docId = skipDocIds[skip];
+                index = (skip + 1) * SKIP_INTERVAL;
+            }
+            while (docId < target) {
+                nextDoc();
+            }
+            return docId;
+        }
+
+        long cost() {
+            return size;
+        }
+    }
+}
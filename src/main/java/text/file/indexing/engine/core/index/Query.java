@@ -0,0 +1,117 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.List;
+
+/**
+ * Boolean query over the terms of an index, usually created by {@link QueryParser#parse(String)}.
+ * A {@link Not} clause excludes files from the other clauses of an {@link And}; it can not be used on its own.
+ * A {@link Phrase} requires an index which stores positions.
+ * A {@link MultiTerm} query matches the files containing any of the indexed terms it matches; it requires an index
+ * which keeps a term dictionary and must match at most {@value MultiTerm#MAX_EXPANDED_TERMS} terms.
+ */
+public sealed interface Query {
+
+    record Term(String term) implements Query {
+
+        public Term {
+            if (term == null || term.isBlank()) {
+                throw new IllegalArgumentException("term must not be null or blank");
+            }
+        }
+    }
+
+    record And(List<Query> clauses) implements Query {
+
+        public And {
+            clauses = List.copyOf(clauses);
+            if (clauses.isEmpty()) {
+                throw new IllegalArgumentException("clauses must not be empty");
+            }
+        }
+    }
+
+    record Or(List<Query> clauses) implements Query {
+
+        public Or {
+            clauses = List.copyOf(clauses);
+            if (clauses.isEmpty()) {
+                throw new IllegalArgumentException("clauses must not be empty");
+            }
+        }
+    }
+
+    record Not(Query query) implements Query {
+
+        public Not {
+            if (query == null) {
+                throw new IllegalArgumentException("query must not be null");
+            }
+        }
+    }
+
+    /**
+     * Terms occurring in the given order, with at most {@code slop} other tokens between two consecutive terms.
+     * A slop of {@code 0} matches the exact phrase.
+     */
+    record Phrase(List<String> terms, int slop) implements Query {
+
+        public Phrase {
+            terms = List.copyOf(terms);
+            if (terms.isEmpty() || terms.stream().anyMatch(String::isBlank)) {
+                throw new IllegalArgumentException("terms must not be empty or blank");
+            }
+            if (slop < 0) {
+                throw new IllegalArgumentException("slop must not be negative");
+            }
+        }
+    }
+
+    /**
+     * Query matching several terms, expanded to the indexed terms when it is evaluated.
+     */
+    sealed interface MultiTerm extends Query {
+
+        int MAX_EXPANDED_TERMS = 1024;
+    }
+
+    /**
+     * Terms starting with the prefix.
+     */
+    record Prefix(String prefix) implements MultiTerm {
+
+        public Prefix {
+            if (prefix == null || prefix.isBlank()) {
+                throw new IllegalArgumentException("prefix must not be null or blank");
+            }
+        }
+    }
+
+    /**
+     * Terms matching the pattern, where {@code ?} stands for any char and {@code *} for any sequence of chars.
+     */
+    record Wildcard(String pattern) implements MultiTerm {
+
+        public Wildcard {
+            if (pattern == null || pattern.isBlank()) {
+                throw new IllegalArgumentException("pattern must not be null or blank");
+            }
+        }
+    }
+
+    /**
+     * Terms within {@code maxEdits} inserted, deleted or substituted chars of the term.
+     */
+    record Fuzzy(String term, int maxEdits) implements MultiTerm {
+
+        public static final int MAX_EDITS = 2;
+
+        public Fuzzy {
+            if (term == null || term.isBlank()) {
+                throw new IllegalArgumentException("term must not be null or blank");
+            }
+            if (maxEdits < 0 || maxEdits > MAX_EDITS) {
+                throw new IllegalArgumentException("maxEdits must be between 0 and " + MAX_EDITS);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses boolean queries such as {@code foo AND (bar OR baz) AND NOT qux}.
+ * <p>
+ * The operators {@code AND}, {@code OR} and {@code NOT} must be written in upper case; terms written next to each
+ * other are combined with {@code AND}. {@code NOT} binds tighter than {@code AND}, which binds tighter than
+ * {@code OR}. Parentheses group clauses. Terms in double quotes, split on whitespace, form a {@link Query.Phrase};
+ * a phrase followed by {@code ~n}, as in {@code "connection reset"~2}, allows {@code n} other tokens between
+ * its terms. A term ending with {@code *}, as in {@code conn*}, is a {@link Query.Prefix}; a term with other
+ * {@code *} or {@code ?} wildcards is a {@link Query.Wildcard}; a term followed by {@code ~} or {@code ~n}, as in
+ * {@code connection~1}, is a {@link Query.Fuzzy} matching terms within {@code n} edits, two by default.
+ */
+public final class QueryParser {
+
+    private final String query;
+
+    private int position;
+
+    private QueryParser(String query) {
+        this.query = query;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query is blank or malformed
+     */
+    public static Query parse(String query) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("query must not be null or blank");
+        }
+        QueryParser parser = new QueryParser(query);
+        Query parsed = parser.parseOr();
+        if (parser.peek() != null) {
+            throw parser.error("Unexpected '" + parser.peek() + "'");
+        }
+        return parsed;
+    }
+
+    private Query parseOr() {
+        List<Query> clauses = new ArrayList<>();
+        clauses.add(parseAnd());
+        while ("OR".equals(peek())) {
+            next();
+            clauses.add(parseAnd());
+        }
+        return clauses.size() == 1 ? clauses.get(0) : new Query.Or(flatten(clauses, Query.Or.class));
+    }
+
+    private Query parseAnd() {
+        List<Query> clauses = new ArrayList<>();
+        clauses.add(parseUnary());
+        String token;
+        while ((token = peek()) != null && !token.equals("OR") && !token.equals(")")) {
+            if (token.equals("AND")) {
+                next();
+            }
+            clauses.add(parseUnary());
+        }
+        return clauses.size() == 1 ? clauses.get(0) : new Query.And(flatten(clauses, Query.And.class));
+    }
+
+    private Query parseUnary() {
+        String token = next();
+        if (token == null) {
+            throw error("Unexpected end of query");
+        }
+        switch (token) {
+            case "NOT":
+                return new Query.Not(parseUnary());
+            case "(":
+                Query group = parseOr();
+                if (!")".equals(next())) {
+                    throw error("Missing ')'");
+                }
+                return group;
+            case ")":
+            case "AND":
+            case "OR":
+                throw error("Unexpected '" + token + "'");
+            default:
+                return token.charAt(0) == '"' ? phrase(token) : term(token);
+        }
+    }
+
+    private Query phrase(String token) {
+        int end = token.lastIndexOf('"');
+        if (end == 0) {
+            throw error("Missing closing '\"'");
+        }
+        List<String> terms = List.of(token.substring(1, end).trim().split("\\s+"));
+        if (terms.get(0).isEmpty()) {
+            throw error("Empty phrase");
+        }
+        int slop = 0;
+        String suffix = token.substring(end + 1);
+        if (!suffix.isEmpty()) {
+            if (!suffix.matches("~\\d{1,9}")) {
+                throw error("Unexpected '" + suffix + "'");
+            }
+            slop = Integer.parseInt(suffix.substring(1));
+        }
+        return new Query.Phrase(terms, slop);
+    }
+
+    private Query term(String token) {
+        int tilde = token.lastIndexOf('~');
+        if (tilde > 0 && token.substring(tilde + 1).matches("\\d?")) {
+            int maxEdits = tilde == token.length() - 1 ? Query.Fuzzy.MAX_EDITS : token.charAt(tilde + 1) - '0';
+            if (maxEdits > Query.Fuzzy.MAX_EDITS) {
+                throw error("At most " + Query.Fuzzy.MAX_EDITS + " edits are allowed");
+            }
+            return new Query.Fuzzy(token.substring(0, tilde), maxEdits);
+        }
+        int wildcard = token.indexOf('*');
+        if (token.indexOf('?') < 0 && wildcard > 0 && wildcard == token.length() - 1) {
+            return new Query.Prefix(token.substring(0, wildcard));
+        }
+        if (wildcard >= 0 || token.indexOf('?') >= 0) {
+            return new Query.Wildcard(token);
+        }
+        return new Query.Term(token);
+    }
+
+    private static List<Query> flatten(List<Query> clauses, Class<? extends Query> type) {
+        List<Query> flattened = new ArrayList<>();
+        for (Query clause : clauses) {
+            if (clause instanceof Query.And and && type == Query.And.class) {
+                flattened.addAll(and.clauses());
+            } else if (clause instanceof Query.Or or && type == Query.Or.class) {
+                flattened.addAll(or.clauses());
+            } else {
+                flattened.add(clause);
+            }
+        }
+        return flattened;
+    }
+
+    private String peek() {
+        int start = position;
+        String token = next();
+        position = start;
+        return token;
+    }
+
+    private String next() {
+        while (position < query.length() && Character.isWhitespace(query.charAt(position))) {
+            position++;
+        }
+        if (position == query.length()) {
+            return null;
+        }
+        int start = position;
+        char c = query.charAt(position);
+        if (c == '(' || c == ')') {
+            position++;
+        } else if (c == '"') {
+            int end = query.indexOf('"', position + 1);
+            position = end < 0 ? query.length() : end + 1;
+            while (position < query.length() && !Character.isWhitespace(query.charAt(position))
+                    && query.charAt(position) != '(' && query.charAt(position) != ')') {
+                position++;
+            }
+        } else {
+            while (position < query.length() && !Character.isWhitespace(query.charAt(position))
+                    && query.charAt(position) != '(' && query.charAt(position) != ')') {
+                position++;
+            }
+        }
+        return query.substring(start, position);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of query: " + query);
+    }
+}
@@ -0,0 +1,320 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts from a regular expression literals which every match contains, to prune the files searched for it by
+ * their trigrams. The result is a conjunction of clauses, each a disjunction of literals: a file containing no
+ * literal of some clause can't contain a match. The extraction is conservative: any construct it does not
+ * understand as a run of literal chars, a character class, a backreference or an assertion for example, only ends
+ * the current literal, and a regex it can't analyze at all, such as one with comments, yields no clause.
+ * <p>
+ * Case-insensitive regexes are pruned as well, since trigrams are indexed lower-cased, but not with Unicode case
+ * folding, which matches chars lower-casing differently, such as the long s and {@code s}.
+ */
+final class RegexLiterals {
+
+    private final String regex;
+
+    private int index;
+
+    private RegexLiterals(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * Returns the clauses every match of the regex satisfies, none if any text may match.
+     */
+    static List<List<String>> requiredLiterals(Pattern regex) {
+        if ((regex.flags() & Pattern.LITERAL) != 0) {
+            return regex.pattern().isEmpty() ? List.of() : List.of(List.of(regex.pattern()));
+        }
+        // Unicode character classes imply Unicode case folding
+        int unanalyzable = Pattern.COMMENTS | Pattern.CANON_EQ | Pattern.UNICODE_CASE | Pattern.UNICODE_CHARACTER_CLASS;
+        if ((regex.flags() & unanalyzable) != 0) {
+            return List.of();
+        }
+        try {
+            RegexLiterals parser = new RegexLiterals(regex.pattern());
+            List<Set<String>> clauses = parser.alternation();
+            List<List<String>> literals = new ArrayList<>();
+            clauses.forEach(clause -> literals.add(List.copyOf(clause)));
+            return literals;
+        } catch (Unanalyzable e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Parses branches separated by {@code |} up to a closing parenthesis or the end. A match contains a literal of
+     * one branch, so the result is at most one clause, made of the best clause of every branch.
+     */
+    private List<Set<String>> alternation() {
+        List<List<Set<String>>> branches = new ArrayList<>();
+        branches.add(sequence());
+        while (index < regex.length() && regex.charAt(index) == '|') {
+            index++;
+            branches.add(sequence());
+        }
+        if (branches.size() == 1) {
+            return branches.get(0);
+        }
+        Set<String> clause = new LinkedHashSet<>();
+        for (List<Set<String>> branch : branches) {
+            if (branch.isEmpty()) {
+                return List.of();
+            }
+            clause.addAll(best(branch));
+        }
+        return List.of(clause);
+    }
+
+    /**
+     * Returns the clause whose shortest literal is the longest, the most selective one.
+     */
+    private static Set<String> best(List<Set<String>> clauses) {
+        Set<String> best = null;
+        int bestLength = -1;
+        for (Set<String> clause : clauses) {
+            int length = clause.stream().mapToInt(String::length).min().orElse(0);
+            if (length > bestLength) {
+                best = clause;
+                bestLength = length;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Parses the atoms of one branch, collecting the runs of literal chars.
+     */
+    private List<Set<String>> sequence() {
+        List<Set<String>> clauses = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        while (index < regex.length()) {
+            char c = regex.charAt(index);
+            if (c == '|' || c == ')') {
+                break;
+            }
+            if (c == '(') {
+                List<Set<String>> group = group();
+                endRun(run, clauses);
+                if (!skipQuantifier()) {
+                    clauses.addAll(group);
+                }
+            } else if (c == '[') {
+                skipClass();
+                endRun(run, clauses);
+                skipQuantifier();
+            } else if (c == '\\') {
+                String literal = escape();
+                appendAtom(literal, run, clauses);
+            } else if (c == '.' || c == '^' || c == '$') {
+                index++;
+                endRun(run, clauses);
+                skipQuantifier();
+            } else {
+                int codePoint = regex.codePointAt(index);
+                index += Character.charCount(codePoint);
+                appendAtom(new String(Character.toChars(codePoint)), run, clauses);
+            }
+        }
+        endRun(run, clauses);
+        return clauses;
+    }
+
+    /**
+     * Appends the literal of an atom, or ends the run if the atom is not a literal, according to its quantifier.
+     */
+    private void appendAtom(String literal, StringBuilder run, List<Set<String>> clauses) {
+        int quantifierStart = index;
+        boolean optional = skipQuantifier();
+        boolean quantified = index != quantifierStart;
+        if (literal == null || optional) {
+            endRun(run, clauses);
+        } else {
+            run.append(literal);
+            if (quantified) {
+                // a repeated atom is required once, but the next atom does not follow its first occurrence
+                endRun(run, clauses);
+            }
+        }
+    }
+
+    private static void endRun(StringBuilder run, List<Set<String>> clauses) {
+        if (!run.isEmpty()) {
+            clauses.add(Set.of(run.toString()));
+            run.setLength(0);
+        }
+    }
+
+    /**
+     * Parses a group and returns its clauses; the clauses of lookarounds are dropped, as they consume nothing.
+     */
+    private List<Set<String>> group() {
+        index++;
+        boolean lookaround = false;
+        if (regex.startsWith("?", index)) {
+            index++;
+            if (regex.startsWith("=", index) || regex.startsWith("!", index)) {
+                lookaround = true;
+                index++;
+            } else if (regex.startsWith("<=", index) || regex.startsWith("<!", index)) {
+                lookaround = true;
+                index += 2;
+            } else if (regex.startsWith("<", index)) {
+                index = regex.indexOf('>', index) + 1;
+            } else if (regex.startsWith(">", index)) {
+                index++;
+            } else {
+                // inline flags, "(?i)" alone or "(?i:" opening a group
+                int end = index;
+                while (end < regex.length() && regex.charAt(end) != ')' && regex.charAt(end) != ':') {
+                    end++;
+                }
+                String flags = regex.substring(index, end);
+                int disabled = flags.indexOf('-');
+                String enabled = disabled < 0 ? flags : flags.substring(0, disabled);
+                if (enabled.indexOf('x') >= 0 || enabled.indexOf('u') >= 0 || enabled.indexOf('U') >= 0) {
+                    throw new Unanalyzable();
+                }
+                index = end + 1;
+                if (regex.charAt(end) == ')') {
+                    return List.of();
+                }
+            }
+        }
+        List<Set<String>> clauses = alternation();
+        if (index >= regex.length() || regex.charAt(index) != ')') {
+            throw new Unanalyzable();
+        }
+        index++;
+        return lookaround ? List.of() : clauses;
+    }
+
+    /**
+     * Skips a quantifier and its lazy or possessive suffix, if any.
+     *
+     * @return whether the quantifier allows no occurrence of the atom
+     */
+    private boolean skipQuantifier() {
+        if (index >= regex.length()) {
+            return false;
+        }
+        char c = regex.charAt(index);
+        boolean optional;
+        if (c == '?' || c == '*') {
+            optional = true;
+            index++;
+        } else if (c == '+') {
+            optional = false;
+            index++;
+        } else if (c == '{') {
+            int end = regex.indexOf('}', index);
+            if (end < 0) {
+                throw new Unanalyzable();
+            }
+            String min = regex.substring(index + 1, end).split(",", -1)[0].trim();
+            optional = min.isEmpty() || Integer.parseInt(min) == 0;
+            index = end + 1;
+        } else {
+            return false;
+        }
+        if (index < regex.length() && (regex.charAt(index) == '?' || regex.charAt(index) == '+')) {
+            index++;
+        }
+        return optional;
+    }
+
+    private void skipClass() {
+        index++;
+        if (regex.startsWith("^", index)) {
+            index++;
+        }
+        // a closing bracket right after the opening one is a literal
+        if (regex.startsWith("]", index)) {
+            index++;
+        }
+        while (index < regex.length()) {
+            char c = regex.charAt(index);
+            if (c == '\\') {
+                escape();
+            } else if (c == '[') {
+                skipClass();
+            } else if (c == ']') {
+                index++;
+                return;
+            } else {
+                index++;
+            }
+        }
+        throw new Unanalyzable();
+    }
+
+    /**
+     * Parses an escape sequence and returns the literal it stands for, or null if it is not a literal.
+     */
+    private String escape() {
+        index++;
+        if (index >= regex.length()) {
+            throw new Unanalyzable();
+        }
+        char c = regex.charAt(index++);
+        if (c == 'Q') {
+            int end = regex.indexOf("\\E", index);
+            String quoted = regex.substring(index, end < 0 ? regex.length() : end);
+            index = end < 0 ? regex.length() : end + 2;
+            return quoted.isEmpty() ? null : quoted;
+        }
+        if (!Character.isLetterOrDigit(c)) {
+            return String.valueOf(c);
+        }
+        switch (c) {
+            case 'x' -> skipBraced(2);
+            case 'u' -> index += 4;
+            case 'c' -> index++;
+            case 'p', 'P', 'N' -> skipBraced(1);
+            case 'k' -> index = regex.indexOf('>', index) + 1;
+            case '0' -> {
+                for (int digits = 0; digits < 3 && index < regex.length()
+                        && regex.charAt(index) >= '0' && regex.charAt(index) <= '7'; digits++) {
+                    index++;
+                }
+            }
+            default -> {
+                // a backreference takes all the following digits
+                while (Character.isDigit(c) && index < regex.length() && Character.isDigit(regex.charAt(index))) {
+                    index++;
+                }
+            }
+        }
+        if (index <= 0 || index > regex.length()) {
+            throw new Unanalyzable();
+        }
+        return null;
+    }
+
+    private void skipBraced(int unbracedLength) {
+        if (regex.startsWith("{", index)) {
+            index = regex.indexOf('}', index) + 1;
+        } else {
+            index += unbracedLength;
+        }
+    }
+
+    /**
+     * Thrown when the regex is not understood well enough to extract literals.
+     */
+    private static final class Unanalyzable extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        Unanalyzable() {
+            super(null, null, false, false);
+        }
+    }
+}
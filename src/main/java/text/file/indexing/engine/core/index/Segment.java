@@ -0,0 +1,221 @@
+package text.file.indexing.engine.core.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable index segment written by {@link SegmentWriter}: a sorted term dictionary, compressed posting lists
+ * and a path-sorted document table. Segments are read in place from a memory-mapped file or a heap buffer,
+ * so opening one costs nothing proportional to its size. All reads use absolute positions, so a segment
+ * can be shared by any number of threads.
+ */
+final class Segment {
+
+    private final ByteBuffer buffer;
+
+    private final int termCount;
+
+    private final int termOffsetsPosition;
+
+    private final int documentCount;
+
+    private final int documentOffsetsPosition;
+
+    Segment(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int footer = buffer.limit() - SegmentWriter.FOOTER_LENGTH;
+        if (footer < 0 || buffer.getInt(footer + 5 * Integer.BYTES) != SegmentWriter.MAGIC) {
+            throw new IOException("Not an index segment");
+        }
+        if (buffer.getInt(footer + 4 * Integer.BYTES) != SegmentWriter.VERSION) {
+            throw new IOException("Unsupported index segment version");
+        }
+        termCount = buffer.getInt(footer);
+        termOffsetsPosition = buffer.getInt(footer + Integer.BYTES);
+        documentCount = buffer.getInt(footer + 2 * Integer.BYTES);
+        documentOffsetsPosition = buffer.getInt(footer + 3 * Integer.BYTES);
+    }
+
+    static Segment map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index segment exceeds 2 GB: " + file);
+            }
+            return new Segment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static Segment empty() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new SegmentWriter(out).close();
+            return new Segment(ByteBuffer.wrap(out.toByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    int documentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Returns the number of postings of all terms, deleted documents included.
+     */
+    long postingCount() {
+        long count = 0;
+        for (int ordinal = 0; ordinal < termCount; ordinal++) {
+            count += documentFrequency(ordinal);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the ordinal of the term, or {@code -1} if the segment does not contain it.
+     */
+    int findTerm(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareTerm(middle, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    byte[] term(int ordinal) {
+        int offset = termOffset(ordinal);
+        int length = VarInt.read(buffer, offset);
+        byte[] term = new byte[length];
+        buffer.get(offset + VarInt.length(length), term);
+        return term;
+    }
+
+    int documentFrequency(int ordinal) {
+        int offset = termOffset(ordinal);
+        int length = VarInt.read(buffer, offset);
+        return VarInt.read(buffer, offset + VarInt.length(length) + length);
+    }
+
+    /**
+     * Decodes the sorted document ids of the term.
+     */
+    int[] postings(int ordinal) {
+        int offset = termOffset(ordinal);
+        int length = VarInt.read(buffer, offset);
+        offset += VarInt.length(length) + length;
+        int count = VarInt.read(buffer, offset);
+        offset += VarInt.length(count);
+        offset += VarInt.length(VarInt.read(buffer, offset));
+        int[] docIds = new int[count];
+        int current = -1;
+        for (int i = 0; i < count; i++) {
+            int delta = VarInt.read(buffer, offset);
+            offset += VarInt.length(delta);
+            current += delta;
+            docIds[i] = current;
+        }
+        return docIds;
+    }
+
+    String pathString(int docId) {
+        int offset = documentOffset(docId) + 2 * Long.BYTES;
+        int length = VarInt.read(buffer, offset);
+        byte[] path = new byte[length];
+        buffer.get(offset + VarInt.length(length), path);
+        return new String(path, StandardCharsets.UTF_8);
+    }
+
+    Path path(int docId) {
+        return Path.of(pathString(docId));
+    }
+
+    FileFingerprint fingerprint(int docId) {
+        int offset = documentOffset(docId);
+        return new FileFingerprint(buffer.getLong(offset), buffer.getLong(offset + Long.BYTES));
+    }
+
+    /**
+     * Returns the id of the first document whose path is not less than the given path,
+     * or {@link #documentCount()} if there is none.
+     */
+    int firstDocumentNotBefore(Path path) {
+        int low = 0;
+        int high = documentCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (path(middle).compareTo(path) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the id of the document with the path, or {@code -1} if the segment does not contain it.
+     */
+    int findDocument(Path path) {
+        int docId = firstDocumentNotBefore(path);
+        return docId < documentCount && path(docId).equals(path) ? docId : -1;
+    }
+
+    /**
+     * Passes the ids of the documents equal to or located under the given path to the action.
+     * Documents are sorted by path, so all candidates are found in one contiguous range.
+     */
+    void forEachDocumentUnder(Path path, IntConsumer action) {
+        String prefix = path.toString();
+        for (int docId = firstDocumentNotBefore(path); docId < documentCount; docId++) {
+            Path documentPath = path(docId);
+            if (!documentPath.toString().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            if (documentPath.startsWith(path)) {
+                action.accept(docId);
+            }
+        }
+    }
+
+    private int compareTerm(int ordinal, byte[] key) {
+        int offset = termOffset(ordinal);
+        int length = VarInt.read(buffer, offset);
+        offset += VarInt.length(length);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(offset + i), key[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int termOffset(int ordinal) {
+        return buffer.getInt(termOffsetsPosition + ordinal * Integer.BYTES);
+    }
+
+    private int documentOffset(int docId) {
+        return buffer.getInt(documentOffsetsPosition + docId * Integer.BYTES);
+    }
+}
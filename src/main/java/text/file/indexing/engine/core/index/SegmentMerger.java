@@ -0,0 +1,177 @@
+package text.file.indexing.engine.core.index;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Writes the live documents of several segments and of an optional in-memory {@link CompactInvertedIndex}
+ * into one new segment. Deleted segment documents are dropped and the document ids are rewritten to the
+ * positions of the documents in the new path-sorted document table.
+ */
+final class SegmentMerger {
+
+    private final List<Segment> segments;
+
+    private final List<AtomicBitSet> deletedDocs;
+
+    private final CompactInvertedIndex live;
+
+    /**
+     * @param segments    the segments to merge, from the oldest to the newest; if a file is present in several
+     *                    sources, the version from the newest one is kept
+     * @param deletedDocs the deleted documents of every segment
+     * @param live        the in-memory documents to merge, newer than all segments, or {@code null}
+     */
+    SegmentMerger(List<Segment> segments, List<AtomicBitSet> deletedDocs, CompactInvertedIndex live) {
+        this.segments = segments;
+        this.deletedDocs = deletedDocs;
+        this.live = live;
+    }
+
+    /**
+     * Writes the merged segment.
+     *
+     * @return for every merged segment, the new id of each of its documents, or {@code -1} for dropped documents
+     */
+    int[][] merge(SegmentWriter writer) throws IOException {
+        List<Document> documents = new ArrayList<>();
+        for (int source = 0; source < segments.size(); source++) {
+            Segment segment = segments.get(source);
+            for (int docId = 0; docId < segment.documentCount(); docId++) {
+                if (!deletedDocs.get(source).get(docId)) {
+                    documents.add(new Document(segment.path(docId), segment.fingerprint(docId), source, docId));
+                }
+            }
+        }
+        if (live != null) {
+            live.forEachIndexedFile(file ->
+                    documents.add(new Document(file.path(), file.fingerprint(), segments.size(), file.docId())));
+        }
+        documents.sort(Comparator.comparing(Document::path));
+
+        int[][] newDocIds = new int[segments.size() + 1][];
+        for (int source = 0; source < segments.size(); source++) {
+            newDocIds[source] = new int[segments.get(source).documentCount()];
+            Arrays.fill(newDocIds[source], -1);
+        }
+        newDocIds[segments.size()] = new int[documents.stream()
+                .filter(document -> document.source == segments.size())
+                .mapToInt(Document::docId).max().orElse(-1) + 1];
+        Arrays.fill(newDocIds[segments.size()], -1);
+
+        List<Document> merged = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            if (!merged.isEmpty() && merged.get(merged.size() - 1).path.equals(document.path)) {
+                // a newer version of the same file replaces the older one
+                Document replaced = merged.remove(merged.size() - 1);
+                newDocIds[replaced.source][replaced.docId] = -1;
+            }
+            newDocIds[document.source][document.docId] = merged.size();
+            merged.add(document);
+        }
+
+        writeTerms(newDocIds, writer);
+        for (Document document : merged) {
+            writer.addDocument(document.path.toString(), document.fingerprint);
+        }
+        return Arrays.copyOf(newDocIds, segments.size());
+    }
+
+    /**
+     * Merges the term dictionaries of all sources, ordered by UTF-8 bytes.
+     */
+    private void writeTerms(int[][] newDocIds, SegmentWriter writer) throws IOException {
+        PriorityQueue<TermCursor> cursors = new PriorityQueue<>();
+        for (int source = 0; source < segments.size(); source++) {
+            Segment segment = segments.get(source);
+            TermCursor cursor = new TermCursor(segment.termCount(), segment::term, segment::postings, newDocIds[source]);
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+        if (live != null) {
+            List<PostingList> liveTerms = new ArrayList<>();
+            List<byte[]> liveTermBytes = new ArrayList<>();
+            live.forEachPostingList(liveTerms::add);
+            liveTerms.forEach(postings -> liveTermBytes.add(postings.term().getBytes(StandardCharsets.UTF_8)));
+            Integer[] order = new Integer[liveTerms.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (first, second) -> Arrays.compareUnsigned(liveTermBytes.get(first), liveTermBytes.get(second)));
+            TermCursor cursor = new TermCursor(order.length, ordinal -> liveTermBytes.get(order[ordinal]),
+                    ordinal -> live.currentDocIds(liveTerms.get(order[ordinal])), newDocIds[segments.size()]);
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+
+        int[] docIds = new int[64];
+        while (!cursors.isEmpty()) {
+            byte[] term = cursors.peek().term;
+            int count = 0;
+            while (!cursors.isEmpty() && Arrays.equals(cursors.peek().term, term)) {
+                TermCursor cursor = cursors.poll();
+                for (int docId : cursor.postings()) {
+                    int newDocId = docId < cursor.newDocIds.length ? cursor.newDocIds[docId] : -1;
+                    if (newDocId >= 0) {
+                        if (count == docIds.length) {
+                            docIds = Arrays.copyOf(docIds, count * 2);
+                        }
+                        docIds[count++] = newDocId;
+                    }
+                }
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+            }
+            if (count > 0) {
+                Arrays.sort(docIds, 0, count);
+                writer.addTerm(term, docIds, count);
+            }
+        }
+    }
+
+    private record Document(Path path, FileFingerprint fingerprint, int source, int docId) {
+    }
+
+    private static final class TermCursor implements Comparable<TermCursor> {
+
+        private final int termCount;
+
+        private final IntFunction<byte[]> terms;
+
+        private final IntFunction<int[]> postings;
+
+        private final int[] newDocIds;
+
+        private int ordinal = -1;
+
+        private byte[] term;
+
+        TermCursor(int termCount, IntFunction<byte[]> terms, IntFunction<int[]> postings, int[] newDocIds) {
+            this.termCount = termCount;
+            this.terms = terms;
+            this.postings = postings;
+            this.newDocIds = newDocIds;
+        }
+
+        boolean next() {
+            if (++ordinal >= termCount) {
+                return false;
+            }
+            term = terms.apply(ordinal);
+            return true;
+        }
+
+        int[] postings() {
+            return postings.apply(ordinal);
+        }
+
+        @Override
+        public int compareTo(TermCursor other) {
+            return Arrays.compareUnsigned(term, other.term);
+        }
+    }
+}
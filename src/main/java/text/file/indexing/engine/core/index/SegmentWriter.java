@@ -0,0 +1,156 @@
+package text.file.indexing.engine.core.index;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes an immutable index segment read by {@link Segment}.
+ * Terms must be added in increasing unsigned UTF-8 byte order and documents in increasing path order;
+ * document ids used in posting lists are the positions of the documents in that order.
+ * <p>
+ * Layout, all offsets relative to the segment start:
+ * <pre>
+ * term entries     term length, term UTF-8 bytes, document count, postings length, delta-encoded document ids
+ * term offsets     int per term
+ * document entries size (long), last modified (long), path length, path UTF-8 bytes
+ * document offsets int per document
+ * footer           term count, term offsets position, document count, document offsets position, version, magic
+ * </pre>
+ */
+final class SegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x54464953;
+
+    static final int VERSION = 1;
+
+    static final int FOOTER_LENGTH = 6 * Integer.BYTES;
+
+    private final CountingOutputStream out;
+
+    private final DataOutputStream data;
+
+    private int[] termOffsets;
+
+    private int termCount;
+
+    private int[] documentOffsets;
+
+    private int documentCount;
+
+    private int documentOffsetsPosition = -1;
+
+    private int termOffsetsPosition = -1;
+
+    private byte[] lastTerm;
+
+    private byte[] postingsBuffer;
+
+    SegmentWriter(OutputStream out) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.data = new DataOutputStream(this.out);
+        this.termOffsets = new int[1024];
+        this.documentOffsets = new int[1024];
+        this.postingsBuffer = new byte[1024];
+    }
+
+    /**
+     * Writes the posting list of the term.
+     *
+     * @param docIds sorted document ids, at least one
+     */
+    void addTerm(byte[] term, int[] docIds, int count) throws IOException {
+        if (termOffsetsPosition >= 0) {
+            throw new IllegalStateException("Terms must be added before documents");
+        }
+        if (lastTerm != null && Arrays.compareUnsigned(lastTerm, term) >= 0) {
+            throw new IllegalArgumentException("Terms must be added in increasing order");
+        }
+        lastTerm = term;
+        if (termCount == termOffsets.length) {
+            termOffsets = Arrays.copyOf(termOffsets, termCount * 2);
+        }
+        termOffsets[termCount++] = position();
+        int postingsLength = 0;
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            if (postingsLength + VarInt.MAX_LENGTH > postingsBuffer.length) {
+                postingsBuffer = Arrays.copyOf(postingsBuffer, postingsBuffer.length * 2);
+            }
+            postingsLength = VarInt.write(postingsBuffer, postingsLength, docIds[i] - previous);
+            previous = docIds[i];
+        }
+        VarInt.write(out, term.length);
+        out.write(term);
+        VarInt.write(out, count);
+        VarInt.write(out, postingsLength);
+        out.write(postingsBuffer, 0, postingsLength);
+    }
+
+    void addDocument(String path, FileFingerprint fingerprint) throws IOException {
+        if (termOffsetsPosition < 0) {
+            termOffsetsPosition = position();
+            writeInts(termOffsets, termCount);
+        }
+        if (documentCount == documentOffsets.length) {
+            documentOffsets = Arrays.copyOf(documentOffsets, documentCount * 2);
+        }
+        documentOffsets[documentCount++] = position();
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        data.writeLong(fingerprint.size());
+        data.writeLong(fingerprint.lastModified());
+        VarInt.write(out, pathBytes.length);
+        out.write(pathBytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (termOffsetsPosition < 0) {
+            termOffsetsPosition = position();
+            writeInts(termOffsets, termCount);
+        }
+        documentOffsetsPosition = position();
+        writeInts(documentOffsets, documentCount);
+        data.writeInt(termCount);
+        data.writeInt(termOffsetsPosition);
+        data.writeInt(documentCount);
+        data.writeInt(documentOffsetsPosition);
+        data.writeInt(VERSION);
+        data.writeInt(MAGIC);
+        data.close();
+    }
+
+    private void writeInts(int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            data.writeInt(values[i]);
+        }
+    }
+
+    private int position() throws IOException {
+        if (out.count > Integer.MAX_VALUE - FOOTER_LENGTH) {
+            throw new IOException("Index segment exceeds 2 GB");
+        }
+        return (int) out.count;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.metrics.IndexMetrics;
+import text.file.indexing.engine.utils.PathValidator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Log-structured index for write-heavy watched trees.
+ * <p>
+ * New and reindexed files go to a small mutable {@link CompactInvertedIndex} buffer. Once the buffer holds
+ * {@code maxBufferedFiles} files it is sealed into an immutable {@link Segment} in the background. Removing or
+ * reindexing a file only marks its old document as deleted in the deletion bit set of its segment. A tiered
+ * merge policy merges {@code mergeFactor} segments of a similar size into one, and rewrites segments whose
+ * ratio of deleted documents exceeds {@code maxDeletedRatio}, also in the background.
+ * <p>
+ * Searches read an immutable list of segments and the current buffer without locking. Writers are only paused
+ * while a buffer is sealed or a merged segment replaces its sources, never while segments are merged. A buffer
+ * is not sealed while a bulk indexing writes into it; sealing is retried once the bulk indexing completes.
+ */
+public class SegmentedIndex extends Index implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SegmentedIndex.class.getName());
+
+    public static final int DEFAULT_MAX_BUFFERED_FILES = 1024;
+
+    public static final int DEFAULT_MERGE_FACTOR = 10;
+
+    public static final double DEFAULT_MAX_DELETED_RATIO = 0.5;
+
+    private final int maxBufferedFiles;
+
+    private final int mergeFactor;
+
+    private final double maxDeletedRatio;
+
+    private final StampedLock sealLock;
+
+    private final ExecutorService mergeExecutor;
+
+    private final AtomicBoolean sealScheduled;
+
+    // the bulk indexings writing into the current buffer, which is not sealed meanwhile
+    private final AtomicInteger runningBulkIndexings;
+
+    // the skipped reindexes counted by the buffers sealed so far
+    private final AtomicLong sealedSkippedReindexes;
+
+    private volatile State state;
+
+    public SegmentedIndex() {
+        this(DEFAULT_MAX_BUFFERED_FILES, DEFAULT_MERGE_FACTOR, DEFAULT_MAX_DELETED_RATIO);
+    }
+
+    /**
+     * @param maxBufferedFiles the number of files in the mutable buffer which triggers sealing it into a segment
+     * @param mergeFactor      the number of segments of a similar size merged together
+     * @param maxDeletedRatio  the ratio of deleted documents which triggers rewriting a segment
+     */
+    public SegmentedIndex(int maxBufferedFiles, int mergeFactor, double maxDeletedRatio) {
+        if (maxBufferedFiles < 1) {
+            throw new IllegalArgumentException("maxBufferedFiles must be positive");
+        }
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("mergeFactor must be at least 2");
+        }
+        if (maxDeletedRatio <= 0 || maxDeletedRatio > 1) {
+            throw new IllegalArgumentException("maxDeletedRatio must be in (0, 1]");
+        }
+        this.maxBufferedFiles = maxBufferedFiles;
+        this.mergeFactor = mergeFactor;
+        this.maxDeletedRatio = maxDeletedRatio;
+        this.sealLock = new StampedLock();
+        this.mergeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "segment-merging");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sealScheduled = new AtomicBoolean();
+        this.runningBulkIndexings = new AtomicInteger();
+        this.sealedSkippedReindexes = new AtomicLong();
+        this.state = new State(List.of(), new CompactInvertedIndex());
+    }
+
+    void addFilesToIndex(Collection<Path> paths, Token token) {
+        long stamp = sealLock.readLock();
+        try {
+            State current = state;
+            PathValidator.getValidPathSet(paths).stream()
+                    .filter(path -> !current.containsDocument(path))
+                    .forEach(current.buffer::registerFile);
+        } finally {
+            sealLock.unlockRead(stamp);
+        }
+    }
+
+    void indexFiles(Token token) {
+        long stamp = sealLock.readLock();
+        try {
+            state.buffer.indexFiles(token);
+        } finally {
+            sealLock.unlockRead(stamp);
+        }
+        maybeSeal();
+    }
+
+    @Override
+    IndexingTask indexFilesAsync(Collection<Path> paths, Token token, int parallelism) {
+        long stamp = sealLock.readLock();
+        try {
+            // registered under the lock, so no seal can swap the buffer until the bulk indexing completes
+            runningBulkIndexings.incrementAndGet();
+            IndexingTask task;
+            try {
+                task = state.buffer.indexFilesAsync(paths, token, parallelism,
+                        path -> !state.containsDocument(path));
+            } catch (RuntimeException e) {
+                runningBulkIndexings.decrementAndGet();
+                throw e;
+            }
+            return task.whenComplete(() -> {
+                runningBulkIndexings.decrementAndGet();
+                maybeSeal();
+            });
+        } finally {
+            sealLock.unlockRead(stamp);
+        }
+    }
+
+    void reIndexFile(Path path, Token token) {
+        long stamp = sealLock.readLock();
+        try {
+            State current = state;
+            // the new version becomes searchable before the old one is deleted
+            current.buffer.reIndexFile(path, token);
+            current.segments.forEach(segment -> segment.deleteDocumentsUnder(path));
+        } finally {
+            sealLock.unlockRead(stamp);
+        }
+        maybeSeal();
+    }
+
+    Set<Path> searchFiles(String queryWord) {
+        State current = state;
+        Set<Path> bufferedFiles = current.buffer.searchFiles(queryWord);
+        String term = Tokenizer.foldCase(queryWord);
+        Set<Path> paths = null;
+        for (SealedSegment sealedSegment : current.segments) {
+            int ordinal = sealedSegment.segment.findTerm(term);
+            if (ordinal < 0) {
+                continue;
+            }
+            if (paths == null) {
+                paths = new HashSet<>(bufferedFiles);
+            }
+            for (int docId : sealedSegment.segment.postings(ordinal)) {
+                if (!sealedSegment.deletedDocs.get(docId)) {
+                    paths.add(sealedSegment.segment.path(docId));
+                }
+            }
+        }
+        return paths == null ? bufferedFiles : Collections.unmodifiableSet(paths);
+    }
+
+    int pendingFilesCount() {
+        return state.buffer.pendingFilesCount();
+    }
+
+    /**
+     * Counts only the files whose unchanged content was still in the buffer, sealed segments do not keep the
+     * checksums of their documents.
+     */
+    @Override
+    long skippedReindexCount() {
+        return sealedSkippedReindexes.get() + state.buffer.skippedReindexCount();
+    }
+
+    /**
+     * Counts a term once per segment containing it.
+     */
+    @Override
+    long termCount() {
+        State current = state;
+        long count = current.buffer.termCount();
+        for (SealedSegment sealedSegment : current.segments) {
+            count += sealedSegment.segment.termCount();
+        }
+        return count;
+    }
+
+    /**
+     * Counts the postings of the deleted documents not merged away yet.
+     */
+    @Override
+    long postingCount() {
+        State current = state;
+        long count = current.buffer.postingCount();
+        for (SealedSegment sealedSegment : current.segments) {
+            count += sealedSegment.segment.postingCount();
+        }
+        return count;
+    }
+
+    /**
+     * Counts the buffer and the deleted documents of the segments; the segments themselves are memory-mapped.
+     */
+    @Override
+    long estimatedHeapBytes() {
+        State current = state;
+        long bytes = current.buffer.estimatedHeapBytes();
+        for (SealedSegment sealedSegment : current.segments) {
+            bytes += sealedSegment.segment.documentCount() / 8;
+        }
+        return bytes;
+    }
+
+    @Override
+    void setMetrics(IndexMetrics metrics) {
+        long stamp = sealLock.writeLock();
+        try {
+            super.setMetrics(metrics);
+            state.buffer.setMetrics(metrics);
+        } finally {
+            sealLock.unlockWrite(stamp);
+        }
+    }
+
+    Map<Path, FileFingerprint> fingerprintsUnder(Path path) {
+        State current = state;
+        Map<Path, FileFingerprint> fingerprints = new HashMap<>();
+        for (SealedSegment sealedSegment : current.segments) {
+            sealedSegment.segment.forEachDocumentUnder(path, docId -> {
+                if (!sealedSegment.deletedDocs.get(docId)) {
+                    fingerprints.put(sealedSegment.segment.path(docId), sealedSegment.segment.fingerprint(docId));
+                }
+            });
+        }
+        fingerprints.putAll(current.buffer.fingerprintsUnder(path));
+        return fingerprints;
+    }
+
+    void removeFileFromIndex(Path path) {
+        long stamp = sealLock.readLock();
+        try {
+            State current = state;
+            current.segments.forEach(segment -> segment.deleteDocumentsUnder(path));
+            current.buffer.removeFileFromIndex(path);
+        } finally {
+            sealLock.unlockRead(stamp);
+        }
+    }
+
+    void cleanupIndex() {
+        state.buffer.cleanupIndex();
+    }
+
+    /**
+     * Returns the number of sealed segments.
+     */
+    int segmentCount() {
+        return state.segments.size();
+    }
+
+    /**
+     * Waits until the scheduled sealing and merging is finished.
+     */
+    void awaitMerges() throws Exception {
+        mergeExecutor.submit(() -> {
+        }).get();
+    }
+
+    /**
+     * Stops background merging. The index stays searchable and writable, but its buffer is no longer sealed.
+     */
+    @Override
+    public void close() {
+        mergeExecutor.shutdown();
+        try {
+            mergeExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void maybeSeal() {
+        if (state.buffer.indexedFilesCount() >= maxBufferedFiles && runningBulkIndexings.get() == 0
+                && !mergeExecutor.isShutdown() && sealScheduled.compareAndSet(false, true)) {
+            mergeExecutor.execute(() -> {
+                try {
+                    seal();
+                    mergeSegments();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(SEVERE, "A problem has occurred while merging index segments.", e);
+                } finally {
+                    sealScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private void seal() throws IOException {
+        long stamp = sealLock.writeLock();
+        try {
+            if (runningBulkIndexings.get() > 0) {
+                return;
+            }
+            State current = state;
+            current.buffer.cleanupIndex();
+            if (current.buffer.indexedFilesCount() == 0) {
+                return;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (SegmentWriter writer = new SegmentWriter(out)) {
+                new SegmentMerger(List.of(), List.of(), current.buffer).merge(writer);
+            }
+            Segment segment = new Segment(ByteBuffer.wrap(out.toByteArray()));
+            CompactInvertedIndex buffer = new CompactInvertedIndex();
+            buffer.setMetrics(metrics());
+            current.buffer.pendingPaths().forEach(buffer::registerFile);
+            List<SealedSegment> segments = new ArrayList<>(current.segments);
+            segments.add(new SealedSegment(segment, new AtomicBitSet(segment.documentCount())));
+            sealedSkippedReindexes.addAndGet(current.buffer.skippedReindexCount());
+            state = new State(List.copyOf(segments), buffer);
+        } finally {
+            sealLock.unlockWrite(stamp);
+        }
+    }
+
+    private void mergeSegments() throws IOException {
+        List<SealedSegment> candidates;
+        while (!(candidates = selectMerge(state.segments)).isEmpty()) {
+            List<Segment> segments = candidates.stream().map(SealedSegment::segment).toList();
+            List<AtomicBitSet> deletedDocs = candidates.stream().map(SealedSegment::deletedDocs).toList();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int[][] newDocIds;
+            try (SegmentWriter writer = new SegmentWriter(out)) {
+                newDocIds = new SegmentMerger(segments, deletedDocs, null).merge(writer);
+            }
+            Segment merged = new Segment(ByteBuffer.wrap(out.toByteArray()));
+            replace(candidates, new SealedSegment(merged, new AtomicBitSet(merged.documentCount())), newDocIds);
+        }
+    }
+
+    /**
+     * Replaces the merged segments with the result of the merge,
+     * carrying over the documents deleted while the merge was running.
+     */
+    private void replace(List<SealedSegment> candidates, SealedSegment merged, int[][] newDocIds) {
+        long stamp = sealLock.writeLock();
+        try {
+            for (int source = 0; source < candidates.size(); source++) {
+                SealedSegment candidate = candidates.get(source);
+                for (int docId = 0; docId < newDocIds[source].length; docId++) {
+                    if (newDocIds[source][docId] >= 0 && candidate.deletedDocs.get(docId)) {
+                        merged.deletedDocs.set(newDocIds[source][docId]);
+                    }
+                }
+            }
+            State current = state;
+            List<SealedSegment> segments = new ArrayList<>(current.segments);
+            int position = segments.indexOf(candidates.get(0));
+            segments.removeAll(candidates);
+            if (merged.segment.documentCount() > 0) {
+                segments.add(position, merged);
+            }
+            state = new State(List.copyOf(segments), current.buffer);
+        } finally {
+            sealLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Selects the segments to merge next: a segment with too many deleted documents,
+     * or {@code mergeFactor} segments of the same size tier.
+     */
+    private List<SealedSegment> selectMerge(List<SealedSegment> segments) {
+        Map<Integer, List<SealedSegment>> tiers = new TreeMap<>();
+        for (SealedSegment segment : segments) {
+            int documentCount = segment.segment.documentCount();
+            int deletedCount = segment.deletedDocs.cardinality();
+            if (deletedCount > documentCount * maxDeletedRatio) {
+                return List.of(segment);
+            }
+            tiers.computeIfAbsent(tier(documentCount - deletedCount), k -> new ArrayList<>()).add(segment);
+        }
+        return tiers.values().stream()
+                .filter(tier -> tier.size() >= mergeFactor)
+                .findFirst()
+                .map(tier -> tier.subList(0, mergeFactor))
+                .orElse(List.of());
+    }
+
+    private int tier(int documentCount) {
+        int tier = 0;
+        long bound = (long) maxBufferedFiles * mergeFactor;
+        while (documentCount >= bound) {
+            tier++;
+            bound *= mergeFactor;
+        }
+        return tier;
+    }
+
+    private record SealedSegment(Segment segment, AtomicBitSet deletedDocs) {
+
+        boolean containsDocument(Path path) {
+            int docId = segment.findDocument(path);
+            return docId >= 0 && !deletedDocs.get(docId);
+        }
+
+        void deleteDocumentsUnder(Path path) {
+            segment.forEachDocumentUnder(path, deletedDocs::set);
+        }
+    }
+
+    /**
+     * The sealed segments, from the oldest to the newest, and the mutable buffer.
+     */
+    private record State(List<SealedSegment> segments, CompactInvertedIndex buffer) {
+
+        boolean containsDocument(Path path) {
+            return segments.stream().anyMatch(segment -> segment.containsDocument(path));
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package text.file.indexing.engine.core.index;
 
 import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.search.Position;
+import text.file.indexing.engine.core.search.ScoredPath;
+import text.file.indexing.engine.metrics.IndexMetrics;
 
 import java.nio.file.Path;
-import java.util.Collection;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * The class accepts as input an implementation of {@link Index},
@@ -13,25 +18,76 @@ import java.util.Set;
 public class SimpleTextFileIndexer implements TextFileIndexer {
     private final Index index;
     private final Token token;
+    private final int indexingThreads;
+    private final IndexMetrics metrics;
 
     public SimpleTextFileIndexer() {
-        this.token = Token.defaultWhiteSpaceToken();
-        this.index = new InvertedIndex();
+        this(Token.defaultWhiteSpaceToken());
     }
 
     public SimpleTextFileIndexer(Token token) {
-        this.token = token;
-        this.index = new InvertedIndex();
+        this(token, new InvertedIndex());
     }
 
     public SimpleTextFileIndexer(Token token, Index index) {
+        this(token, index, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param indexingThreads the number of worker threads used by {@link #indexFiles(Collection)}
+     *                        and {@link #indexFilesAsync(Collection)}
+     */
+    public SimpleTextFileIndexer(Token token, Index index, int indexingThreads) {
+        this(token, index, indexingThreads, IndexMetrics.NONE);
+    }
+
+    /**
+     * @param indexingThreads the number of worker threads used by {@link #indexFiles(Collection)}
+     *                        and {@link #indexFilesAsync(Collection)}
+     * @param metrics         receives the measurements of indexing and searching, and of the watchers of this
+     *                        indexer; the gauges of the index are registered in it
+     */
+    public SimpleTextFileIndexer(Token token, Index index, int indexingThreads, IndexMetrics metrics) {
+        if (indexingThreads < 1) {
+            throw new IllegalArgumentException("indexingThreads must be positive");
+        }
+        if (metrics == null) {
+            throw new IllegalArgumentException("metrics must not be null");
+        }
         this.token = token;
         this.index = index;
+        this.indexingThreads = indexingThreads;
+        this.metrics = metrics;
+        if (metrics.isEnabled()) {
+            index.setMetrics(metrics);
+            metrics.gauge(IndexMetrics.TERMS, index::termCount);
+            metrics.gauge(IndexMetrics.POSTINGS, index::postingCount);
+            metrics.gauge(IndexMetrics.ESTIMATED_HEAP_BYTES, index::estimatedHeapBytes);
+            metrics.gauge(IndexMetrics.PENDING_FILES, index::pendingFilesCount);
+        }
     }
 
+    /**
+     * Indexes the files and all files in the directories, waiting until they are searchable.
+     */
     public void indexFiles(Collection<Path> paths) {
-        index.addFilesToIndex(paths, token);
-        index.indexFiles(token);
+        try {
+            indexFilesAsync(paths).completion().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts indexing the files and all files in the directories on a pool of worker threads.
+     *
+     * @return the progress of indexing, completed once all files are searchable
+     */
+    public IndexingTask indexFilesAsync(Collection<Path> paths) {
+        return index.indexFilesAsync(paths, token, indexingThreads);
     }
 
     public void indexFile(Path path) {
@@ -48,11 +104,118 @@ public class SimpleTextFileIndexer implements TextFileIndexer {
         index.reIndexFile(path, token);
     }
 
+    /**
+     * Brings the index in line with the files under the directory when some of their changes were missed: only the
+     * files whose size, modification time or file key differ from those seen when they were indexed are reindexed,
+     * and the indexed files which no longer exist are removed, at most {@code maxFilesPerSecond} per second.
+     *
+     * @return the number of files reindexed or removed
+     * @throws InterruptedException if the thread is interrupted while waiting for the rate limit
+     */
+    public int reconcile(Path directory, int maxFilesPerSecond) throws InterruptedException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory must not be null");
+        }
+        return new DirectoryReconciler(index, token, maxFilesPerSecond).reconcile(directory);
+    }
+
+    /**
+     * Returns the number of files reindexed by {@link #reIndexFile(Path)} or {@link #reconcile(Path, int)} whose
+     * content was found unchanged, so they were not tokenized again.
+     */
+    public long skippedReindexCount() {
+        return index.skippedReindexCount();
+    }
+
+    /**
+     * Returns the metrics receiving the measurements of this indexer, {@link IndexMetrics#NONE} by default. Searches
+     * returning lazy streams are not timed.
+     */
+    public IndexMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the number of files that were added to the index but are not tokenized yet.
+     */
+    public int pendingFilesCount() {
+        return index.pendingFilesCount();
+    }
+
     @Override
     public Set<Path> searchFiles(String queryWord) {
         if (queryWord == null || queryWord.trim().isEmpty()) {
             throw new IllegalArgumentException("queryWord must not be null or blank");
         }
-        return index.searchFiles(queryWord);
+        if (!metrics.isEnabled()) {
+            return index.searchFiles(queryWord);
+        }
+        long start = System.nanoTime();
+        Set<Path> files = index.searchFiles(queryWord);
+        metrics.searchCompleted(files.size(), System.nanoTime() - start);
+        return files;
+    }
+
+    @Override
+    public Stream<Path> search(Query query) {
+        if (query == null) {
+            throw new IllegalArgumentException("query must not be null");
+        }
+        return index.search(query);
+    }
+
+    @Override
+    public Stream<Path> searchCandidates(String literal) {
+        if (literal == null || literal.isEmpty()) {
+            throw new IllegalArgumentException("literal must not be null or empty");
+        }
+        return index.searchCandidates(literal);
+    }
+
+    @Override
+    public Stream<Path> searchRegexCandidates(Pattern regex) {
+        if (regex == null) {
+            throw new IllegalArgumentException("regex must not be null");
+        }
+        return index.searchRegexCandidates(RegexLiterals.requiredLiterals(regex));
+    }
+
+    @Override
+    public Map<Path, List<Position>> searchPhrase(String phrase, int slop) {
+        if (phrase == null || phrase.trim().isEmpty()) {
+            throw new IllegalArgumentException("phrase must not be null or blank");
+        }
+        if (!metrics.isEnabled()) {
+            return index.searchPositions(new Query.Phrase(tokenize(phrase), slop));
+        }
+        long start = System.nanoTime();
+        Map<Path, List<Position>> positions = index.searchPositions(new Query.Phrase(tokenize(phrase), slop));
+        metrics.searchCompleted(positions.size(), System.nanoTime() - start);
+        return positions;
+    }
+
+    @Override
+    public List<ScoredPath> searchTopK(String query, int k) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("query must not be null or blank");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        if (!metrics.isEnabled()) {
+            return index.searchTopK(tokenize(query), k);
+        }
+        long start = System.nanoTime();
+        List<ScoredPath> top = index.searchTopK(tokenize(query), k);
+        metrics.searchCompleted(top.size(), System.nanoTime() - start);
+        return top;
+    }
+
+    private List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        char[] chars = text.toCharArray();
+        Tokenizer.forToken(token).tokenize(chars, 0, chars.length, true,
+                (buffer, offset, length) -> terms.add(new String(buffer, offset, length)));
+        return terms;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,197 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.Arrays;
+
+/**
+ * Automaton accepting the terms matched by a {@link Query.MultiTerm}, run one char at a time. The state reached
+ * after every char of the current term is kept, so after a term the automaton can resume from any shorter prefix of
+ * it, which is how {@link TermDictionary} shares the work between terms with a common prefix.
+ * Instances are not thread-safe.
+ */
+abstract class TermAutomaton {
+
+    /**
+     * Returns the prefix shared by all accepted terms.
+     */
+    abstract String prefix();
+
+    /**
+     * Moves from the state reached after {@code depth} chars of the term to the next one.
+     *
+     * @return {@code false} if no term starting with the chars stepped so far is accepted
+     */
+    abstract boolean step(int depth, char c);
+
+    /**
+     * Returns whether the term of the given length, all of whose chars were stepped, is accepted.
+     */
+    abstract boolean accepts(int length);
+
+    boolean matches(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (!step(i, term.charAt(i))) {
+                return false;
+            }
+        }
+        return accepts(term.length());
+    }
+
+    /**
+     * Returns the automaton of the query, whose terms are lower-cased as the indexed terms.
+     */
+    static TermAutomaton of(Query.MultiTerm query) {
+        if (query instanceof Query.Prefix prefix) {
+            return new PrefixAutomaton(Tokenizer.foldCase(prefix.prefix()));
+        }
+        if (query instanceof Query.Wildcard wildcard) {
+            return new WildcardAutomaton(Tokenizer.foldCase(wildcard.pattern()));
+        }
+        Query.Fuzzy fuzzy = (Query.Fuzzy) query;
+        return new LevenshteinAutomaton(Tokenizer.foldCase(fuzzy.term()), fuzzy.maxEdits());
+    }
+
+    private static final class PrefixAutomaton extends TermAutomaton {
+
+        private final String prefix;
+
+        PrefixAutomaton(String prefix) {
+            this.prefix = prefix;
+        }
+
+        String prefix() {
+            return prefix;
+        }
+
+        boolean step(int depth, char c) {
+            return depth >= prefix.length() || prefix.charAt(depth) == c;
+        }
+
+        boolean accepts(int length) {
+            return length >= prefix.length();
+        }
+    }
+
+    /**
+     * Pattern where {@code ?} matches any char and {@code *} any sequence of chars. The state is the set of pattern
+     * positions reached, kept as a bit set, so the pattern is never backtracked.
+     */
+    private static final class WildcardAutomaton extends TermAutomaton {
+
+        private final String pattern;
+
+        private final String prefix;
+
+        private final int words;
+
+        private long[] states;
+
+        WildcardAutomaton(String pattern) {
+            this.pattern = pattern;
+            int literalEnd = 0;
+            while (literalEnd < pattern.length() && pattern.charAt(literalEnd) != '*'
+                    && pattern.charAt(literalEnd) != '?') {
+                literalEnd++;
+            }
+            this.prefix = pattern.substring(0, literalEnd);
+            this.words = (pattern.length() + 1 + 63) >>> 6;
+            this.states = new long[words * 16];
+            states[0] = 1;
+            closeOverStars(0);
+        }
+
+        String prefix() {
+            return prefix;
+        }
+
+        boolean step(int depth, char c) {
+            int from = depth * words;
+            int to = from + words;
+            if (to + words > states.length) {
+                states = Arrays.copyOf(states, states.length * 2);
+            }
+            Arrays.fill(states, to, to + words, 0);
+            boolean alive = false;
+            for (int position = 0; position < pattern.length(); position++) {
+                if ((states[from + (position >>> 6)] & 1L << position) == 0) {
+                    continue;
+                }
+                char expected = pattern.charAt(position);
+                if (expected == '*') {
+                    states[to + (position >>> 6)] |= 1L << position;
+                    alive = true;
+                } else if (expected == '?' || expected == c) {
+                    states[to + (position + 1 >>> 6)] |= 1L << position + 1;
+                    alive = true;
+                }
+            }
+            closeOverStars(to);
+            return alive;
+        }
+
+        /**
+         * Adds the positions reachable by matching a {@code *} with no chars.
+         */
+        private void closeOverStars(int offset) {
+            for (int position = 0; position < pattern.length(); position++) {
+                if (pattern.charAt(position) == '*' && (states[offset + (position >>> 6)] & 1L << position) != 0) {
+                    states[offset + (position + 1 >>> 6)] |= 1L << position + 1;
+                }
+            }
+        }
+
+        boolean accepts(int length) {
+            int end = pattern.length();
+            return (states[length * words + (end >>> 6)] & 1L << end) != 0;
+        }
+    }
+
+    /**
+     * Levenshtein automaton of a term: the state after some chars is the row of the edit distance table between
+     * those chars and every prefix of the term, and a row whose minimum exceeds the allowed edits is rejected.
+     */
+    private static final class LevenshteinAutomaton extends TermAutomaton {
+
+        private final String term;
+
+        private final int maxEdits;
+
+        private final int width;
+
+        private int[] rows;
+
+        LevenshteinAutomaton(String term, int maxEdits) {
+            this.term = term;
+            this.maxEdits = maxEdits;
+            this.width = term.length() + 1;
+            this.rows = new int[width * 16];
+            for (int i = 0; i < width; i++) {
+                rows[i] = i;
+            }
+        }
+
+        String prefix() {
+            return "";
+        }
+
+        boolean step(int depth, char c) {
+            int from = depth * width;
+            int to = from + width;
+            if (to + width > rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[to] = depth + 1;
+            int minimum = rows[to];
+            for (int i = 1; i < width; i++) {
+                int substitution = rows[from + i - 1] + (term.charAt(i - 1) == c ? 0 : 1);
+                int distance = Math.min(substitution, Math.min(rows[from + i], rows[to + i - 1]) + 1);
+                rows[to + i] = distance;
+                minimum = Math.min(minimum, distance);
+            }
+            return minimum <= maxEdits;
+        }
+
+        boolean accepts(int length) {
+            return rows[length * width + width - 1] <= maxEdits;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Immutable sorted set of terms, front coded in blocks: every term stores only the length of the prefix it shares
+ * with the previous term and the remaining chars, and the first term of every block is stored whole, so a block can
+ * be found by binary search. Terms are visited in order by a {@link TermAutomaton}, which is stepped only over the
+ * chars that differ from the previous term, so the dictionary is walked like a trie.
+ */
+final class TermDictionary {
+
+    static final TermDictionary EMPTY = new Builder().build();
+
+    private static final int BLOCK_SIZE = 32;
+
+    private final int size;
+
+    private final char[] chars;
+
+    private final byte[] lengths;
+
+    private final int[] blockChars;
+
+    private final int[] blockLengths;
+
+    private TermDictionary(int size, char[] chars, byte[] lengths, int[] blockChars, int[] blockLengths) {
+        this.size = size;
+        this.chars = chars;
+        this.lengths = lengths;
+        this.blockChars = blockChars;
+        this.blockLengths = blockLengths;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes the terms accepted by the automaton to the action in sorted order, until the action returns
+     * {@code false}. Only the terms starting with {@link TermAutomaton#prefix()} are read.
+     *
+     * @return {@code false} if the action stopped the visit
+     */
+    boolean visit(TermAutomaton automaton, Predicate<String> action) {
+        if (size == 0) {
+            return true;
+        }
+        String prefix = automaton.prefix();
+        int block = findBlock(prefix);
+        int charOffset = blockChars[block];
+        int lengthOffset = blockLengths[block];
+        char[] term = new char[16];
+        // the automaton has consumed the first `stepped` chars of the term and, if `rejected`, rejected the next one
+        int stepped = 0;
+        boolean rejected = false;
+        for (int i = block * BLOCK_SIZE; i < size; i++) {
+            int shared = VarInt.read(lengths, lengthOffset);
+            lengthOffset += VarInt.length(shared);
+            int suffix = VarInt.read(lengths, lengthOffset);
+            lengthOffset += VarInt.length(suffix);
+            int length = shared + suffix;
+            if (length > term.length) {
+                term = Arrays.copyOf(term, Math.max(length, term.length * 2));
+            }
+            System.arraycopy(chars, charOffset, term, shared, suffix);
+            charOffset += suffix;
+            if (!startsWith(term, length, prefix) && compare(term, 0, length, prefix) > 0) {
+                return true;
+            }
+            if (rejected && stepped < shared) {
+                continue;
+            }
+            stepped = Math.min(stepped, shared);
+            rejected = false;
+            while (stepped < length) {
+                if (!automaton.step(stepped, term[stepped])) {
+                    rejected = true;
+                    break;
+                }
+                stepped++;
+            }
+            if (!rejected && automaton.accepts(length) && !action.test(new String(term, 0, length))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the last block whose first term is not greater than the prefix, or the first block.
+     */
+    private int findBlock(String prefix) {
+        int low = 0;
+        int high = blockChars.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            int lengthOffset = blockLengths[middle];
+            // the first term of a block shares no prefix, so its suffix length follows a zero byte
+            int length = VarInt.read(lengths, lengthOffset + 1);
+            if (compare(chars, blockChars[middle], length, prefix) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean startsWith(char[] term, int length, String prefix) {
+        if (length < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (term[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compare(char[] chars, int offset, int length, String term) {
+        int common = Math.min(length, term.length());
+        for (int i = 0; i < common; i++) {
+            int difference = chars[offset + i] - term.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - term.length();
+    }
+
+    /**
+     * Collects the terms of a dictionary, which must be added in ascending {@link String#compareTo} order.
+     */
+    static final class Builder {
+
+        private int size;
+
+        private char[] chars = new char[64];
+
+        private int charsLength;
+
+        private byte[] lengths = new byte[16];
+
+        private int lengthsLength;
+
+        private int[] blockChars = new int[1];
+
+        private int[] blockLengths = new int[1];
+
+        private String previous = "";
+
+        Builder add(String term) {
+            if (size > 0 && term.compareTo(previous) <= 0) {
+                throw new IllegalArgumentException("Terms must be added in ascending order: " + term);
+            }
+            int shared = 0;
+            if (size % BLOCK_SIZE == 0) {
+                int block = size / BLOCK_SIZE;
+                if (block == blockChars.length) {
+                    blockChars = Arrays.copyOf(blockChars, block * 2);
+                    blockLengths = Arrays.copyOf(blockLengths, block * 2);
+                }
+                blockChars[block] = charsLength;
+                blockLengths[block] = lengthsLength;
+            } else {
+                int common = Math.min(term.length(), previous.length());
+                while (shared < common && term.charAt(shared) == previous.charAt(shared)) {
+                    shared++;
+                }
+            }
+            int suffix = term.length() - shared;
+            if (charsLength + suffix > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsLength + suffix));
+            }
+            term.getChars(shared, term.length(), chars, charsLength);
+            charsLength += suffix;
+            if (lengthsLength + 2 * VarInt.MAX_LENGTH > lengths.length) {
+                lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            }
+            lengthsLength = VarInt.write(lengths, lengthsLength, shared);
+            lengthsLength = VarInt.write(lengths, lengthsLength, suffix);
+            previous = term;
+            size++;
+            return this;
+        }
+
+        TermDictionary build() {
+            int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return new TermDictionary(size, Arrays.copyOf(chars, charsLength), Arrays.copyOf(lengths, lengthsLength),
+                    Arrays.copyOf(blockChars, blocks), Arrays.copyOf(blockLengths, blocks));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open-addressing table of canonical terms looked up by a char buffer slice, so a term seen before is
+ * neither copied into a new String nor hashed as one. Every entry remembers the last document the term was
+ * seen in and its ordinal among the terms of that document, which gives the distinct terms of a document and
+ * their frequencies without a map per document.
+ * Instances are not thread-safe.
+ */
+final class TermInterner {
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private static final int MAX_TERMS = 1 << 20;
+
+    private String[] terms;
+
+    private int[] hashes;
+
+    private int[] documents;
+
+    private int[] ordinals;
+
+    private int[] frequencies;
+
+    private int size;
+
+    private int document;
+
+    private char[] folded;
+
+    TermInterner() {
+        clear(INITIAL_CAPACITY);
+        folded = new char[64];
+        frequencies = new int[256];
+    }
+
+    /**
+     * Starts the next document: every term is reported as new to it again.
+     */
+    void nextDocument() {
+        if (++document == Integer.MAX_VALUE || size >= MAX_TERMS) {
+            // keeps the table bounded for huge vocabularies
+            clear(INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * Returns the frequencies of the first {@code count} terms of the current document, in the order they were added.
+     */
+    int[] frequencies(int count) {
+        return Arrays.copyOf(frequencies, count);
+    }
+
+    /**
+     * Lower-cases the term and adds its canonical instance to the terms of the current document,
+     * unless the document already contains it, in which case its frequency is incremented.
+     *
+     * @return the canonical instance of the term
+     */
+    String add(char[] chars, int offset, int length, List<String> documentTerms) {
+        if (folded.length < length * 2) {
+            folded = new char[Math.max(folded.length * 2, length * 2)];
+        }
+        int foldedLength = Tokenizer.foldCase(chars, offset, length, folded);
+        int hash = 0;
+        for (int i = 0; i < foldedLength; i++) {
+            hash = 31 * hash + folded[i];
+        }
+        int mask = terms.length - 1;
+        int slot = mix(hash) & mask;
+        String term;
+        while ((term = terms[slot]) != null) {
+            if (hashes[slot] == hash && matches(term, foldedLength)) {
+                if (documents[slot] != document) {
+                    documents[slot] = document;
+                    ordinals[slot] = addDocumentTerm(term, documentTerms);
+                } else {
+                    frequencies[ordinals[slot]]++;
+                }
+                return term;
+            }
+            slot = (slot + 1) & mask;
+        }
+        term = new String(folded, 0, foldedLength);
+        terms[slot] = term;
+        hashes[slot] = hash;
+        documents[slot] = document;
+        ordinals[slot] = addDocumentTerm(term, documentTerms);
+        if (++size * 2 > terms.length) {
+            grow();
+        }
+        return term;
+    }
+
+    private int addDocumentTerm(String term, List<String> documentTerms) {
+        int ordinal = documentTerms.size();
+        documentTerms.add(term);
+        if (ordinal == frequencies.length) {
+            frequencies = Arrays.copyOf(frequencies, ordinal * 2);
+        }
+        frequencies[ordinal] = 1;
+        return ordinal;
+    }
+
+    private boolean matches(String term, int length) {
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (term.charAt(i) != folded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        String[] oldTerms = terms;
+        int[] oldHashes = hashes;
+        int[] oldDocuments = documents;
+        int[] oldOrdinals = ordinals;
+        terms = new String[oldTerms.length * 2];
+        hashes = new int[terms.length];
+        documents = new int[terms.length];
+        ordinals = new int[terms.length];
+        int mask = terms.length - 1;
+        for (int i = 0; i < oldTerms.length; i++) {
+            if (oldTerms[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (terms[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                terms[slot] = oldTerms[i];
+                hashes[slot] = oldHashes[i];
+                documents[slot] = oldDocuments[i];
+                ordinals[slot] = oldOrdinals[i];
+            }
+        }
+    }
+
+    private void clear(int capacity) {
+        terms = new String[capacity];
+        hashes = new int[capacity];
+        documents = new int[capacity];
+        ordinals = new int[capacity];
+        Arrays.fill(documents, -1);
+        size = 0;
+        document = 0;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
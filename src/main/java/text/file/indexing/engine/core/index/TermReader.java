@@ -0,0 +1,147 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.utils.ChunkedFileReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Streams the content of a file, read by a {@link ChunkedFileReader}, through a {@link Tokenizer} chunk by chunk.
+ * Only a term which does not fit into the buffer makes the buffer grow. The buffer and the
+ * {@link TermInterner} are kept per thread, so tokenizing a file allocates only the Strings of terms
+ * the thread has not seen before. Trigrams are collected from the raw chars, before tokenization, and the
+ * {@link CRC32C} checksum of the content from the raw bytes, see {@link #contentHash(Path)}.
+ */
+final class TermReader {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final ThreadLocal<TermReader> READERS = ThreadLocal.withInitial(TermReader::new);
+
+    private final TermInterner interner;
+
+    private final TrigramSet trigrams;
+
+    private char[] buffer;
+
+    private List<String> terms;
+
+    private TermReader() {
+        interner = new TermInterner();
+        trigrams = new TrigramSet();
+        buffer = new char[CHUNK_SIZE];
+    }
+
+    /**
+     * Returns the distinct lower-cased terms of the file, stopping early once {@code cancelled} returns
+     * {@code true}.
+     */
+    static List<String> readTerms(Path path, Tokenizer tokenizer, BooleanSupplier cancelled) throws IOException {
+        return read(path, tokenizer, cancelled, false, false).terms();
+    }
+
+    /**
+     * Reads the distinct lower-cased terms of the file and, if requested, the positions of all term occurrences
+     * and the trigrams of the raw content.
+     */
+    static FileTerms read(Path path, Tokenizer tokenizer, BooleanSupplier cancelled, boolean positions,
+                          boolean trigrams) throws IOException {
+        CRC32C checksum = new CRC32C();
+        try (Reader reader = ChunkedFileReader.open(path, checksum)) {
+            return READERS.get().read(reader, checksum, tokenizer, cancelled,
+                    positions ? new PositionTable.Builder() : null, trigrams);
+        }
+    }
+
+    /**
+     * Returns the checksum of the content of the file, equal to {@link FileTerms#contentHash()} of the same content,
+     * without decoding or tokenizing it.
+     */
+    static long contentHash(Path path) throws IOException {
+        return ChunkedFileReader.checksum(path, new CRC32C());
+    }
+
+    private FileTerms read(Reader reader, CRC32C checksum, Tokenizer tokenizer, BooleanSupplier cancelled,
+                           PositionTable.Builder positions, boolean collectTrigrams) throws IOException {
+        terms = new ArrayList<>();
+        interner.nextDocument();
+        trigrams.clear();
+        LineCounter lines = positions == null ? null : new LineCounter();
+        Tokenizer.TermConsumer consumer = positions == null
+                ? (chars, offset, length) -> interner.add(chars, offset, length, terms)
+                : (chars, offset, length) -> {
+                    String term = interner.add(chars, offset, length, terms);
+                    lines.advance(chars, offset);
+                    positions.add(term, lines.line, offset - lines.lineStart);
+                };
+        int length = 0;
+        int read;
+        while ((read = reader.read(buffer, length, buffer.length - length)) >= 0 && !cancelled.getAsBoolean()) {
+            if (collectTrigrams) {
+                trigrams.add(buffer, length, length + read);
+            }
+            length += read;
+            int consumed = tokenizer.tokenize(buffer, 0, length, false, consumer);
+            if (lines != null) {
+                lines.advance(buffer, consumed);
+                lines.shift(consumed);
+            }
+            // a term or line continuing in the next chunk is moved to the start of the buffer
+            length -= consumed;
+            System.arraycopy(buffer, consumed, buffer, 0, length);
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        tokenizer.tokenize(buffer, 0, length, true, consumer);
+        if (buffer.length > CHUNK_SIZE * 16) {
+            buffer = new char[CHUNK_SIZE];
+        }
+        FileTerms result = new FileTerms(terms, interner.frequencies(terms.size()),
+                positions == null ? null : positions.build(), collectTrigrams ? trigrams.toSortedArray() : null,
+                checksum.getValue());
+        terms = null;
+        return result;
+    }
+
+    /**
+     * Counts the lines of the chars consumed so far, treating {@code \r\n} as one line terminator
+     * like {@link java.io.BufferedReader#readLine()}.
+     */
+    private static final class LineCounter {
+
+        private int scanned;
+
+        private int line;
+
+        // buffer index of the start of the current line, negative once the line start left the buffer
+        private int lineStart;
+
+        private boolean afterCarriageReturn;
+
+        void advance(char[] chars, int to) {
+            for (int i = scanned; i < to; i++) {
+                char c = chars[i];
+                if (c == '\n' && afterCarriageReturn) {
+                    lineStart = i + 1;
+                } else if (c == '\n' || c == '\r') {
+                    line++;
+                    lineStart = i + 1;
+                }
+                afterCarriageReturn = c == '\r';
+            }
+            scanned = Math.max(scanned, to);
+        }
+
+        void shift(int chars) {
+            scanned -= chars;
+            lineStart -= chars;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The distinct terms of a file with the number of occurrences of each, kept by the forward index, so a reindexed
+ * file can be diffed against its previous content term by term.
+ */
+final class TermVector {
+
+    static final TermVector EMPTY = new TermVector(new String[0], new int[0]);
+
+    private final String[] terms;
+
+    private final int[] frequencies;
+
+    private TermVector(String[] terms, int[] frequencies) {
+        this.terms = terms;
+        this.frequencies = frequencies;
+    }
+
+    int size() {
+        return terms.length;
+    }
+
+    String term(int ordinal) {
+        return terms[ordinal];
+    }
+
+    int frequency(int ordinal) {
+        return frequencies[ordinal];
+    }
+
+    void forEachTerm(Consumer<String> action) {
+        for (String term : terms) {
+            action.accept(term);
+        }
+    }
+
+    /**
+     * Returns a new mutable map from every term to its ordinal.
+     */
+    Map<String, Integer> ordinals() {
+        Map<String, Integer> ordinals = new HashMap<>(terms.length * 4 / 3 + 1);
+        for (int i = 0; i < terms.length; i++) {
+            ordinals.put(terms[i], i);
+        }
+        return ordinals;
+    }
+
+    static final class Builder {
+
+        private String[] terms;
+
+        private int[] frequencies;
+
+        private int size;
+
+        Builder(int expectedSize) {
+            terms = new String[Math.max(expectedSize, 1)];
+            frequencies = new int[terms.length];
+        }
+
+        Builder add(String term, int frequency) {
+            if (size == terms.length) {
+                terms = Arrays.copyOf(terms, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            terms[size] = term;
+            frequencies[size++] = frequency;
+            return this;
+        }
+
+        TermVector build() {
+            return size == 0 ? EMPTY : new TermVector(Arrays.copyOf(terms, size), Arrays.copyOf(frequencies, size));
+        }
+    }
+}
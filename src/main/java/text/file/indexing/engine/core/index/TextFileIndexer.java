@@ -1,9 +1,77 @@
 package text.file.indexing.engine.core.index;
 
+import text.file.indexing.engine.core.search.Position;
+import text.file.indexing.engine.core.search.ScoredPath;
+
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public interface TextFileIndexer {
 
     Set<Path> searchFiles(String queryWord);
+
+    /**
+     * Returns the files matching the boolean query. The query is evaluated inside the index
+     * and the files are produced lazily while the stream is consumed.
+     *
+     * @throws UnsupportedOperationException if the indexer does not evaluate queries
+     */
+    default Stream<Path> search(Query query) {
+        throw new UnsupportedOperationException("Boolean queries are not supported by this indexer");
+    }
+
+    /**
+     * Parses the query with {@link QueryParser} and returns the matching files, for example
+     * {@code search("foo AND (bar OR baz) AND NOT qux")}.
+     */
+    default Stream<Path> search(String query) {
+        return search(QueryParser.parse(query));
+    }
+
+    /**
+     * Returns the files which may contain the literal anywhere in their content, including inside a term or across
+     * delimiters, when the index has a trigram index; otherwise the files containing the literal as a whole term,
+     * which is all the default implementation returns.
+     * The candidates must be verified by reading the files, for example by a {@link
+     * text.file.indexing.engine.core.search.BoyerMooreTextFileSearcher}.
+     */
+    default Stream<Path> searchCandidates(String literal) {
+        return searchFiles(literal).stream();
+    }
+
+    /**
+     * Returns the files which may contain a match of the regex, pruned by the trigrams of literals which every match
+     * contains; every indexed file if no such literal is found in the regex. The candidates must be verified by
+     * reading the files, for example by a {@link text.file.indexing.engine.core.search.RegexTextFileSearcher}.
+     *
+     * @throws UnsupportedOperationException if the index does not index trigrams
+     */
+    default Stream<Path> searchRegexCandidates(Pattern regex) {
+        throw PathMatches.trigramsNotIndexed();
+    }
+
+    /**
+     * Returns the positions of every occurrence of the phrase, by file, resolved from the index without reading
+     * the files. The phrase is split into terms by the token of the indexer.
+     *
+     * @param slop the number of other tokens allowed between two consecutive terms of the phrase
+     * @throws UnsupportedOperationException if the index does not store positions
+     */
+    default Map<Path, List<Position>> searchPhrase(String phrase, int slop) {
+        throw PathMatches.positionsNotStored();
+    }
+
+    /**
+     * Returns the {@code k} files most relevant to the query by BM25, from the most relevant. The query is split
+     * into terms by the token of the indexer; a file is relevant if it contains any of them.
+     *
+     * @throws UnsupportedOperationException if the index does not store term frequencies
+     */
+    default List<ScoredPath> searchTopK(String query, int k) {
+        throw PathMatches.frequenciesNotStored();
+    }
 }
@@ -0,0 +1,244 @@
+package text.file.indexing.engine.core.index;
+
+import text.file.indexing.engine.core.Token;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into terms for a {@link Token}.
+ * Tokenizers work on slices of a char buffer, so no String is created per line or per word.
+ * A token which is a single character class, optionally repeated with {@code +} ({@code \s+}, {@code [,;]},
+ * {@code \W+}, ...), is turned into a lookup table of delimiter chars. Any other token is compiled into
+ * a {@link Pattern} once and matched line by line, like {@link String#split(String)} on every line.
+ * Line terminators always separate terms and empty terms are skipped.
+ */
+abstract class Tokenizer {
+
+    private static final Map<Token, Tokenizer> TOKENIZERS = new ConcurrentHashMap<>();
+
+    /**
+     * Receives a term as a slice of a char buffer which is only valid during the call.
+     */
+    interface TermConsumer {
+        void accept(char[] chars, int offset, int length);
+    }
+
+    static Tokenizer forToken(Token token) {
+        return TOKENIZERS.computeIfAbsent(token, Tokenizer::create);
+    }
+
+    private static Tokenizer create(Token token) {
+        String regex = token.token();
+        String delimiter = regex.endsWith("+") && !regex.endsWith("\\+") ? regex.substring(0, regex.length() - 1) : regex;
+        if (isSingleCharacterClass(delimiter)) {
+            return new DelimiterTokenizer(Pattern.compile(delimiter));
+        }
+        return new RegexTokenizer(Pattern.compile(regex));
+    }
+
+    private static boolean isSingleCharacterClass(String regex) {
+        if (regex.length() == 1) {
+            return ".$|()[]{}^?*+\\".indexOf(regex.charAt(0)) < 0;
+        }
+        if (regex.length() == 2 && regex.charAt(0) == '\\') {
+            return "sSwWdDhHvV".indexOf(regex.charAt(1)) >= 0 || !Character.isLetterOrDigit(regex.charAt(1));
+        }
+        if (regex.startsWith("\\p{") || regex.startsWith("\\P{")) {
+            return regex.indexOf('}') == regex.length() - 1;
+        }
+        if (regex.length() > 2 && regex.charAt(0) == '[' && regex.charAt(regex.length() - 1) == ']') {
+            String body = regex.substring(1, regex.length() - 1);
+            return !body.isEmpty() && body.indexOf('[') < 0 && body.indexOf(']') < 0 && !body.contains("&&");
+        }
+        return false;
+    }
+
+    /**
+     * Passes the terms found in {@code chars[from, to)} to the consumer.
+     *
+     * @param endOfInput whether the slice ends the text; otherwise the text at the end of the slice, which may
+     *                   continue in the next chunk, is left unconsumed
+     * @return the offset of the first char which was not consumed
+     */
+    abstract int tokenize(char[] chars, int from, int to, boolean endOfInput, TermConsumer consumer);
+
+    /**
+     * Lower-cases the term the same way as terms are folded when they are indexed.
+     */
+    static String foldCase(String term) {
+        char[] chars = term.toCharArray();
+        int length = foldCase(chars, 0, chars.length, chars);
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Lower-cases {@code chars[offset, offset + length)} into {@code target} code point by code point,
+     * independently of the default locale.
+     *
+     * @return the number of chars written
+     */
+    static int foldCase(char[] chars, int offset, int length, char[] target) {
+        int written = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                target[written++] = c >= 'A' && c <= 'Z' ? (char) (c | 0x20) : c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars[i + 1])) {
+                written += Character.toChars(Character.toLowerCase(Character.toCodePoint(c, chars[++i])), target, written);
+            } else {
+                target[written++] = Character.toLowerCase(c);
+            }
+        }
+        return written;
+    }
+
+    private static final class DelimiterTokenizer extends Tokenizer {
+
+        private final long[] delimiters;
+
+        DelimiterTokenizer(Pattern delimiter) {
+            delimiters = new long[(Character.MAX_VALUE + 1) >>> 6];
+            Matcher matcher = delimiter.matcher("");
+            char[] single = new char[1];
+            CharSlice slice = new CharSlice();
+            for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+                single[0] = (char) c;
+                slice.set(single, 0, 1);
+                if (c == '\n' || c == '\r' || matcher.reset(slice).matches()) {
+                    delimiters[c >>> 6] |= 1L << c;
+                }
+            }
+        }
+
+        @Override
+        int tokenize(char[] chars, int from, int to, boolean endOfInput, TermConsumer consumer) {
+            int start = -1;
+            for (int i = from; i < to; i++) {
+                char c = chars[i];
+                if ((delimiters[c >>> 6] & (1L << c)) != 0) {
+                    if (start >= 0) {
+                        consumer.accept(chars, start, i - start);
+                        start = -1;
+                    }
+                } else if (start < 0) {
+                    start = i;
+                }
+            }
+            if (start < 0) {
+                return to;
+            }
+            if (endOfInput) {
+                consumer.accept(chars, start, to - start);
+                return to;
+            }
+            return start;
+        }
+    }
+
+    private static final class RegexTokenizer extends Tokenizer {
+
+        private final Pattern pattern;
+
+        RegexTokenizer(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        int tokenize(char[] chars, int from, int to, boolean endOfInput, TermConsumer consumer) {
+            CharSlice line = new CharSlice();
+            Matcher matcher = pattern.matcher(line);
+            int lineStart = from;
+            for (int i = from; i < to; i++) {
+                char c = chars[i];
+                if (c == '\n' || c == '\r') {
+                    tokenizeLine(chars, lineStart, i, line, matcher, consumer);
+                    lineStart = i + 1;
+                }
+            }
+            if (!endOfInput) {
+                return lineStart > from ? lineStart : tokenizeLongLine(chars, from, to, line, matcher, consumer);
+            }
+            tokenizeLine(chars, lineStart, to, line, matcher, consumer);
+            return to;
+        }
+
+        /**
+         * Consumes the terms of a line longer than the chunk whose delimiters are certain,
+         * that is delimiters whose match would not change with more input.
+         */
+        private static int tokenizeLongLine(char[] chars, int from, int to, CharSlice line, Matcher matcher,
+                                            TermConsumer consumer) {
+            line.set(chars, from, to - from);
+            matcher.reset(line);
+            int termStart = 0;
+            while (matcher.find() && !matcher.hitEnd()) {
+                if (matcher.start() > termStart) {
+                    consumer.accept(chars, from + termStart, matcher.start() - termStart);
+                }
+                termStart = Math.max(termStart, matcher.end());
+            }
+            return from + termStart;
+        }
+
+        private static void tokenizeLine(char[] chars, int from, int to, CharSlice line, Matcher matcher,
+                                         TermConsumer consumer) {
+            if (from == to) {
+                return;
+            }
+            line.set(chars, from, to - from);
+            matcher.reset(line);
+            int termStart = 0;
+            while (matcher.find()) {
+                if (matcher.start() > termStart) {
+                    consumer.accept(chars, from + termStart, matcher.start() - termStart);
+                }
+                termStart = Math.max(termStart, matcher.end());
+            }
+            if (to - from > termStart) {
+                consumer.accept(chars, from + termStart, to - from - termStart);
+            }
+        }
+    }
+
+    /**
+     * Reusable {@link CharSequence} view of a char buffer slice.
+     */
+    private static final class CharSlice implements CharSequence {
+
+        private char[] chars;
+
+        private int offset;
+
+        private int length;
+
+        void set(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.Arrays;
+
+/**
+ * Collects the distinct trigrams of a text. A trigram is three consecutive lower-cased chars packed into a long,
+ * 16 bits per char. The set is an open-addressing table of longs which is reused from file to file.
+ * Instances are not thread-safe.
+ */
+final class TrigramSet {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    // distinguishes a stored trigram from an empty slot, as "\0\0\0" packs to 0
+    private static final long PRESENT = 1L << 48;
+
+    private long[] slots;
+
+    private int size;
+
+    private long window;
+
+    private int windowLength;
+
+    TrigramSet() {
+        slots = new long[INITIAL_CAPACITY];
+    }
+
+    static long trigram(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+
+    /**
+     * Returns the distinct trigrams of the lower-cased text in increasing order.
+     */
+    static long[] of(CharSequence text) {
+        TrigramSet trigrams = new TrigramSet();
+        for (int i = 0; i < text.length(); i++) {
+            trigrams.add(text.charAt(i));
+        }
+        return trigrams.toSortedArray();
+    }
+
+    /**
+     * Adds the trigrams ending in the chars; trigrams continue across calls until {@link #clear()}.
+     */
+    void add(char[] chars, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(chars[i]);
+        }
+    }
+
+    private void add(char c) {
+        window = ((window << 16) | Character.toLowerCase(c)) & 0xFFFF_FFFF_FFFFL;
+        if (++windowLength >= 3) {
+            insert(window | PRESENT);
+        }
+    }
+
+    private void insert(long key) {
+        int mask = slots.length - 1;
+        int slot = (int) (key ^ (key >>> 21) ^ (key >>> 37)) * 0x9E3779B9 >>> 7 & mask;
+        while (slots[slot] != 0) {
+            if (slots[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = key;
+        if (++size * 2 > slots.length) {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            size = 0;
+            for (long oldKey : old) {
+                if (oldKey != 0) {
+                    insert(oldKey);
+                }
+            }
+        }
+    }
+
+    long[] toSortedArray() {
+        long[] trigrams = new long[size];
+        int count = 0;
+        for (long key : slots) {
+            if (key != 0) {
+                trigrams[count++] = key & ~PRESENT;
+            }
+        }
+        Arrays.sort(trigrams);
+        return trigrams;
+    }
+
+    void clear() {
+        if (slots.length > MAX_RETAINED_CAPACITY) {
+            slots = new long[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(slots, 0);
+        }
+        size = 0;
+        window = 0;
+        windowLength = 0;
+    }
+}
@@ -0,0 +1,74 @@
+package text.file.indexing.engine.core.index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding of non-negative ints as variable length byte sequences, 7 bits per byte, least significant group first.
+ */
+final class VarInt {
+
+    static final int MAX_LENGTH = 5;
+
+    private VarInt() {
+    }
+
+    /**
+     * Writes the value into the buffer.
+     *
+     * @return the offset right after the written bytes
+     */
+    static int write(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    static int read(byte[] buffer, int offset) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer[offset++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return value;
+    }
+
+    static void write(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads the value at the absolute offset of the buffer without changing its position.
+     */
+    static int read(ByteBuffer buffer, int offset) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer.get(offset++);
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return value;
+    }
+
+    static int length(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,127 @@
+package text.file.indexing.engine.core.index;
+
+import java.lang.ref.Cleaner;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongConsumer;
+
+/**
+ * Epoch based publication of the {@link IndexedFile} entries of an index, so that a search sees every file either as
+ * it was before an update or after it, never half indexed, without taking a lock shared with the writers.
+ * <p>
+ * An update never changes what a search may be reading: the postings it adds, of a new entry or of the terms a
+ * reindex added to an entry, are invisible until it is published. Publishing takes the next sequence number, from
+ * which the new content is visible and the replaced one no longer is. A search reads the last published number when
+ * it starts, its epoch, and keeps only the postings visible at it. The replaced postings are removed once no search
+ * with an older epoch is still open, so such a search still finds them in the posting lists it reads.
+ */
+final class VersionClock {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Set<ReadEpoch> readers;
+
+    private final Queue<Retirement> retirements;
+
+    private volatile long published;
+
+    VersionClock() {
+        readers = ConcurrentHashMap.newKeySet();
+        retirements = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Opens the epoch of a search at the last published sequence number. The epoch must be closed once the search
+     * has read the posting lists and the visibility of the entries it returns.
+     */
+    ReadEpoch enter() {
+        while (true) {
+            long sequence = published;
+            ReadEpoch epoch = new ReadEpoch(sequence);
+            readers.add(epoch);
+            // a writer publishing meanwhile may have missed this reader and already removed what it replaced
+            if (published == sequence) {
+                return epoch;
+            }
+            readers.remove(epoch);
+        }
+    }
+
+    /**
+     * Passes the next sequence number to the action, which sets the visibility of the published entries, and then
+     * makes it visible to new searches.
+     *
+     * @return the published sequence number
+     */
+    synchronized long publish(LongConsumer versions) {
+        long sequence = published + 1;
+        versions.accept(sequence);
+        published = sequence;
+        return sequence;
+    }
+
+    /**
+     * Runs the action once no search opened before the sequence number is still open.
+     */
+    void retire(long sequence, Runnable action) {
+        retirements.add(new Retirement(sequence, action));
+        reclaim();
+    }
+
+    /**
+     * Runs the retirements which no open search can observe anymore.
+     */
+    void reclaim() {
+        if (retirements.isEmpty()) {
+            return;
+        }
+        long oldest = readers.stream().mapToLong(ReadEpoch::sequence).min().orElse(Long.MAX_VALUE);
+        for (Retirement retirement : retirements) {
+            if (retirement.sequence <= oldest && retirements.remove(retirement)) {
+                retirement.action.run();
+            }
+        }
+    }
+
+    private record Retirement(long sequence, Runnable action) {
+    }
+
+    final class ReadEpoch implements AutoCloseable {
+
+        private final long sequence;
+
+        private volatile Cleaner.Cleanable cleanable;
+
+        private ReadEpoch(long sequence) {
+            this.sequence = sequence;
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        /**
+         * Also closes the epoch once the reader becomes unreachable, for lazily consumed results which are
+         * abandoned before they are exhausted or closed.
+         */
+        void closeWhenUnreachable(Object reader) {
+            cleanable = CLEANER.register(reader, this::release);
+        }
+
+        private void release() {
+            readers.remove(this);
+        }
+
+        @Override
+        public void close() {
+            Cleaner.Cleanable current = cleanable;
+            if (current != null) {
+                current.clean();
+            } else {
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package text.file.indexing.engine.core.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Top-k retrieval of the documents containing any of several terms, ranked by BM25, with the WAND dynamic pruning
+ * of Broder et al. Every term has an upper bound of the score it can add to a document. The cursors are kept sorted by
+ * their current document, and a document is scored only once the upper bounds of the cursors positioned on it or
+ * before it can beat the k-th best score found so far; the cursors behind it skip to it with
+ * {@link DocIdIterator#advance(int)}. Once the best scores are high, most postings of frequent terms are skipped
+ * without being decoded or scored.
+ */
+final class WandSearcher {
+
+    static final double K1 = 1.2;
+
+    static final double B = 0.75;
+
+    private WandSearcher() {
+    }
+
+    /**
+     * A query term: the cursor over its postings and the BM25 weight of the term.
+     */
+    static final class TermCursor {
+
+        private final PostingList.Cursor cursor;
+
+        private final double weight;
+
+        private final double maxScore;
+
+        /**
+         * @param documentCount the number of indexed documents
+         * @param maxFrequency  an upper bound of the frequency of the term in any document
+         * @param queryCount    the number of occurrences of the term in the query
+         */
+        TermCursor(PostingList.Cursor cursor, int documentCount, int maxFrequency, int queryCount) {
+            this.cursor = cursor;
+            long documentFrequency = cursor.cost();
+            double idf = Math.log(1 + (Math.max(documentCount, documentFrequency) - documentFrequency + 0.5)
+                    / (documentFrequency + 0.5));
+            this.weight = idf * queryCount;
+            // the frequency part of the score grows with the frequency and is highest for an empty document
+            this.maxScore = weight * maxFrequency * (K1 + 1) / (maxFrequency + K1 * (1 - B));
+        }
+
+        double score(int frequency, double normalizedLength) {
+            return weight * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * normalizedLength));
+        }
+    }
+
+    record ScoredDocument(int docId, double score) {
+    }
+
+    /**
+     * Returns the {@code k} documents with the highest scores, from the highest score; documents with the same
+     * score are ordered by id.
+     *
+     * @param lengths       returns the number of term occurrences of a document
+     * @param averageLength the average number of term occurrences of the documents
+     * @param live          whether a document may be returned
+     */
+    static List<ScoredDocument> search(List<TermCursor> terms, int k, IntUnaryOperator lengths, double averageLength,
+                                       IntPredicate live) {
+        Comparator<ScoredDocument> worstFirst = Comparator.comparingDouble(ScoredDocument::score)
+                .thenComparing(Comparator.comparingInt(ScoredDocument::docId).reversed());
+        PriorityQueue<ScoredDocument> top = new PriorityQueue<>(k + 1, worstFirst);
+        List<TermCursor> cursors = new ArrayList<>(terms.size());
+        for (TermCursor term : terms) {
+            if (term.cursor.nextDoc() != DocIdIterator.NO_MORE_DOCS) {
+                cursors.add(term);
+            }
+        }
+        cursors.sort(Comparator.comparingInt(term -> term.cursor.docId()));
+        double threshold = -1;
+        while (true) {
+            int pivot = -1;
+            double bound = 0;
+            for (int i = 0; i < cursors.size(); i++) {
+                bound += cursors.get(i).maxScore;
+                if (bound > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break;
+            }
+            int pivotDoc = cursors.get(pivot).cursor.docId();
+            if (cursors.get(0).cursor.docId() == pivotDoc) {
+                double normalizedLength = lengths.applyAsInt(pivotDoc) / averageLength;
+                double score = 0;
+                int matched = 0;
+                while (matched < cursors.size() && cursors.get(matched).cursor.docId() == pivotDoc) {
+                    TermCursor term = cursors.get(matched++);
+                    score += term.score(term.cursor.frequency(), normalizedLength);
+                }
+                if (score > threshold && live.test(pivotDoc)) {
+                    top.add(new ScoredDocument(pivotDoc, score));
+                    if (top.size() > k) {
+                        top.poll();
+                    }
+                    if (top.size() == k) {
+                        threshold = top.peek().score();
+                    }
+                }
+                for (int i = 0; i < matched; i++) {
+                    cursors.get(i).cursor.nextDoc();
+                }
+            } else {
+                for (int i = 0; i < pivot; i++) {
+                    if (cursors.get(i).cursor.docId() < pivotDoc) {
+                        cursors.get(i).cursor.advance(pivotDoc);
+                    }
+                }
+            }
+            resort(cursors);
+        }
+        List<ScoredDocument> documents = new ArrayList<>(top);
+        documents.sort(worstFirst.reversed());
+        return documents;
+    }
+
+    /**
+     * Drops the exhausted cursors and restores the order of the others, of which only a few moved.
+     */
+    private static void resort(List<TermCursor> cursors) {
+        cursors.removeIf(term -> term.cursor.docId() == DocIdIterator.NO_MORE_DOCS);
+        for (int i = 1; i < cursors.size(); i++) {
+            TermCursor term = cursors.get(i);
+            int j = i - 1;
+            while (j >= 0 && cursors.get(j).cursor.docId() > term.cursor.docId()) {
+                cursors.set(j + 1, cursors.get(j));
+                j--;
+            }
+            cursors.set(j + 1, term);
+        }
+    }
+}
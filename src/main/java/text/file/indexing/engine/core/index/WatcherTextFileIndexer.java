@@ -1,18 +1,27 @@
 package text.file.indexing.engine.core.index;
 
 import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.search.Position;
+import text.file.indexing.engine.core.search.ScoredPath;
 import text.file.indexing.engine.watcher.FileSystemWatchServiceWatcher;
 import text.file.indexing.engine.watcher.FileSystemWatcher;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the TextFileIndexer interface that integrates with a file system watcher.
  * This class indexes text files using SimpleTextFileIndexer and utilizes a provided FileSystemWatcher for monitoring file changes.
+ * Closing the indexer closes the watcher, so it is best used with try-with-resources.
  */
-public class WatcherTextFileIndexer implements TextFileIndexer {
+public class WatcherTextFileIndexer implements TextFileIndexer, AutoCloseable {
 
     private final SimpleTextFileIndexer simpleTextFileIndexer;
     private final FileSystemWatcher watcher;
@@ -23,6 +32,15 @@ public class WatcherTextFileIndexer implements TextFileIndexer {
         this.watcher = watcher;
     }
 
+    /**
+     * Watches with a {@link FileSystemWatchServiceWatcher} that applies changes after the given quiet window on the
+     * given workers. The workers stay owned by the caller and are not shut down by {@link #close()}.
+     */
+    public WatcherTextFileIndexer(Index index, Token token, Duration quietWindow, Executor indexingWorkers) {
+        this.simpleTextFileIndexer = new SimpleTextFileIndexer(token, index);
+        this.watcher = new FileSystemWatchServiceWatcher(simpleTextFileIndexer, quietWindow, indexingWorkers);
+    }
+
     public WatcherTextFileIndexer() {
         Token token = Token.defaultWhiteSpaceToken();
         Index index = new InvertedIndex();
@@ -39,8 +57,38 @@ public class WatcherTextFileIndexer implements TextFileIndexer {
         watcher.stopWatching();
     }
 
+    @Override
+    public void close() {
+        watcher.close();
+    }
+
     @Override
     public Set<Path> searchFiles(String queryWord) {
         return simpleTextFileIndexer.searchFiles(queryWord);
     }
+
+    @Override
+    public Stream<Path> search(Query query) {
+        return simpleTextFileIndexer.search(query);
+    }
+
+    @Override
+    public Stream<Path> searchCandidates(String literal) {
+        return simpleTextFileIndexer.searchCandidates(literal);
+    }
+
+    @Override
+    public Stream<Path> searchRegexCandidates(Pattern regex) {
+        return simpleTextFileIndexer.searchRegexCandidates(regex);
+    }
+
+    @Override
+    public Map<Path, List<Position>> searchPhrase(String phrase, int slop) {
+        return simpleTextFileIndexer.searchPhrase(phrase, slop);
+    }
+
+    @Override
+    public List<ScoredPath> searchTopK(String query, int k) {
+        return simpleTextFileIndexer.searchTopK(query, k);
+    }
 }
@@ -0,0 +1,158 @@
+package text.file.indexing.engine.core.search;
+
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding several byte patterns in one pass over the bytes. The failure links are resolved
+ * while building, so the automaton is a DFA stored as a dense transition table: one row per state and one column
+ * per class of bytes, the bytes occurring in no pattern sharing a class. A scan is then one table lookup per byte.
+ * <p>
+ * The rows are addressed by their offset in the table, so no multiplication is needed per byte, and a transition
+ * to a state ending a pattern is stored complemented, so the scan loop tests only the sign for a match.
+ */
+final class AhoCorasickAutomaton {
+
+    /**
+     * Receives the matches of a scan in the order of their end.
+     */
+    interface MatchListener {
+        /**
+         * @param pattern the index of the pattern in the list the automaton was built from
+         * @param end     the offset after the last byte of the match
+         */
+        void match(int pattern, int end);
+    }
+
+    private final int[] byteClasses = new int[256];
+
+    private final int width;
+
+    private final int[] transitions;
+
+    // the patterns ending at state s are outputs[outputOffsets[s]] to outputs[outputOffsets[s + 1] - 1]
+    private final int[] outputOffsets;
+
+    private final int[] outputs;
+
+    private final int maxPatternLength;
+
+    /**
+     * @param patterns distinct, non-empty patterns
+     */
+    AhoCorasickAutomaton(List<byte[]> patterns) {
+        int classes = 1;
+        long totalLength = 0;
+        int maxLength = 0;
+        for (byte[] pattern : patterns) {
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("Patterns must not be empty");
+            }
+            for (byte b : pattern) {
+                if (byteClasses[b & 0xFF] == 0) {
+                    byteClasses[b & 0xFF] = classes++;
+                }
+            }
+            totalLength += pattern.length;
+            maxLength = Math.max(maxLength, pattern.length);
+        }
+        if ((totalLength + 1) * classes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Patterns are too long for one automaton");
+        }
+        width = classes;
+        maxPatternLength = maxLength;
+
+        // the trie, 0 being the root as well as a missing child, since the root is nobody's child
+        int[] table = new int[(int) ((totalLength + 1) * width)];
+        int[] ownPattern = new int[(int) totalLength + 1];
+        ownPattern[0] = -1;
+        int states = 1;
+        for (int i = 0; i < patterns.size(); i++) {
+            int state = 0;
+            for (byte b : patterns.get(i)) {
+                int cell = state * width + byteClasses[b & 0xFF];
+                if (table[cell] == 0) {
+                    ownPattern[states] = -1;
+                    table[cell] = states++;
+                }
+                state = table[cell];
+            }
+            ownPattern[state] = i;
+        }
+
+        // breadth first, so the failure state of a state, being shallower, is complete when the state is reached
+        int[] failure = new int[states];
+        int[] order = new int[states];
+        int[] outputCounts = new int[states];
+        int tail = 1;
+        for (int head = 0; head < tail; head++) {
+            int state = order[head];
+            int row = state * width;
+            int failureRow = failure[state] * width;
+            for (int c = 1; c < width; c++) {
+                int child = table[row + c];
+                if (child == 0) {
+                    table[row + c] = state == 0 ? 0 : table[failureRow + c];
+                } else {
+                    failure[child] = state == 0 ? 0 : table[failureRow + c];
+                    order[tail++] = child;
+                }
+            }
+            outputCounts[state] = (ownPattern[state] >= 0 ? 1 : 0) + (state == 0 ? 0 : outputCounts[failure[state]]);
+        }
+
+        outputOffsets = new int[states + 1];
+        for (int state = 0; state < states; state++) {
+            outputOffsets[state + 1] = outputOffsets[state] + outputCounts[state];
+        }
+        outputs = new int[outputOffsets[states]];
+        for (int i = 0; i < states; i++) {
+            int state = order[i];
+            int offset = outputOffsets[state];
+            if (ownPattern[state] >= 0) {
+                outputs[offset++] = ownPattern[state];
+            }
+            if (state != 0) {
+                int inherited = failure[state];
+                System.arraycopy(outputs, outputOffsets[inherited], outputs, offset, outputCounts[inherited]);
+            }
+        }
+
+        transitions = new int[states * width];
+        for (int cell = 0; cell < transitions.length; cell++) {
+            int target = table[cell];
+            transitions[cell] = outputCounts[target] > 0 ? ~(target * width) : target * width;
+        }
+    }
+
+    int maxPatternLength() {
+        return maxPatternLength;
+    }
+
+    /**
+     * Returns the state of the automaton before any byte.
+     */
+    static int start() {
+        return 0;
+    }
+
+    /**
+     * Feeds the bytes from {@code from} to {@code to} in the state, reporting every pattern ending in them.
+     *
+     * @return the state after the bytes, from which the scan can continue with the following bytes
+     */
+    int scan(byte[] text, int from, int to, int state, MatchListener listener) {
+        int[] transitions = this.transitions;
+        int[] byteClasses = this.byteClasses;
+        for (int i = from; i < to; i++) {
+            state = transitions[state + byteClasses[text[i] & 0xFF]];
+            if (state < 0) {
+                state = ~state;
+                int s = state / width;
+                for (int o = outputOffsets[s]; o < outputOffsets[s + 1]; o++) {
+                    listener.match(outputs[o], i + 1);
+                }
+            }
+        }
+        return state;
+    }
+}
@@ -0,0 +1,171 @@
+package text.file.indexing.engine.core.search;
+
+import text.file.indexing.engine.core.index.TextFileIndexer;
+import text.file.indexing.engine.utils.ChunkedFileReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Searcher finding many patterns with one {@link AhoCorasickAutomaton} over their UTF-8 bytes. The candidate files
+ * of all patterns are read once each, in parallel, instead of once per pattern; a pattern is reported only in its
+ * own candidate files, so the results are those of {@link LiteralTextFileSearcher} for every pattern.
+ */
+public class AhoCorasickTextFileSearcher implements TextFileSearcher {
+
+    private static final Logger LOGGER = Logger.getLogger(AhoCorasickTextFileSearcher.class.getName());
+
+    private final TextFileIndexer textFileIndexer;
+
+    public AhoCorasickTextFileSearcher(TextFileIndexer textFileIndexer) {
+        this.textFileIndexer = textFileIndexer;
+    }
+
+    public List<PathWithPosition> searchPathWithPosition(String pattern) {
+        return searchPatterns(Collections.singletonList(pattern)).get(pattern);
+    }
+
+    @Override
+    public Map<String, List<PathWithPosition>> searchPatterns(Collection<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            throw new IllegalArgumentException("Patterns must not be null or empty");
+        }
+        Map<String, List<PathWithPosition>> results = new LinkedHashMap<>();
+        List<String> searched = new ArrayList<>();
+        for (String pattern : new LinkedHashSet<>(patterns)) {
+            if (pattern == null || pattern.trim().isEmpty()) {
+                throw new IllegalArgumentException("Pattern must not be null or blank");
+            }
+            results.put(pattern, Collections.emptyList());
+            if (pattern.indexOf('\n') < 0 && pattern.indexOf('\r') < 0) {
+                searched.add(pattern);
+            }
+        }
+        if (searched.isEmpty()) {
+            return results;
+        }
+
+        List<byte[]> bytes = new ArrayList<>(searched.size());
+        Map<Path, BitSet> candidatePatterns = new LinkedHashMap<>();
+        List<List<Path>> candidates = new ArrayList<>(searched.size());
+        for (int i = 0; i < searched.size(); i++) {
+            bytes.add(searched.get(i).getBytes(StandardCharsets.UTF_8));
+            List<Path> files = textFileIndexer.searchCandidates(searched.get(i)).toList();
+            for (Path file : files) {
+                candidatePatterns.computeIfAbsent(file, it -> new BitSet()).set(i);
+            }
+            candidates.add(files);
+        }
+        AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(bytes);
+        int[] lengths = bytes.stream().mapToInt(it -> it.length).toArray();
+
+        Map<Path, List<Position>[]> positions = new LinkedHashMap<>();
+        candidatePatterns.entrySet()
+                .parallelStream()
+                .map(it -> Map.entry(it.getKey(), search(it.getKey(), automaton, lengths, it.getValue())))
+                .toList()
+                .forEach(it -> positions.put(it.getKey(), it.getValue()));
+
+        for (int i = 0; i < searched.size(); i++) {
+            List<PathWithPosition> found = new ArrayList<>();
+            for (Path file : candidates.get(i)) {
+                List<Position>[] filePositions = positions.get(file);
+                if (filePositions != null && filePositions[i] != null) {
+                    found.add(new PathWithPosition(file, filePositions[i]));
+                }
+            }
+            results.put(searched.get(i), Collections.unmodifiableList(found));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the positions of every pattern found in the file, null for the patterns not found.
+     */
+    private static List<Position>[] search(Path filePath, AhoCorasickAutomaton automaton, int[] lengths,
+                                           BitSet patterns) {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            FileScan scan = new FileScan(lengths, patterns,
+                    Math.max(ChunkedFileReader.CHUNK_SIZE, automaton.maxPatternLength() * 2));
+            scan.search(channel, automaton);
+            return scan.positions;
+        } catch (IOException e) {
+            LOGGER.log(SEVERE, "A problem has occurred while searching word", e);
+        }
+        return null;
+    }
+
+    private static final class FileScan implements AhoCorasickAutomaton.MatchListener {
+
+        private final int[] lengths;
+
+        private final BitSet patterns;
+
+        private final byte[] buffer;
+
+        private final LineCounter lines = new LineCounter();
+
+        private final List<Position>[] positions;
+
+        FileScan(int[] lengths, BitSet patterns, int bufferSize) {
+            this.lengths = lengths;
+            this.patterns = patterns;
+            this.buffer = new byte[bufferSize];
+            @SuppressWarnings("unchecked")
+            List<Position>[] positions = (List<Position>[]) new List<?>[lengths.length];
+            this.positions = positions;
+        }
+
+        /**
+         * Reads the file chunk by chunk, feeding every byte to the automaton once; the state of the automaton
+         * carries over to the next chunk, and the last bytes of a chunk are kept only to locate the start of a
+         * match ending in the next one.
+         */
+        void search(FileChannel channel, AhoCorasickAutomaton automaton) throws IOException {
+            int keep = automaton.maxPatternLength() - 1;
+            int state = AhoCorasickAutomaton.start();
+            int length = 0;
+            while (true) {
+                int read = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length));
+                if (read < 0) {
+                    return;
+                }
+                state = automaton.scan(buffer, length, length + read, state, this);
+                length += read;
+                int keptFrom = Math.max(0, length - keep);
+                lines.discard(buffer, keptFrom);
+                System.arraycopy(buffer, keptFrom, buffer, 0, length - keptFrom);
+                length -= keptFrom;
+            }
+        }
+
+        @Override
+        public void match(int pattern, int end) {
+            if (!patterns.get(pattern)) {
+                return;
+            }
+            int start = end - lengths[pattern];
+            // a match holds no line terminator, so its start is on the line counted up to any later match start
+            lines.advance(buffer, start);
+            if (positions[pattern] == null) {
+                positions[pattern] = new ArrayList<>();
+            }
+            positions[pattern].add(new Position(lines.line(), lines.column(buffer, start)));
+        }
+    }
+}
@@ -1,20 +1,27 @@
 package text.file.indexing.engine.core.search;
 
 import text.file.indexing.engine.core.index.TextFileIndexer;
+import text.file.indexing.engine.utils.ChunkedFileReader;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.Reader;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.logging.Logger;
 
 import static java.util.logging.Level.SEVERE;
 
+/**
+ * Searcher which verifies the candidate files of the indexer with the Boyer-Moore algorithm.
+ * With a trigram index (see {@link TextFileIndexer#searchCandidates(String)}) any literal is found,
+ * otherwise only literals which are whole terms.
+ */
 public class BoyerMooreTextFileSearcher implements TextFileSearcher {
 
     private static final Logger LOGGER = Logger.getLogger(BoyerMooreTextFileSearcher.class.getName());
 
+    private static final int CHUNK_SIZE = 8192;
+
     private final TextFileIndexer textFileIndexer;
 
     public BoyerMooreTextFileSearcher(TextFileIndexer textFileIndexer) {
@@ -25,16 +32,25 @@ public class BoyerMooreTextFileSearcher implements TextFileSearcher {
         if (pattern == null || pattern.trim().isEmpty()) {
             throw new IllegalArgumentException("Pattern must not be null or blank");
         }
-        Set<Path> wordFindInPaths = textFileIndexer.searchFiles(pattern);
-        return wordFindInPaths.stream()
+        return textFileIndexer.searchCandidates(pattern)
                 .parallel()
                 .map(it -> new PathWithPosition(it, boyerMooreSearcher(it, pattern)))
+                .filter(it -> !it.getPositions().isEmpty())
                 .toList();
     }
 
+    /**
+     * Reads each candidate file once for all patterns, see {@link AhoCorasickTextFileSearcher}. The positions may
+     * differ only in files holding malformed UTF-8.
+     */
+    @Override
+    public Map<String, List<PathWithPosition>> searchPatterns(Collection<String> patterns) {
+        return new AhoCorasickTextFileSearcher(textFileIndexer).searchPatterns(patterns);
+    }
+
     private List<Position> boyerMooreSearcher(Path filePath, String pattern) {
-        try (BufferedReader br = Files.newBufferedReader(filePath)) {
-            return boyerMooreSearcher(pattern, br);
+        try (Reader reader = ChunkedFileReader.open(filePath)) {
+            return boyerMooreSearcher(pattern, reader);
         } catch (IOException e) {
             LOGGER.log(SEVERE, "A problem has occurred while searching word", e);
         }
@@ -43,44 +59,103 @@ public class BoyerMooreTextFileSearcher implements TextFileSearcher {
 
     /**
      * Searches for a pattern in a given file and returns a list of positions where the pattern is found.
+     * The file is read chunk by chunk; between chunks only the tail of the current line which may still
+     * contain a match is kept, so long lines are never read as a whole.
      *
      * @param pattern the pattern to search for
      * @return a list of {@link Position} objects representing the positions where the pattern is found
      */
-    private List<Position> boyerMooreSearcher(String pattern, BufferedReader br) throws IOException {
+    private List<Position> boyerMooreSearcher(String pattern, Reader reader) throws IOException {
         List<Position> listOfPair = new ArrayList<>();
+        if (pattern.indexOf('\n') >= 0 || pattern.indexOf('\r') >= 0) {
+            return listOfPair;
+        }
         Map<Character, Integer> chartTable = buildCharTable(pattern);
+        char[] buffer = new char[Math.max(CHUNK_SIZE, pattern.length() * 2)];
+        int length = 0;
         int lineCounter = 0;
-        String line;
-        int patternSize = pattern.length();
-
-        while ((line = br.readLine()) != null) {
-            int lineSize = line.length();
-            int currentIndex = 0;
-            while (currentIndex <= (lineSize - patternSize)) {
-                int currentMatch = patternSize - 1;
-                while (currentMatch >= 0 &&
-                        pattern.charAt(currentMatch) == line.charAt(currentIndex + currentMatch))
-                    currentMatch--;
-
-                if (currentMatch < 0) {
-                    listOfPair.add(new Position(lineCounter, currentIndex));
-                    if (currentIndex + patternSize < lineSize) {
-                        char currentChar = line.charAt(currentIndex + patternSize);
-                        currentIndex += patternSize - chartTable.getOrDefault(currentChar, -1);
-                    } else {
-                        currentIndex++;
-                    }
-                } else {
-                    char currentChar = line.charAt(currentIndex + currentMatch);
-                    int shiftChar = chartTable.getOrDefault(currentChar, patternSize);
-                    currentIndex += Math.max(1, shiftChar);
+        // buffer indexes of the start of the current line, of the next candidate match
+        // and of the first char not checked for a line terminator yet
+        int lineStart = 0;
+        int currentIndex = 0;
+        int scanned = 0;
+        boolean endOfInput = false;
+        boolean skipLineFeed = false;
+
+        while (true) {
+            if (skipLineFeed && scanned < length) {
+                if (buffer[scanned] == '\n') {
+                    lineStart = currentIndex = ++scanned;
                 }
+                skipLineFeed = false;
+            }
+            int lineEnd = scanned;
+            while (lineEnd < length && buffer[lineEnd] != '\n' && buffer[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            currentIndex = searchLine(pattern, chartTable, buffer, lineStart, currentIndex, lineEnd,
+                    lineEnd < length || endOfInput, lineCounter, listOfPair);
+            if (lineEnd < length) {
+                lineCounter++;
+                skipLineFeed = buffer[lineEnd] == '\r';
+                lineStart = currentIndex = scanned = lineEnd + 1;
+                continue;
+            }
+            if (endOfInput) {
+                return listOfPair;
+            }
+            int consumed = Math.min(currentIndex, length);
+            System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+            length -= consumed;
+            lineStart -= consumed;
+            currentIndex -= consumed;
+            scanned = length;
+            int read = reader.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                length += read;
             }
-            lineCounter++;
+        }
+    }
 
+    /**
+     * Runs the search over the part of a line present in the buffer.
+     *
+     * @param lineComplete whether the line ends at {@code lineEnd}; otherwise a candidate is checked only once
+     *                     the char following it is in the buffer
+     * @return the buffer index of the next candidate match
+     */
+    private static int searchLine(String pattern, Map<Character, Integer> chartTable, char[] buffer, int lineStart,
+                                  int currentIndex, int lineEnd, boolean lineComplete, int lineCounter,
+                                  List<Position> positions) {
+        int patternSize = pattern.length();
+        int lastIndex = lineComplete ? lineEnd - patternSize : lineEnd - patternSize - 1;
+        while (currentIndex <= lastIndex) {
+            int currentMatch = patternSize - 1;
+            while (currentMatch >= 0 &&
+                    pattern.charAt(currentMatch) == buffer[currentIndex + currentMatch])
+                currentMatch--;
+
+            if (currentMatch < 0) {
+                positions.add(new Position(lineCounter, currentIndex - lineStart));
+            }
+            currentIndex += shift(pattern, chartTable, buffer[currentIndex + patternSize - 1]);
+        }
+        return currentIndex;
+    }
+
+    /**
+     * Returns the Horspool shift for the text char aligned with the last char of the pattern,
+     * so no occurrence is skipped whichever char mismatched.
+     */
+    private static int shift(String pattern, Map<Character, Integer> chartTable, char alignedChar) {
+        int patternSize = pattern.length();
+        if (alignedChar == pattern.charAt(patternSize - 1)) {
+            // the table keeps only the last char for it, but the shift depends on its previous occurrence
+            return patternSize - 1 - pattern.lastIndexOf(alignedChar, patternSize - 2);
         }
-        return listOfPair;
+        return chartTable.getOrDefault(alignedChar, patternSize - 1) + 1;
     }
 
     /**
@@ -0,0 +1,60 @@
+package text.file.indexing.engine.core.search;
+
+import java.lang.reflect.Constructor;
+import java.util.logging.Logger;
+
+/**
+ * Finds the occurrences of a byte pattern in byte arrays. The scalar {@link HorspoolByteMatcher} is used unless the
+ * {@value #VECTOR_PROPERTY} system property is {@code true} and the {@code VectorByteMatcher}, built by the
+ * {@code vector} Maven profile, can be loaded, which needs {@code --add-modules jdk.incubator.vector}.
+ */
+abstract class ByteMatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(ByteMatcher.class.getName());
+
+    static final String VECTOR_PROPERTY = "text.file.indexing.engine.vectorSearch";
+
+    private static final Constructor<? extends ByteMatcher> VECTOR_MATCHER = vectorMatcher();
+
+    static ByteMatcher forPattern(byte[] pattern) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("pattern must not be empty");
+        }
+        if (VECTOR_MATCHER == null) {
+            return new HorspoolByteMatcher(pattern);
+        }
+        try {
+            return VECTOR_MATCHER.newInstance((Object) pattern);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't create the vector matcher", e);
+        }
+    }
+
+    /**
+     * Returns whether the patterns are matched with the Vector API.
+     */
+    static boolean isVectorized() {
+        return VECTOR_MATCHER != null;
+    }
+
+    private static Constructor<? extends ByteMatcher> vectorMatcher() {
+        if (!Boolean.getBoolean(VECTOR_PROPERTY)) {
+            return null;
+        }
+        try {
+            return Class.forName(ByteMatcher.class.getPackageName() + ".VectorByteMatcher")
+                    .asSubclass(ByteMatcher.class)
+                    .getDeclaredConstructor(byte[].class);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            LOGGER.warning("The Vector API is not available, build with -Pvector and run with "
+                    + "--add-modules jdk.incubator.vector; falling back to the scalar search");
+            return null;
+        }
+    }
+
+    /**
+     * Returns the start of the first occurrence of the pattern lying within {@code [from, to)} of the text, or
+     * {@code -1}.
+     */
+    abstract int indexOf(byte[] text, int from, int to);
+}
@@ -0,0 +1,44 @@
+package text.file.indexing.engine.core.search;
+
+import java.util.Arrays;
+
+/**
+ * Boyer-Moore-Horspool search over bytes with a primitive shift table: the window is moved by the distance from
+ * the byte aligned with the end of the pattern to its last occurrence in the rest of the pattern, and the window is
+ * compared only if that byte is the last byte of the pattern.
+ */
+final class HorspoolByteMatcher extends ByteMatcher {
+
+    private final byte[] pattern;
+
+    private final int[] shifts;
+
+    HorspoolByteMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+        this.shifts = new int[256];
+        Arrays.fill(shifts, pattern.length);
+        for (int i = 0; i < pattern.length - 1; i++) {
+            shifts[pattern[i] & 0xFF] = pattern.length - 1 - i;
+        }
+    }
+
+    @Override
+    int indexOf(byte[] text, int from, int to) {
+        int last = pattern.length - 1;
+        byte lastByte = pattern[last];
+        for (int start = from; start <= to - pattern.length; ) {
+            byte aligned = text[start + last];
+            if (aligned == lastByte) {
+                int i = last - 1;
+                while (i >= 0 && text[start + i] == pattern[i]) {
+                    i--;
+                }
+                if (i < 0) {
+                    return start;
+                }
+            }
+            start += shifts[aligned & 0xFF];
+        }
+        return -1;
+    }
+}
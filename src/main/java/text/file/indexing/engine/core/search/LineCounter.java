@@ -0,0 +1,76 @@
+package text.file.indexing.engine.core.search;
+
+/**
+ * Counts the lines of a file read chunk by chunk into a byte buffer up to an offset of the buffer, looking only for
+ * line terminators; the chars of a line are counted only up to a match and when the buffer is shifted. Like
+ * {@link java.io.BufferedReader#readLine()}, a line ends with {@code \n}, {@code \r} or {@code \r\n}; a
+ * supplementary char, four UTF-8 bytes, is two chars.
+ */
+final class LineCounter {
+
+    private int line;
+
+    // the offset of the buffer counted so far
+    private int scanned;
+
+    // the offset of the start of the current line, 0 if it started before the bytes in the buffer
+    private int lineStart;
+
+    // the chars of the current line before the bytes in the buffer
+    private int discardedColumns;
+
+    // whether the byte before the buffer is a carriage return
+    private boolean afterCarriageReturn;
+
+    int line() {
+        return line;
+    }
+
+    void advance(byte[] buffer, int to) {
+        for (int i = scanned; i < to; i++) {
+            byte b = buffer[i];
+            // the high nibble of both terminators is 0, unlike that of most text bytes
+            if ((b & 0xF0) == 0 && (b == '\n' || b == '\r')) {
+                boolean crlf = b == '\n' && (i > 0 ? buffer[i - 1] == '\r' : afterCarriageReturn);
+                if (!crlf) {
+                    line++;
+                }
+                lineStart = i + 1;
+                discardedColumns = 0;
+            }
+        }
+        scanned = Math.max(scanned, to);
+    }
+
+    int column(byte[] buffer, int offset) {
+        return discardedColumns + chars(buffer, lineStart, offset);
+    }
+
+    /**
+     * Counts the bytes before the offset, which are then moved out of the buffer so the byte at the offset becomes
+     * the first one.
+     */
+    void discard(byte[] buffer, int offset) {
+        advance(buffer, offset);
+        if (lineStart < offset) {
+            discardedColumns += chars(buffer, lineStart, offset);
+            lineStart = 0;
+        } else {
+            lineStart -= offset;
+        }
+        afterCarriageReturn = offset > 0 ? buffer[offset - 1] == '\r' : afterCarriageReturn;
+        scanned -= offset;
+    }
+
+    private static int chars(byte[] buffer, int from, int to) {
+        int chars = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            // continuation bytes do not start a char
+            if ((b & 0xC0) != 0x80) {
+                chars += (b & 0xF8) == 0xF0 ? 2 : 1;
+            }
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,109 @@
+package text.file.indexing.engine.core.search;
+
+import text.file.indexing.engine.core.index.TextFileIndexer;
+import text.file.indexing.engine.utils.ChunkedFileReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Searcher which verifies the candidate files of the indexer by searching the UTF-8 bytes of the pattern in the raw
+ * bytes of the files, without decoding them, with a {@link ByteMatcher}: a Horspool search over a primitive shift
+ * table, or a Vector API search comparing the first and last byte of the pattern at many offsets at once, see
+ * {@link ByteMatcher}. Between the matches only line terminators are looked for, the chars of a line are counted
+ * only up to a match. The positions are the same as those of {@link BoyerMooreTextFileSearcher}, except that
+ * malformed UTF-8 is not reported.
+ */
+public class LiteralTextFileSearcher implements TextFileSearcher {
+
+    private static final Logger LOGGER = Logger.getLogger(LiteralTextFileSearcher.class.getName());
+
+    private final TextFileIndexer textFileIndexer;
+
+    public LiteralTextFileSearcher(TextFileIndexer textFileIndexer) {
+        this.textFileIndexer = textFileIndexer;
+    }
+
+    public List<PathWithPosition> searchPathWithPosition(String pattern) {
+        if (pattern == null || pattern.trim().isEmpty()) {
+            throw new IllegalArgumentException("Pattern must not be null or blank");
+        }
+        if (pattern.indexOf('\n') >= 0 || pattern.indexOf('\r') >= 0) {
+            return Collections.emptyList();
+        }
+        byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+        ByteMatcher matcher = ByteMatcher.forPattern(bytes);
+        return textFileIndexer.searchCandidates(pattern)
+                .parallel()
+                .map(it -> new PathWithPosition(it, search(it, matcher, bytes.length)))
+                .filter(it -> !it.getPositions().isEmpty())
+                .toList();
+    }
+
+    /**
+     * Reads each candidate file once for all patterns, see {@link AhoCorasickTextFileSearcher}.
+     */
+    @Override
+    public Map<String, List<PathWithPosition>> searchPatterns(Collection<String> patterns) {
+        return new AhoCorasickTextFileSearcher(textFileIndexer).searchPatterns(patterns);
+    }
+
+    private static List<Position> search(Path filePath, ByteMatcher matcher, int patternLength) {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            return search(channel, matcher, patternLength, Integer.MAX_VALUE, () -> false);
+        } catch (IOException e) {
+            LOGGER.log(SEVERE, "A problem has occurred while searching word", e);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Reads the file chunk by chunk; between chunks only the bytes which may start an occurrence overlapping the
+     * next chunk are kept. The search ends early once {@code limit} positions are found or, checked before every
+     * chunk, once {@code stopped} is true.
+     */
+    static List<Position> search(FileChannel channel, ByteMatcher matcher, int patternLength, int limit,
+                                 BooleanSupplier stopped) throws IOException {
+        List<Position> positions = new ArrayList<>();
+        byte[] buffer = new byte[Math.max(ChunkedFileReader.CHUNK_SIZE, patternLength * 2)];
+        LineCounter lines = new LineCounter();
+        int length = 0;
+        int searchFrom = 0;
+        while (true) {
+            int read = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length));
+            if (read > 0) {
+                length += read;
+            }
+            for (int match = matcher.indexOf(buffer, searchFrom, length); match >= 0;
+                 match = matcher.indexOf(buffer, searchFrom, length)) {
+                lines.advance(buffer, match);
+                positions.add(new Position(lines.line(), lines.column(buffer, match)));
+                searchFrom = match + 1;
+                if (positions.size() >= limit) {
+                    return positions;
+                }
+            }
+            if (read < 0 || stopped.getAsBoolean()) {
+                return positions;
+            }
+            int keptFrom = Math.max(searchFrom, length - (patternLength - 1));
+            lines.discard(buffer, keptFrom);
+            System.arraycopy(buffer, keptFrom, buffer, 0, length - keptFrom);
+            length -= keptFrom;
+            searchFrom = 0;
+        }
+    }
+}
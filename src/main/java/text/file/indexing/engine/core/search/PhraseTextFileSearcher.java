@@ -0,0 +1,38 @@
+package text.file.indexing.engine.core.search;
+
+import text.file.indexing.engine.core.index.TextFileIndexer;
+
+import java.util.List;
+
+/**
+ * Searcher which resolves phrases and their positions from an index storing positions,
+ * such as a positional {@link text.file.indexing.engine.core.index.CompactInvertedIndex}, without reading the files.
+ * The reported position is the line and column of the first term of each occurrence.
+ */
+public class PhraseTextFileSearcher implements TextFileSearcher {
+
+    private final TextFileIndexer textFileIndexer;
+
+    private final int slop;
+
+    public PhraseTextFileSearcher(TextFileIndexer textFileIndexer) {
+        this(textFileIndexer, 0);
+    }
+
+    /**
+     * @param slop the number of other tokens allowed between two consecutive terms of a phrase
+     */
+    public PhraseTextFileSearcher(TextFileIndexer textFileIndexer, int slop) {
+        if (slop < 0) {
+            throw new IllegalArgumentException("slop must not be negative");
+        }
+        this.textFileIndexer = textFileIndexer;
+        this.slop = slop;
+    }
+
+    public List<PathWithPosition> searchPathWithPosition(String phrase) {
+        return textFileIndexer.searchPhrase(phrase, slop).entrySet().stream()
+                .map(entry -> new PathWithPosition(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+}
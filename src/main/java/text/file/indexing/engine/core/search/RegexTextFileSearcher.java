@@ -0,0 +1,150 @@
+package text.file.indexing.engine.core.search;
+
+import text.file.indexing.engine.core.index.TextFileIndexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Searcher which finds the matches of a regular expression. The candidate files are pruned by the index with the
+ * trigrams of literals every match contains (see {@link TextFileIndexer#searchRegexCandidates(Pattern)}), so the
+ * index must index trigrams, and only the remaining files are matched, in parallel. A file is memory-mapped; if it is
+ * ASCII, as most logs and sources are, the regex runs over the mapped bytes without copying them, otherwise over
+ * the decoded content. The position of a match is that of its first char; empty matches are not reported.
+ */
+public class RegexTextFileSearcher implements TextFileSearcher {
+
+    private static final Logger LOGGER = Logger.getLogger(RegexTextFileSearcher.class.getName());
+
+    private final TextFileIndexer textFileIndexer;
+
+    public RegexTextFileSearcher(TextFileIndexer textFileIndexer) {
+        this.textFileIndexer = textFileIndexer;
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if the regex is not valid
+     */
+    public List<PathWithPosition> searchPathWithPosition(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            throw new IllegalArgumentException("Regex must not be null or empty");
+        }
+        return searchPathWithPosition(Pattern.compile(regex));
+    }
+
+    public List<PathWithPosition> searchPathWithPosition(Pattern regex) {
+        if (regex == null) {
+            throw new IllegalArgumentException("Regex must not be null");
+        }
+        return textFileIndexer.searchRegexCandidates(regex)
+                .parallel()
+                .map(it -> new PathWithPosition(it, search(it, regex)))
+                .filter(it -> !it.getPositions().isEmpty())
+                .toList();
+    }
+
+    private static List<Position> search(Path filePath, Pattern regex) {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                LOGGER.log(SEVERE, "File too large for a regex search " + filePath);
+                return Collections.emptyList();
+            }
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CharSequence content = isAscii(bytes)
+                    ? new AsciiCharSequence(bytes, 0, (int) size)
+                    : StandardCharsets.UTF_8.newDecoder().decode(bytes);
+            return search(content, regex);
+        } catch (IOException e) {
+            LOGGER.log(SEVERE, "A problem has occurred while searching regex", e);
+        }
+        return Collections.emptyList();
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        int i = 0;
+        int limit = bytes.limit();
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if ((bytes.getLong(i) & 0x8080_8080_8080_8080L) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position of every non-empty match; lines end with {@code \n}, {@code \r} or {@code \r\n}, like
+     * {@link java.io.BufferedReader#readLine()}.
+     */
+    static List<Position> search(CharSequence content, Pattern regex) {
+        List<Position> positions = new ArrayList<>();
+        Matcher matcher = regex.matcher(content);
+        int line = 0;
+        int lineStart = 0;
+        int scanned = 0;
+        while (matcher.find()) {
+            int start = matcher.start();
+            if (matcher.end() == start) {
+                continue;
+            }
+            for (; scanned < start; scanned++) {
+                char c = content.charAt(scanned);
+                if (c == '\n' || c == '\r') {
+                    boolean crlf = c == '\n' && scanned > 0 && content.charAt(scanned - 1) == '\r';
+                    if (!crlf) {
+                        line++;
+                    }
+                    lineStart = scanned + 1;
+                }
+            }
+            positions.add(new Position(line, start - lineStart));
+        }
+        return positions;
+    }
+
+    /**
+     * The bytes of an ASCII file as chars, read straight from the mapped file.
+     */
+    private record AsciiCharSequence(ByteBuffer bytes, int start, int end) implements CharSequence {
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new AsciiCharSequence(bytes, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] chars = new byte[length()];
+            bytes.get(start, chars);
+            return new String(chars, StandardCharsets.US_ASCII);
+        }
+    }
+}
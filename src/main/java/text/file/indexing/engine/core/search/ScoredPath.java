@@ -0,0 +1,6 @@
+package text.file.indexing.engine.core.search;
+
+import java.nio.file.Path;
+
+public record ScoredPath(Path path, double score) {
+}
@@ -0,0 +1,121 @@
+package text.file.indexing.engine.core.search;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A search started by {@link StreamingTextFileSearcher#search(String, int, java.time.Duration, Consumer)}, which
+ * hands the results of every file to the consumer as soon as the file is searched. The consumer is called by one
+ * search thread at a time and never once {@link #completion()} is completed, whether the search ended by itself,
+ * reached its limit or timeout, or was cancelled; the search threads stop at their next check, before reading the
+ * next chunk of a file.
+ */
+public final class SearchTask {
+
+    /**
+     * How a search ended.
+     */
+    public enum Status {
+        /**
+         * Every candidate file was searched.
+         */
+        COMPLETED,
+        /**
+         * As many positions as the limit were delivered.
+         */
+        LIMIT_REACHED,
+        TIMED_OUT,
+        CANCELLED
+    }
+
+    private final CompletableFuture<Status> completion;
+
+    private final Consumer<? super PathWithPosition> consumer;
+
+    private final AtomicLong searchedFiles;
+
+    // guarded by this
+    private int remainingPositions;
+
+    // guarded by this
+    private long deliveredPositions;
+
+    SearchTask(int limit, Consumer<? super PathWithPosition> consumer) {
+        this.completion = new CompletableFuture<>();
+        this.consumer = consumer;
+        this.searchedFiles = new AtomicLong();
+        this.remainingPositions = limit;
+    }
+
+    /**
+     * Returns the future completed with the status of the search once it ended, or exceptionally with the exception
+     * thrown by the consumer or while listing the candidate files.
+     */
+    public CompletableFuture<Status> completion() {
+        return completion;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Stops the search; nothing is delivered after this call returns.
+     */
+    public void cancel() {
+        finish(Status.CANCELLED);
+    }
+
+    /**
+     * Returns the number of candidate files searched so far.
+     */
+    public long searchedFiles() {
+        return searchedFiles.get();
+    }
+
+    /**
+     * Returns the number of positions handed to the consumer so far.
+     */
+    public synchronized long deliveredPositions() {
+        return deliveredPositions;
+    }
+
+    synchronized int remainingPositions() {
+        return remainingPositions;
+    }
+
+    /**
+     * Hands the positions found in the file to the consumer, at most as many as remain until the limit.
+     */
+    synchronized void deliver(Path path, List<Position> positions) {
+        searchedFiles.incrementAndGet();
+        if (completion.isDone() || positions.isEmpty()) {
+            return;
+        }
+        if (positions.size() > remainingPositions) {
+            positions = List.copyOf(positions.subList(0, remainingPositions));
+        }
+        remainingPositions -= positions.size();
+        deliveredPositions += positions.size();
+        try {
+            consumer.accept(new PathWithPosition(path, positions));
+        } catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+            return;
+        }
+        if (remainingPositions == 0) {
+            completion.complete(Status.LIMIT_REACHED);
+        }
+    }
+
+    synchronized void finish(Status status) {
+        completion.complete(status);
+    }
+
+    synchronized void fail(Throwable e) {
+        completion.completeExceptionally(e);
+    }
+}
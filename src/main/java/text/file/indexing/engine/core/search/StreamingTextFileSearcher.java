@@ -0,0 +1,261 @@
+package text.file.indexing.engine.core.search;
+
+import text.file.indexing.engine.core.index.TextFileIndexer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Searcher which streams the results of {@link LiteralTextFileSearcher} instead of collecting them: the candidate
+ * files are listed lazily from the index and searched on a dedicated pool of search threads, each file's positions
+ * going to the consumer as soon as the file is searched, in the order the files are done. A search stops after a
+ * limit of positions, after a timeout or when cancelled through its {@link SearchTask}, so a caller needing only the
+ * first hits neither waits for nor keeps the positions of all files. The timeouts are counted on a timer thread owned
+ * by the searcher, and the timeout of a search ending earlier is cancelled.
+ */
+public class StreamingTextFileSearcher implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamingTextFileSearcher.class.getName());
+
+    private final TextFileIndexer textFileIndexer;
+
+    private final Executor searchWorkers;
+
+    private final boolean ownsSearchWorkers;
+
+    private final int parallelism;
+
+    private final Set<SearchTask> runningTasks;
+
+    private final ScheduledThreadPoolExecutor timeouts;
+
+    private volatile boolean closed;
+
+    public StreamingTextFileSearcher(TextFileIndexer textFileIndexer) {
+        this(textFileIndexer, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param searchThreads the number of threads of the pool searching the files, shared by all searches
+     */
+    public StreamingTextFileSearcher(TextFileIndexer textFileIndexer, int searchThreads) {
+        this(textFileIndexer, newSearchPool(searchThreads), searchThreads, true);
+    }
+
+    /**
+     * @param searchWorkers the executor searching the files, which stays owned by the caller and is not shut down
+     *                      by {@link #close()}
+     * @param parallelism   the number of files one search reads at the same time
+     */
+    public StreamingTextFileSearcher(TextFileIndexer textFileIndexer, Executor searchWorkers, int parallelism) {
+        this(textFileIndexer, searchWorkers, parallelism, false);
+    }
+
+    private StreamingTextFileSearcher(TextFileIndexer textFileIndexer, Executor searchWorkers, int parallelism,
+                                      boolean ownsSearchWorkers) {
+        if (searchWorkers == null) {
+            throw new IllegalArgumentException("searchWorkers must not be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.textFileIndexer = textFileIndexer;
+        this.searchWorkers = searchWorkers;
+        this.ownsSearchWorkers = ownsSearchWorkers;
+        this.parallelism = parallelism;
+        this.runningTasks = ConcurrentHashMap.newKeySet();
+        this.timeouts = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "search-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // a cancelled timeout must not keep its search reachable until it would have elapsed
+        timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    private static ExecutorService newSearchPool(int searchThreads) {
+        if (searchThreads < 1) {
+            throw new IllegalArgumentException("searchThreads must be positive");
+        }
+        return Executors.newFixedThreadPool(searchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "text-file-searching");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts searching the pattern and returns at once.
+     *
+     * @param limit    the number of positions after which the search stops
+     * @param timeout  how long the search may run, a timeout too long to count in nanoseconds never elapsing
+     * @param consumer receives the positions found in each file, on the search threads
+     * @throws IllegalStateException if the searcher is closed
+     */
+    public SearchTask search(String pattern, int limit, Duration timeout,
+                             Consumer<? super PathWithPosition> consumer) {
+        if (pattern == null || pattern.trim().isEmpty()) {
+            throw new IllegalArgumentException("Pattern must not be null or blank");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer must not be null");
+        }
+        if (closed) {
+            throw new IllegalStateException("The searcher is closed");
+        }
+        long timeoutNanos = saturatedNanos(timeout);
+        SearchTask task = new SearchTask(limit, consumer);
+        if (pattern.indexOf('\n') >= 0 || pattern.indexOf('\r') >= 0) {
+            task.finish(SearchTask.Status.COMPLETED);
+            return task;
+        }
+        Search search = new Search(task, pattern.getBytes(StandardCharsets.UTF_8),
+                textFileIndexer.searchCandidates(pattern));
+        runningTasks.add(task);
+        task.completion().whenComplete((status, e) -> runningTasks.remove(task));
+        try {
+            ScheduledFuture<?> timeoutAction = timeouts.schedule(() -> task.finish(SearchTask.Status.TIMED_OUT),
+                    timeoutNanos, TimeUnit.NANOSECONDS);
+            task.completion().whenComplete((status, e) -> timeoutAction.cancel(false));
+        } catch (RejectedExecutionException e) {
+            // the searcher was closed meanwhile
+            task.fail(e);
+        }
+        for (int i = 0; i < parallelism; i++) {
+            try {
+                searchWorkers.execute(search);
+            } catch (RejectedExecutionException e) {
+                task.fail(e);
+                search.workerDone();
+            }
+        }
+        return task;
+    }
+
+    private static long saturatedNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns the number of timeouts of searches still to elapse.
+     */
+    int pendingTimeoutsCount() {
+        return timeouts.getQueue().size();
+    }
+
+    /**
+     * Cancels the running searches, stops the timer thread and shuts down the search threads owned by the searcher.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (SearchTask task : runningTasks) {
+            task.cancel();
+        }
+        timeouts.shutdownNow();
+        if (ownsSearchWorkers) {
+            ((ExecutorService) searchWorkers).shutdown();
+        }
+    }
+
+    /**
+     * One search, run by several workers taking the candidate files one by one. The last worker to finish closes
+     * the candidate stream, releasing the snapshot of the index it reads.
+     */
+    private final class Search implements Runnable {
+
+        private final SearchTask task;
+
+        private final byte[] pattern;
+
+        private final ByteMatcher matcher;
+
+        private final Stream<Path> candidates;
+
+        // guarded by itself
+        private final Iterator<Path> candidateIterator;
+
+        private final AtomicInteger runningWorkers;
+
+        Search(SearchTask task, byte[] pattern, Stream<Path> candidates) {
+            this.task = task;
+            this.pattern = pattern;
+            this.matcher = ByteMatcher.forPattern(pattern);
+            this.candidates = candidates;
+            this.candidateIterator = candidates.iterator();
+            this.runningWorkers = new AtomicInteger(parallelism);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!task.isDone()) {
+                    Path path;
+                    synchronized (candidateIterator) {
+                        if (!candidateIterator.hasNext()) {
+                            return;
+                        }
+                        path = candidateIterator.next();
+                    }
+                    int limit = task.remainingPositions();
+                    if (limit == 0) {
+                        return;
+                    }
+                    task.deliver(path, search(path, limit));
+                }
+            } catch (RuntimeException e) {
+                task.fail(e);
+            } finally {
+                workerDone();
+            }
+        }
+
+        void workerDone() {
+            if (runningWorkers.decrementAndGet() == 0) {
+                candidates.close();
+                task.finish(SearchTask.Status.COMPLETED);
+            }
+        }
+
+        private List<Position> search(Path filePath, int limit) {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                return LiteralTextFileSearcher.search(channel, matcher, pattern.length, limit, task::isDone);
+            } catch (IOException e) {
+                LOGGER.log(SEVERE, "A problem has occurred while searching word", e);
+            }
+            return Collections.emptyList();
+        }
+    }
+}
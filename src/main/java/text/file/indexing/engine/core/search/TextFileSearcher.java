@@ -1,7 +1,26 @@
 package text.file.indexing.engine.core.search;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface TextFileSearcher {
     List<PathWithPosition> searchPathWithPosition(String searchWord);
+
+    /**
+     * Searches several patterns, returning for each of them, in the order of the patterns, what
+     * {@link #searchPathWithPosition(String)} returns for it. This implementation searches the patterns one by one;
+     * {@link AhoCorasickTextFileSearcher} reads each candidate file once for all of them.
+     */
+    default Map<String, List<PathWithPosition>> searchPatterns(Collection<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            throw new IllegalArgumentException("Patterns must not be null or empty");
+        }
+        Map<String, List<PathWithPosition>> results = new LinkedHashMap<>();
+        for (String pattern : patterns) {
+            results.computeIfAbsent(pattern, this::searchPathWithPosition);
+        }
+        return results;
+    }
 }
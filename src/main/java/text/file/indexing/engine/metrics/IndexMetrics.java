@@ -0,0 +1,101 @@
+package text.file.indexing.engine.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the measurements of the indexing, watching and searching hot paths; {@link JmxIndexMetrics} publishes
+ * them over JMX. Every method does nothing by default. The methods are called on the indexing, watching and
+ * searching threads, so implementations must be thread-safe and must not block.
+ * <p>
+ * Nothing is measured unless {@link #isEnabled()}, so with {@link #NONE}, the default of the indexers, the
+ * instrumentation costs one check per file or search.
+ */
+public interface IndexMetrics {
+
+    /**
+     * Measures nothing.
+     */
+    IndexMetrics NONE = new IndexMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * The number of distinct terms of the index, summed over its segments.
+     */
+    String TERMS = "terms";
+
+    /**
+     * The number of postings, one for every term of every file.
+     */
+    String POSTINGS = "postings";
+
+    /**
+     * The approximate heap taken by the index, in bytes.
+     */
+    String ESTIMATED_HEAP_BYTES = "estimatedHeapBytes";
+
+    /**
+     * The number of files added to the index but not tokenized yet.
+     */
+    String PENDING_FILES = "pendingFiles";
+
+    /**
+     * The number of watched paths whose events wait for their quiet window.
+     */
+    String WATCHER_PENDING_CHANGES = "watcherPendingChanges";
+
+    /**
+     * The number of batches of watched changes handed to the indexing workers and not applied yet.
+     */
+    String WATCHER_QUEUED_BATCHES = "watcherQueuedBatches";
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called once a file is read and tokenized.
+     *
+     * @param bytes  the size of the file
+     * @param tokens the number of term occurrences in the file
+     * @param nanos  the time taken to read and tokenize the file
+     */
+    default void fileIndexed(long bytes, int tokens, long nanos) {
+    }
+
+    /**
+     * Called once a search returned its results.
+     */
+    default void searchCompleted(int results, long nanos) {
+    }
+
+    /**
+     * Called once a watched change is searchable.
+     *
+     * @param lagNanos the time since the first event of the change
+     */
+    default void changeApplied(long lagNanos) {
+    }
+
+    /**
+     * Called when the watch service dropped the events of a directory.
+     */
+    default void watchOverflowed() {
+    }
+
+    /**
+     * Registers a value read whenever it is published, such as {@link #TERMS}. A later gauge replaces an earlier one
+     * of the same name.
+     */
+    default void gauge(String name, LongSupplier value) {
+    }
+
+    /**
+     * Unregisters the gauge of the name if it is still the given one, when its owner is closed.
+     */
+    default void removeGauge(String name, LongSupplier value) {
+    }
+}
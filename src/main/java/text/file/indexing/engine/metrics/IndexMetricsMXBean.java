@@ -0,0 +1,44 @@
+package text.file.indexing.engine.metrics;
+
+import java.util.Map;
+
+/**
+ * The attributes published by {@link JmxIndexMetrics}. The rates are averaged over the last minute.
+ */
+public interface IndexMetricsMXBean {
+
+    long getFilesIndexed();
+
+    long getBytesIndexed();
+
+    long getTokensIndexed();
+
+    double getFilesIndexedPerSecond();
+
+    double getBytesIndexedPerSecond();
+
+    double getTokensIndexedPerSecond();
+
+    /**
+     * Returns the time taken to read and tokenize a file.
+     */
+    LatencySnapshot getIndexLatency();
+
+    /**
+     * Returns the latency of the searches by the number of their results: {@code 0}, {@code 1-9}, {@code 10-99},
+     * {@code 100-999} and {@code 1000+}.
+     */
+    Map<String, LatencySnapshot> getQueryLatencyByResultSize();
+
+    /**
+     * Returns the time from the first event of a watched change until the change is searchable.
+     */
+    LatencySnapshot getChangeLag();
+
+    long getWatchOverflows();
+
+    /**
+     * Returns the current value of every gauge, see {@link IndexMetrics#gauge(String, java.util.function.LongSupplier)}.
+     */
+    Map<String, Long> getGauges();
+}
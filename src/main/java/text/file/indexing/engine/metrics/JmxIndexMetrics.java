@@ -0,0 +1,213 @@
+package text.file.indexing.engine.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * {@link IndexMetrics} kept in lock-free counters and {@link LatencyHistogram}s and published as an
+ * {@link IndexMetricsMXBean} in the platform MBean server, under
+ * {@code text.file.indexing.engine:type=IndexMetrics,name=<name>}, so they can be read by JConsole, VisualVM or
+ * any JMX exporter:
+ * <pre>
+ * JmxIndexMetrics metrics = JmxIndexMetrics.register("docs");
+ * SimpleTextFileIndexer indexer = new SimpleTextFileIndexer(token, index, threads, metrics);
+ * </pre>
+ */
+public final class JmxIndexMetrics implements IndexMetrics, IndexMetricsMXBean, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(JmxIndexMetrics.class.getName());
+
+    public static final String DOMAIN = "text.file.indexing.engine";
+
+    private static final String[] RESULT_SIZES = {"0", "1-9", "10-99", "100-999", "1000+"};
+
+    private final ObjectName objectName;
+
+    private final RateMeter filesIndexed;
+
+    private final RateMeter bytesIndexed;
+
+    private final RateMeter tokensIndexed;
+
+    private final LatencyHistogram indexLatency;
+
+    private final LatencyHistogram[] queryLatency;
+
+    private final LatencyHistogram changeLag;
+
+    private final LongAdder watchOverflows;
+
+    private final Map<String, LongSupplier> gauges;
+
+    private JmxIndexMetrics(ObjectName objectName) {
+        this.objectName = objectName;
+        this.filesIndexed = new RateMeter();
+        this.bytesIndexed = new RateMeter();
+        this.tokensIndexed = new RateMeter();
+        this.indexLatency = new LatencyHistogram();
+        this.queryLatency = new LatencyHistogram[RESULT_SIZES.length];
+        for (int i = 0; i < queryLatency.length; i++) {
+            queryLatency[i] = new LatencyHistogram();
+        }
+        this.changeLag = new LatencyHistogram();
+        this.watchOverflows = new LongAdder();
+        this.gauges = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Creates metrics and registers them in the platform MBean server.
+     *
+     * @param name the value of the {@code name} key of the object name, which tells apart several indexes
+     * @throws IllegalArgumentException if the name is not a valid key value or metrics of the name are registered
+     */
+    public static JmxIndexMetrics register(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name must not be null or empty");
+        }
+        try {
+            JmxIndexMetrics metrics = new JmxIndexMetrics(new ObjectName(DOMAIN + ":type=IndexMetrics,name=" + name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metrics.objectName);
+            return metrics;
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException e) {
+            throw new IllegalArgumentException("Can't register the metrics " + name, e);
+        } catch (JMException e) {
+            throw new IllegalStateException("Can't register the metrics " + name, e);
+        }
+    }
+
+    public ObjectName objectName() {
+        return objectName;
+    }
+
+    /**
+     * Unregisters the metrics from the MBean server. They keep counting if they are still used.
+     */
+    @Override
+    public void close() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            // already unregistered
+        } catch (JMException e) {
+            LOGGER.warning("Can't unregister the metrics " + objectName);
+        }
+    }
+
+    @Override
+    public void fileIndexed(long bytes, int tokens, long nanos) {
+        filesIndexed.add(1);
+        bytesIndexed.add(bytes);
+        tokensIndexed.add(tokens);
+        indexLatency.record(nanos);
+    }
+
+    @Override
+    public void searchCompleted(int results, long nanos) {
+        queryLatency[resultSizeClass(results)].record(nanos);
+    }
+
+    private static int resultSizeClass(int results) {
+        int sizeClass = 0;
+        for (long bound = 1; results >= bound && sizeClass < RESULT_SIZES.length - 1; bound *= 10) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    @Override
+    public void changeApplied(long lagNanos) {
+        changeLag.record(lagNanos);
+    }
+
+    @Override
+    public void watchOverflowed() {
+        watchOverflows.increment();
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier value) {
+        if (name == null || value == null) {
+            throw new IllegalArgumentException("name and value must not be null");
+        }
+        gauges.put(name, value);
+    }
+
+    @Override
+    public void removeGauge(String name, LongSupplier value) {
+        if (name == null || value == null) {
+            throw new IllegalArgumentException("name and value must not be null");
+        }
+        gauges.remove(name, value);
+    }
+
+    @Override
+    public long getFilesIndexed() {
+        return filesIndexed.total();
+    }
+
+    @Override
+    public long getBytesIndexed() {
+        return bytesIndexed.total();
+    }
+
+    @Override
+    public long getTokensIndexed() {
+        return tokensIndexed.total();
+    }
+
+    @Override
+    public double getFilesIndexedPerSecond() {
+        return filesIndexed.perSecond();
+    }
+
+    @Override
+    public double getBytesIndexedPerSecond() {
+        return bytesIndexed.perSecond();
+    }
+
+    @Override
+    public double getTokensIndexedPerSecond() {
+        return tokensIndexed.perSecond();
+    }
+
+    @Override
+    public LatencySnapshot getIndexLatency() {
+        return LatencySnapshot.of(indexLatency);
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getQueryLatencyByResultSize() {
+        Map<String, LatencySnapshot> latencies = new LinkedHashMap<>();
+        for (int i = 0; i < RESULT_SIZES.length; i++) {
+            latencies.put(RESULT_SIZES[i], LatencySnapshot.of(queryLatency[i]));
+        }
+        return latencies;
+    }
+
+    @Override
+    public LatencySnapshot getChangeLag() {
+        return LatencySnapshot.of(changeLag);
+    }
+
+    @Override
+    public long getWatchOverflows() {
+        return watchOverflows.sum();
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        gauges.forEach((name, value) -> values.put(name, value.getAsLong()));
+        return values;
+    }
+}
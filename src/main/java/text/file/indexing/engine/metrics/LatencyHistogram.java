@@ -0,0 +1,116 @@
+package text.file.indexing.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values, such as latencies in nanoseconds, which can be recorded and read concurrently
+ * without locking. Like in HdrHistogram, the values are counted in buckets whose width doubles with every power of
+ * two and which are split into 32 linear sub-buckets, so every value is kept with a relative error below 1/32 in
+ * a fixed 15 KB, whatever its range.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT >>> 1;
+
+    private final AtomicLongArray counts;
+
+    private final LongAdder sum;
+
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(bucketIndex(Long.MAX_VALUE) + 1);
+        sum = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records the value; negative values are recorded as {@code 0}.
+     */
+    public void record(long value) {
+        long recorded = Math.max(value, 0);
+        counts.incrementAndGet(bucketIndex(recorded));
+        sum.add(recorded);
+        long current = max.get();
+        while (recorded > current && !max.compareAndSet(current, recorded)) {
+            current = max.get();
+        }
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Returns the value below or at which the percentage of the recorded values lies, up to the resolution of its
+     * bucket, or {@code 0} if nothing was recorded.
+     *
+     * @param percentile the percentage, in [0, 100]
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in [0, 100]");
+        }
+        long[] snapshot = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Values below {@link #SUB_BUCKET_COUNT} get a bucket each; a larger value is counted by its
+     * {@link #SUB_BUCKET_BITS} highest bits, the top one being always set.
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    private static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKET_COUNT - 1;
+        return (long) (index - shift * HALF_SUB_BUCKET_COUNT) << shift;
+    }
+
+    private static long highestValue(int index) {
+        return index == bucketIndex(Long.MAX_VALUE) ? Long.MAX_VALUE : lowestValue(index + 1) - 1;
+    }
+}
@@ -0,0 +1,87 @@
+package text.file.indexing.engine.metrics;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * The summary of a {@link LatencyHistogram} in microseconds, as published over JMX.
+ */
+public final class LatencySnapshot {
+
+    private final long count;
+
+    private final double meanMicros;
+
+    private final double p50Micros;
+
+    private final double p90Micros;
+
+    private final double p99Micros;
+
+    private final double p999Micros;
+
+    private final double maxMicros;
+
+    public LatencySnapshot(long count, double meanMicros, double p50Micros, double p90Micros, double p99Micros,
+                           double p999Micros, double maxMicros) {
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Summarizes a histogram of nanoseconds.
+     */
+    static LatencySnapshot of(LatencyHistogram nanos) {
+        return new LatencySnapshot(nanos.count(), nanos.mean() / 1000, nanos.valueAtPercentile(50) / 1000.0,
+                nanos.valueAtPercentile(90) / 1000.0, nanos.valueAtPercentile(99) / 1000.0,
+                nanos.valueAtPercentile(99.9) / 1000.0, nanos.max() / 1000.0);
+    }
+
+    /**
+     * Rebuilds a snapshot read over JMX, used by MXBean proxies.
+     */
+    public static LatencySnapshot from(CompositeData data) {
+        return new LatencySnapshot((Long) data.get("count"), (Double) data.get("meanMicros"),
+                (Double) data.get("p50Micros"), (Double) data.get("p90Micros"), (Double) data.get("p99Micros"),
+                (Double) data.get("p999Micros"), (Double) data.get("maxMicros"));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot[count=" + count + ", meanMicros=" + meanMicros + ", p50Micros=" + p50Micros
+                + ", p90Micros=" + p90Micros + ", p99Micros=" + p99Micros + ", p999Micros=" + p999Micros
+                + ", maxMicros=" + maxMicros + "]";
+    }
+}
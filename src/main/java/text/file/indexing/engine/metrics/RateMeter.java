@@ -0,0 +1,76 @@
+package text.file.indexing.engine.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts events and their rate over the last minute, kept in a ring of one-second slots. A slot is reused once its
+ * second is over a minute old; an event counted by another thread while the slot is being reset may be lost, so
+ * the rate is approximate while the total is exact.
+ */
+final class RateMeter {
+
+    private static final int SLOTS = 60;
+
+    private static final long SLOT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongSupplier nanoClock;
+
+    private final LongAdder total;
+
+    private final AtomicLongArray slotCounts;
+
+    // the second counted by every slot
+    private final AtomicLongArray slotSeconds;
+
+    RateMeter() {
+        this(System::nanoTime);
+    }
+
+    RateMeter(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.total = new LongAdder();
+        this.slotCounts = new AtomicLongArray(SLOTS);
+        this.slotSeconds = new AtomicLongArray(SLOTS);
+        long second = currentSecond();
+        for (int i = 0; i < SLOTS; i++) {
+            slotSeconds.set(i, second - SLOTS);
+        }
+    }
+
+    void add(long amount) {
+        total.add(amount);
+        long second = currentSecond();
+        int slot = Math.floorMod(second, SLOTS);
+        long slotSecond = slotSeconds.get(slot);
+        if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second)) {
+            slotCounts.set(slot, 0);
+        }
+        slotCounts.addAndGet(slot, amount);
+    }
+
+    long total() {
+        return total.sum();
+    }
+
+    /**
+     * Returns the average number of events per second during the last 59 full seconds.
+     */
+    double perSecond() {
+        long second = currentSecond();
+        long count = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            long age = second - slotSeconds.get(i);
+            if (age >= 1 && age < SLOTS) {
+                count += slotCounts.get(i);
+            }
+        }
+        return (double) count / (SLOTS - 1);
+    }
+
+    private long currentSecond() {
+        return Math.floorDiv(nanoClock.getAsLong(), SLOT_NANOS);
+    }
+}
@@ -0,0 +1,159 @@
+package text.file.indexing.engine.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Checksum;
+
+/**
+ * Reader of UTF-8 text files which decodes the content chunk by chunk straight from the file channel, so no line
+ * of the file is ever materialized as a whole. Files larger than {@link #MAPPING_THRESHOLD} are memory-mapped
+ * window by window; smaller files are read through a buffer of {@link #CHUNK_SIZE} bytes, because mapping
+ * costs more than it saves for them. Malformed input is reported with an exception, like
+ * {@link java.nio.file.Files#newBufferedReader(Path)} does.
+ * <p>
+ * A {@link Checksum} given to {@link #open(Path, Checksum)} is updated with every byte as it is read, so the content
+ * of a file can be tokenized and fingerprinted in one pass.
+ */
+public class ChunkedFileReader extends Reader {
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    public static final long MAPPING_THRESHOLD = 1024 * 1024;
+
+    private static final long MAPPING_WINDOW = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final boolean mapped;
+
+    private final CharsetDecoder decoder;
+
+    private final Checksum checksum;
+
+    private ByteBuffer bytes;
+
+    private long windowStart;
+
+    // the number of bytes passed to the checksum, the mapped windows overlap by the bytes of a split char
+    private long checksummed;
+
+    private boolean finished;
+
+    private ChunkedFileReader(FileChannel channel, long size, Checksum checksum) {
+        this.channel = channel;
+        this.size = size;
+        this.mapped = size > MAPPING_THRESHOLD;
+        this.decoder = StandardCharsets.UTF_8.newDecoder();
+        this.checksum = checksum;
+        this.bytes = mapped ? ByteBuffer.allocate(0) : ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, size + 16)).flip();
+    }
+
+    public static ChunkedFileReader open(Path path) throws IOException {
+        return open(path, null);
+    }
+
+    /**
+     * @param checksum the checksum to update with the bytes of the file as they are read, or {@code null}
+     */
+    public static ChunkedFileReader open(Path path, Checksum checksum) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ChunkedFileReader(channel, channel.size(), checksum);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Updates the checksum with all bytes of the file without decoding them, the same way a reader opened by
+     * {@link #open(Path, Checksum)} and read to the end does.
+     *
+     * @return the value of the checksum
+     */
+    public static long checksum(Path path, Checksum checksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            while (channel.read(buffer) >= 0) {
+                checksum.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Returns whether the file is read through memory-mapped windows.
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (finished) {
+            return -1;
+        }
+        CharBuffer target = CharBuffer.wrap(chars, offset, length);
+        while (target.position() == offset) {
+            CoderResult result = decoder.decode(bytes, target, false);
+            if (result.isError()) {
+                result.throwException();
+            }
+            // an underflow leaves the bytes of a char split between two chunks for the next chunk
+            if (result.isUnderflow() && !nextChunk()) {
+                result = decoder.decode(bytes, target, true);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                decoder.flush(target);
+                finished = true;
+                break;
+            }
+        }
+        int read = target.position() - offset;
+        return read == 0 && finished ? -1 : read;
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (mapped) {
+            long start = windowStart + bytes.position();
+            if (windowStart + bytes.limit() >= size) {
+                return false;
+            }
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPPING_WINDOW, size - start));
+            windowStart = start;
+            if (checksum != null) {
+                checksum.update(bytes.duplicate().position((int) (checksummed - start)));
+                checksummed = start + bytes.limit();
+            }
+            return true;
+        }
+        bytes.compact();
+        int unread = bytes.position();
+        int read = channel.read(bytes);
+        if (checksum != null && read > 0) {
+            checksum.update(bytes.array(), unread, read);
+        }
+        bytes.flip();
+        return read >= 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
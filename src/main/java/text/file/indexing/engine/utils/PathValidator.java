@@ -1,11 +1,13 @@
 package text.file.indexing.engine.utils;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -26,6 +28,35 @@ public class PathValidator {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Checks every path the same way as {@link #getValidPathSet(Collection)} without walking directories.
+     */
+    public static void validatePaths(Collection<Path> paths) {
+        if (paths == null) {
+            throw new IllegalArgumentException("paths must not be null");
+        }
+        paths.forEach(PathValidator::validatePath);
+    }
+
+    /**
+     * Passes every regular file found in the given paths to the action as soon as it is discovered,
+     * without collecting the whole tree first. A file may be passed more than once if the paths overlap.
+     */
+    public static void forEachValidPath(Collection<Path> paths, Consumer<Path> action) {
+        validatePaths(paths);
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> stream = Files.walk(path)) {
+                    stream.filter(Files::isRegularFile).forEach(action);
+                } catch (IOException | UncheckedIOException e) {
+                    LOGGER.severe(e.getMessage());
+                }
+            } else if (Files.exists(path)) {
+                action.accept(path);
+            }
+        }
+    }
+
     private static Set<Path> getValidPathSet(Path path) {
         validatePath(path);
         if (Files.notExists(path)) {
@@ -1,32 +1,165 @@
 package text.file.indexing.engine.watcher;
 
 import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+import text.file.indexing.engine.metrics.IndexMetrics;
 
 import java.nio.file.*;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 
+import static java.util.logging.Level.SEVERE;
+
 /**
  * The FileSystemWatchServiceEventProcessor class is responsible for processing events triggered by
  * the file system watch service. It listens for file system events such as file modifications, creations,
  * and deletions, and performs corresponding actions on the indexed files and directories.
+ * <p>
+ * The watcher thread only records the events in a {@link WatchEventCoalescer}, so it returns to
+ * {@link WatchService#take()} at once. Once no event arrived for a path during the quiet window, its net change is
+ * applied by a pool of indexing workers, in batches, so a file saved with several modify events is reindexed once.
+ * When the watch service overflows and drops events, the directory is reconciled with the index on a background
+ * thread instead, see {@link SimpleTextFileIndexer#reconcile(Path, int)}.
+ * <p>
+ * The indexing workers are either a pool owned by the processor, whose queue is bounded so a burst of changes makes
+ * the flushing thread apply batches itself instead of queueing them all, or an executor given by the caller, such as
+ * virtual threads, which the caller keeps ownership of. {@link #drain(Duration)} applies the recorded changes without
+ * waiting for their quiet window and {@link #close()} stops the threads owned by the processor.
  */
 public class FileSystemWatchServiceEventProcessor {
 
     private static final Logger LOGGER = Logger.getLogger(FileSystemWatchServiceEventProcessor.class.getName());
 
+    public static final Duration DEFAULT_QUIET_WINDOW = Duration.ofMillis(200);
+
+    private static final int BATCH_SIZE = 64;
+
+    private static final int QUEUED_BATCHES_PER_THREAD = 4;
+
+    /**
+     * The maximal number of files reindexed or removed per second when a directory is reconciled after an overflow.
+     */
+    public static final int RECONCILED_FILES_PER_SECOND = 500;
+
     private final SimpleTextFileIndexer simpleTextFileIndexer;
 
+    private final IndexMetrics metrics;
+
     private final Map<WatchKey, Path> fileNameDirPath;
 
     private final FileSystemWatchServiceWatcher fileSystemWatchServiceWatcher;
 
+    private final WatchEventCoalescer coalescer;
+
+    private final long quietWindowNanos;
+
+    private final ScheduledExecutorService flusher;
+
+    private final Executor indexingWorkers;
+
+    private final boolean ownsIndexingWorkers;
+
+    // the batches handed to the indexing workers and not applied yet, notified once there is none
+    private final AtomicInteger unappliedBatches;
+
+    private final ExecutorService reconciler;
+
+    private final Set<Path> reconciledDirs;
+
+    // kept to unregister exactly the gauges of this processor on close
+    private final LongSupplier pendingChangesGauge;
+
+    private final LongSupplier queuedBatchesGauge;
 
     public FileSystemWatchServiceEventProcessor(SimpleTextFileIndexer simpleTextFileIndexer, Map<WatchKey, Path> fileNameDirPath,
                                                 FileSystemWatchServiceWatcher fileSystemWatchServiceWatcher) {
+        this(simpleTextFileIndexer, fileNameDirPath, fileSystemWatchServiceWatcher, DEFAULT_QUIET_WINDOW,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param quietWindow     how long no event must arrive for a path before its change is applied
+     * @param indexingThreads the number of worker threads applying the changes
+     */
+    public FileSystemWatchServiceEventProcessor(SimpleTextFileIndexer simpleTextFileIndexer, Map<WatchKey, Path> fileNameDirPath,
+                                                FileSystemWatchServiceWatcher fileSystemWatchServiceWatcher,
+                                                Duration quietWindow, int indexingThreads) {
+        this(simpleTextFileIndexer, fileNameDirPath, fileSystemWatchServiceWatcher, quietWindow,
+                newIndexingPool(indexingThreads), true);
+    }
+
+    /**
+     * @param quietWindow     how long no event must arrive for a path before its change is applied
+     * @param indexingWorkers the executor applying the changes, which is not shut down by {@link #close()}
+     */
+    public FileSystemWatchServiceEventProcessor(SimpleTextFileIndexer simpleTextFileIndexer, Map<WatchKey, Path> fileNameDirPath,
+                                                FileSystemWatchServiceWatcher fileSystemWatchServiceWatcher,
+                                                Duration quietWindow, Executor indexingWorkers) {
+        this(simpleTextFileIndexer, fileNameDirPath, fileSystemWatchServiceWatcher, quietWindow, indexingWorkers, false);
+    }
+
+    private FileSystemWatchServiceEventProcessor(SimpleTextFileIndexer simpleTextFileIndexer,
+                                                 Map<WatchKey, Path> fileNameDirPath,
+                                                 FileSystemWatchServiceWatcher fileSystemWatchServiceWatcher,
+                                                 Duration quietWindow, Executor indexingWorkers,
+                                                 boolean ownsIndexingWorkers) {
+        if (quietWindow.isNegative()) {
+            throw new IllegalArgumentException("quietWindow must not be negative");
+        }
+        if (indexingWorkers == null) {
+            throw new IllegalArgumentException("indexingWorkers must not be null");
+        }
         this.simpleTextFileIndexer = simpleTextFileIndexer;
+        this.metrics = simpleTextFileIndexer.metrics();
         this.fileNameDirPath = fileNameDirPath;
         this.fileSystemWatchServiceWatcher = fileSystemWatchServiceWatcher;
+        this.quietWindowNanos = quietWindow.toNanos();
+        this.coalescer = new WatchEventCoalescer(quietWindowNanos);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "watch-event-flushing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.indexingWorkers = indexingWorkers;
+        this.ownsIndexingWorkers = ownsIndexingWorkers;
+        this.unappliedBatches = new AtomicInteger();
+        this.reconciler = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "watch-overflow-reconciling");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reconciledDirs = ConcurrentHashMap.newKeySet();
+        this.pendingChangesGauge = coalescer::pendingCount;
+        this.queuedBatchesGauge = unappliedBatches::get;
+        metrics.gauge(IndexMetrics.WATCHER_PENDING_CHANGES, pendingChangesGauge);
+        metrics.gauge(IndexMetrics.WATCHER_QUEUED_BATCHES, queuedBatchesGauge);
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), quietWindowNanos / 2);
+        flusher.scheduleWithFixedDelay(() -> flush(System.nanoTime()), period, period, TimeUnit.NANOSECONDS);
+    }
+
+    private static ExecutorService newIndexingPool(int indexingThreads) {
+        if (indexingThreads < 1) {
+            throw new IllegalArgumentException("indexingThreads must be positive");
+        }
+        return new ThreadPoolExecutor(indexingThreads, indexingThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(indexingThreads * QUEUED_BATCHES_PER_THREAD), runnable -> {
+            Thread thread = new Thread(runnable, "watch-event-indexing");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
     void processEvent(WatchKey key) {
@@ -43,38 +176,168 @@ public class FileSystemWatchServiceEventProcessor {
             } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
                 executeFileDeleteEvent(key, fileName);
             } else if (kind == StandardWatchEventKinds.OVERFLOW) {
-                LOGGER.warning("Too many changes at once, some changes may be lost.");
+                executeOverflowEvent(key);
             }
         }
         key.reset();
     }
 
-    private void executeFileDeleteEvent(WatchKey key, Path fileName) {
-        if (fileNameDirPath.containsKey(key)) {
-            Path fullPath = fileNameDirPath.get(key).resolve(fileName);
-            removeDirFromWatching(fullPath);
-            simpleTextFileIndexer.removeFromIndex(fullPath);
-            LOGGER.warning("File deleting " + fullPath);
+    /**
+     * Hands the changes whose quiet window elapsed at the given time to the indexing workers, in batches.
+     */
+    private void flush(long nowNanos) {
+        List<WatchEventCoalescer.PathChange> changes = coalescer.drainReady(nowNanos);
+        for (int from = 0; from < changes.size(); from += BATCH_SIZE) {
+            List<WatchEventCoalescer.PathChange> batch = changes.subList(from, Math.min(from + BATCH_SIZE, changes.size()));
+            unappliedBatches.incrementAndGet();
+            try {
+                indexingWorkers.execute(() -> {
+                    try {
+                        batch.forEach(this::apply);
+                    } finally {
+                        batchApplied();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                batchApplied();
+                batch.forEach(change -> coalescer.completed(change.path()));
+                LOGGER.log(SEVERE, "The indexing workers rejected " + batch.size() + " changes", e);
+            }
+        }
+    }
+
+    private void batchApplied() {
+        if (unappliedBatches.decrementAndGet() == 0) {
+            synchronized (unappliedBatches) {
+                unappliedBatches.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Applies all recorded changes without waiting for their quiet window, and waits until they are applied, at
+     * most for the timeout. Called once the watcher records no more events.
+     *
+     * @return whether all changes were applied in time
+     */
+    boolean drain(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            do {
+                // every recorded change is ready by the end of its quiet window
+                flush(System.nanoTime() + quietWindowNanos);
+                synchronized (unappliedBatches) {
+                    while (unappliedBatches.get() > 0) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            LOGGER.warning("Timed out while applying the watched changes");
+                            return false;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(unappliedBatches, remaining);
+                    }
+                }
+                // a change recorded for a path while its previous change was applied is ready only now
+            } while (coalescer.pendingCount() > 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops the flushing thread, interrupts a running reconciliation and shuts down the indexing workers owned by
+     * the processor. Changes not {@link #drain(Duration) drained} before are dropped.
+     */
+    void close() {
+        metrics.removeGauge(IndexMetrics.WATCHER_PENDING_CHANGES, pendingChangesGauge);
+        metrics.removeGauge(IndexMetrics.WATCHER_QUEUED_BATCHES, queuedBatchesGauge);
+        flusher.shutdownNow();
+        reconciler.shutdownNow();
+        if (ownsIndexingWorkers) {
+            ((ExecutorService) indexingWorkers).shutdown();
+        }
+    }
+
+    private void apply(WatchEventCoalescer.PathChange change) {
+        Path fullPath = change.path();
+        try {
+            if (change.kind() == WatchEventCoalescer.ChangeKind.DELETED) {
+                simpleTextFileIndexer.removeFromIndex(fullPath);
+                LOGGER.warning("File deleting " + fullPath);
+            } else if (Files.isDirectory(fullPath)) {
+                // a modified directory only had entries changed, which have events of their own
+                if (change.kind() == WatchEventCoalescer.ChangeKind.CREATED) {
+                    indexNewTree(fullPath);
+                }
+            } else if (Files.exists(fullPath)) {
+                simpleTextFileIndexer.reIndexFile(fullPath);
+            }
+            if (metrics.isEnabled()) {
+                metrics.changeApplied(System.nanoTime() - change.firstEventNanos());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(SEVERE, "A problem has occurred while applying a change of " + fullPath, e);
+        } finally {
+            coalescer.completed(fullPath);
         }
     }
 
-    private void removeDirFromWatching(Path fullPath) {
-        fileNameDirPath.forEach((innerKey, value) -> {
-            if (value.equals(fullPath)) {
-                innerKey.cancel();
-                fileNameDirPath.remove(innerKey);
-                LOGGER.warning("Directory remove from watching " + fullPath);
+    /**
+     * Registers a new directory tree and indexes its files in bulk. The files are listed once the tree is registered,
+     * so the files created before are indexed here and those created after have events of their own.
+     */
+    private void indexNewTree(Path dir) {
+        fileSystemWatchServiceWatcher.registerTree(dir);
+        simpleTextFileIndexer.indexFiles(List.of(dir));
+        LOGGER.info("Indexed new directory " + dir);
+    }
+
+    /**
+     * Returns the number of paths whose events wait for their quiet window to elapse.
+     */
+    int pendingChangesCount() {
+        return coalescer.pendingCount();
+    }
+
+    /**
+     * Schedules the reconciliation of the directory whose events were lost, unless it is already scheduled.
+     */
+    private void executeOverflowEvent(WatchKey key) {
+        metrics.watchOverflowed();
+        Path dir = fileNameDirPath.get(key);
+        if (dir == null || !reconciledDirs.add(dir)) {
+            return;
+        }
+        LOGGER.warning("Too many changes at once, reconciling " + dir);
+        reconciler.execute(() -> {
+            // events lost from now on need another reconciliation
+            reconciledDirs.remove(dir);
+            try {
+                // directories created meanwhile went unnoticed, watch them before their files are indexed
+                fileSystemWatchServiceWatcher.registerTree(dir);
+                int changes = simpleTextFileIndexer.reconcile(dir, RECONCILED_FILES_PER_SECOND);
+                LOGGER.info("Reconciled " + dir + ", " + changes + " files changed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.log(SEVERE, "A problem has occurred while reconciling " + dir, e);
             }
         });
     }
 
+    private void executeFileDeleteEvent(WatchKey key, Path fileName) {
+        if (fileNameDirPath.containsKey(key)) {
+            Path fullPath = fileNameDirPath.get(key).resolve(fileName);
+            fileSystemWatchServiceWatcher.unregisterTree(fullPath);
+            coalescer.add(fullPath, WatchEventCoalescer.ChangeKind.DELETED, System.nanoTime());
+        }
+    }
+
     private void executeFileCreateEvent(WatchKey key, Path fileName) {
         if (fileNameDirPath.containsKey(key)) {
             Path fullPath = fileNameDirPath.get(key).resolve(fileName);
-            if (Files.isDirectory(fullPath)) {
-                fileSystemWatchServiceWatcher.registerPath(fullPath);
-            }
-            simpleTextFileIndexer.indexFile(fullPath);
+            coalescer.add(fullPath, WatchEventCoalescer.ChangeKind.CREATED, System.nanoTime());
             LOGGER.info("Create new dir/file " + fileName);
         }
     }
@@ -82,9 +345,7 @@ public class FileSystemWatchServiceEventProcessor {
     private void executeFileModifyEvent(WatchKey key, Path fileName) {
         if (fileNameDirPath.containsKey(key)) {
             Path fullPath = fileNameDirPath.get(key).resolve(fileName);
-            if (Files.exists(fullPath)) {
-                simpleTextFileIndexer.reIndexFile(fullPath);
-            }
+            coalescer.add(fullPath, WatchEventCoalescer.ChangeKind.UPDATED, System.nanoTime());
         }
     }
 }
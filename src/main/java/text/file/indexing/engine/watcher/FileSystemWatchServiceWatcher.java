@@ -4,93 +4,283 @@ import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
 import text.file.indexing.engine.utils.PathValidator;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Implements the {@link FileSystemWatcher} interface to monitor changes in the file system using WatchService.
+ * Every directory of a watched tree is registered, including empty ones. The keys are also mapped from their
+ * directories, kept sorted, so a deleted directory and everything under it is unregistered without scanning all
+ * watched directories.
+ * <p>
+ * Every {@link #startWatching(Collection)} runs the watch loop on a thread of its own until
+ * {@link #stopWatching()}, which closes the watch service, so the thread leaves {@link WatchService#take()} and the
+ * keys are released, and then applies the changes recorded so far. A stopped watcher may be started again with a
+ * new watch service; a closed one may not.
  */
 public class FileSystemWatchServiceWatcher implements FileSystemWatcher {
 
     private static final Logger LOGGER = Logger.getLogger(FileSystemWatchServiceWatcher.class.getName());
 
+    /**
+     * How long {@link #stopWatching()} waits for the recorded changes to be applied.
+     */
+    public static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
     private final Map<WatchKey, Path> fileNameDirPath;
 
-    private static final Executor EXECUTOR = Executors.newCachedThreadPool();
+    private final ConcurrentSkipListMap<Path, WatchKey> dirKeys;
 
-    private final WatchService watchService;
+    private volatile WatchService watchService;
 
     private final FileSystemWatchServiceEventProcessor fileSystemWatchServiceEventProcessor;
 
-    private volatile boolean runningFlag;
+    // the thread running the watch loop, guarded by this
+    private Thread watchThread;
+
+    // guarded by this
+    private boolean closed;
 
     public FileSystemWatchServiceWatcher(SimpleTextFileIndexer simpleTextFileIndexer) {
+        this(simpleTextFileIndexer, FileSystemWatchServiceEventProcessor.DEFAULT_QUIET_WINDOW,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param quietWindow     how long no event must arrive for a file before it is reindexed
+     * @param indexingThreads the number of worker threads applying the changes
+     */
+    public FileSystemWatchServiceWatcher(SimpleTextFileIndexer simpleTextFileIndexer, Duration quietWindow,
+                                         int indexingThreads) {
+        fileNameDirPath = new ConcurrentHashMap<>();
+        dirKeys = new ConcurrentSkipListMap<>();
+        fileSystemWatchServiceEventProcessor =
+                new FileSystemWatchServiceEventProcessor(simpleTextFileIndexer, fileNameDirPath, this, quietWindow,
+                        indexingThreads);
+        watchService = newWatchService();
+    }
+
+    /**
+     * @param quietWindow     how long no event must arrive for a file before it is reindexed
+     * @param indexingWorkers the executor applying the changes, for example one starting a virtual thread per task;
+     *                        it stays owned by the caller and is not shut down by {@link #close()}
+     */
+    public FileSystemWatchServiceWatcher(SimpleTextFileIndexer simpleTextFileIndexer, Duration quietWindow,
+                                         Executor indexingWorkers) {
+        fileNameDirPath = new ConcurrentHashMap<>();
+        dirKeys = new ConcurrentSkipListMap<>();
+        fileSystemWatchServiceEventProcessor =
+                new FileSystemWatchServiceEventProcessor(simpleTextFileIndexer, fileNameDirPath, this, quietWindow,
+                        indexingWorkers);
+        watchService = newWatchService();
+    }
+
+    private static WatchService newWatchService() {
         try {
-            watchService = FileSystems.getDefault().newWatchService();
+            return FileSystems.getDefault().newWatchService();
         } catch (IOException e) {
             throw new UnsupportedOperationException(e);
         }
-        fileNameDirPath = new ConcurrentHashMap<>();
-        fileSystemWatchServiceEventProcessor =
-                new FileSystemWatchServiceEventProcessor(simpleTextFileIndexer, fileNameDirPath, this);
     }
 
-    public void startWatching(Collection<Path> paths) {
-        runningFlag = true;
-        Set<Path> pathList = PathValidator.getValidPathSet(paths);
-        EXECUTOR.execute(() -> initializeWatch(pathList));
+    /**
+     * @throws IllegalStateException if the watcher is already watching or is closed
+     */
+    public synchronized void startWatching(Collection<Path> paths) {
+        PathValidator.validatePaths(paths);
+        if (closed) {
+            throw new IllegalStateException("The watcher is closed");
+        }
+        if (watchThread != null) {
+            throw new IllegalStateException("The watcher is already watching");
+        }
+        if (watchService == null) {
+            watchService = newWatchService();
+        }
+        WatchService service = watchService;
+        List<Path> roots = List.copyOf(paths);
+        watchThread = new Thread(() -> initializeWatch(service, roots), "file-system-watching");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Stops watching and waits, at most for {@link #DRAIN_TIMEOUT}, until the changes recorded so far are applied.
+     */
+    public synchronized void stopWatching() {
+        closeWatchService();
+        Thread thread = watchThread;
+        if (thread == null) {
+            clearKeys();
+            return;
+        }
+        watchThread = null;
+        try {
+            thread.join(DRAIN_TIMEOUT.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            // the watch thread registers directories until it stops
+            clearKeys();
+        }
+        fileSystemWatchServiceEventProcessor.drain(DRAIN_TIMEOUT);
+    }
+
+    /**
+     * Stops watching, applying the recorded changes, and stops the threads of the watcher. A closed watcher can't be
+     * started again.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        stopWatching();
+        closed = true;
+        fileSystemWatchServiceEventProcessor.close();
+    }
+
+    private void closeWatchService() {
+        WatchService service = watchService;
+        if (service == null) {
+            return;
+        }
+        watchService = null;
+        try {
+            // cancels all keys and wakes up the watch loop
+            service.close();
+        } catch (IOException e) {
+            LOGGER.warning("can't close watch service");
+        }
+    }
+
+    private void clearKeys() {
+        fileNameDirPath.clear();
+        dirKeys.clear();
     }
 
-    public void stopWatching() {
-        runningFlag = false;
+    private void initializeWatch(WatchService service, List<Path> roots) {
+        registerPaths(roots);
+        startWatching(service);
     }
 
-    private void initializeWatch(Set<Path> pathList) {
-        registerPaths(pathList);
-        startWatching(watchService);
+    /**
+     * Registers the whole tree of every directory and the parent directory of every file.
+     */
+    private void registerPaths(List<Path> roots) {
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                registerTree(root);
+            } else if (root.getParent() != null && Files.exists(root)) {
+                registerPath(root.getParent());
+            }
+        }
     }
 
-    private void registerPaths(Set<Path> pathList) {
-        pathList.stream()
-                .map(Path::getParent)
-                .distinct()
-                .forEach(this::registerPath);
+    /**
+     * Registers every directory of the tree not registered yet. The directories are listed by one walk and
+     * registered in parallel; the tree is walked again until no new directory is found, so directories created
+     * under a directory before its registration finished are registered as well.
+     */
+    void registerTree(Path root) {
+        Set<Path> attempted = new HashSet<>();
+        while (true) {
+            List<Path> dirs;
+            try (Stream<Path> stream = Files.walk(root)) {
+                dirs = stream.filter(Files::isDirectory)
+                        .filter(dir -> !dirKeys.containsKey(dir) && attempted.add(dir))
+                        .toList();
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.warning("can't walk directory " + root);
+                return;
+            }
+            if (dirs.isEmpty()) {
+                return;
+            }
+            dirs.parallelStream().forEach(this::registerPath);
+        }
     }
 
     void registerPath(Path path) {
+        WatchService service = watchService;
+        if (service == null) {
+            return;
+        }
         try {
-            WatchKey key = path.register(watchService,
+            WatchKey key = path.register(service,
                     StandardWatchEventKinds.ENTRY_MODIFY,
                     StandardWatchEventKinds.ENTRY_CREATE,
                     StandardWatchEventKinds.ENTRY_DELETE,
                     StandardWatchEventKinds.OVERFLOW);
             fileNameDirPath.put(key, path);
+            dirKeys.put(path, key);
+            if (watchService != service) {
+                // the service was closed meanwhile and its keys may already be cleared, so drop the key here
+                key.cancel();
+                dirKeys.remove(path, key);
+                fileNameDirPath.remove(key);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // the watcher was stopped meanwhile
         } catch (IOException e) {
             LOGGER.warning("can't register file");
         }
     }
 
-    private void startWatching(WatchService watchService) {
-        while (runningFlag) {
-            fileSystemWatchServiceEventProcessor.processEvent(getKey(watchService));
+    /**
+     * Cancels the keys of the directory and of all directories under it.
+     */
+    void unregisterTree(Path path) {
+        String prefix = path.toString();
+        for (Map.Entry<Path, WatchKey> entry : dirKeys.tailMap(path).entrySet()) {
+            Path dir = entry.getKey();
+            if (!dir.toString().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            if (dir.startsWith(path) && dirKeys.remove(dir, entry.getValue())) {
+                entry.getValue().cancel();
+                fileNameDirPath.remove(entry.getValue());
+                LOGGER.warning("Directory remove from watching " + dir);
+            }
         }
-        Thread.currentThread().interrupt();
-        LOGGER.warning("Watch service interrupted");
     }
 
-    private WatchKey getKey(WatchService watchService) {
+    /**
+     * Returns the number of watched directories.
+     */
+    int watchedDirsCount() {
+        return fileNameDirPath.size();
+    }
+
+    /**
+     * Returns the number of paths whose events wait to be applied.
+     */
+    int pendingChangesCount() {
+        return fileSystemWatchServiceEventProcessor.pendingChangesCount();
+    }
+
+    private void startWatching(WatchService watchService) {
         try {
-            return watchService.take();
+            while (true) {
+                fileSystemWatchServiceEventProcessor.processEvent(watchService.take());
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.info("Watch service closed");
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             LOGGER.warning("Watch service interrupted");
-            return null;
         }
     }
 }
\ No newline at end of file
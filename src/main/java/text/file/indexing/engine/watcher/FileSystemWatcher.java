@@ -6,9 +6,18 @@ import java.util.Collection;
 /**
  * Interface for a file system watcher.
  */
-public interface FileSystemWatcher {
+public interface FileSystemWatcher extends AutoCloseable {
 
     void startWatching(Collection<Path> paths);
 
     void stopWatching();
+
+    /**
+     * Stops watching and releases the resources of the watcher, which can't be started again. The default
+     * implementation only stops watching.
+     */
+    @Override
+    default void close() {
+        stopWatching();
+    }
 }
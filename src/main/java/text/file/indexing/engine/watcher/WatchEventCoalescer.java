@@ -0,0 +1,89 @@
+package text.file.indexing.engine.watcher;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Buffers the watch events of every path until no event arrived for it during a quiet window, and collapses them
+ * into one net change: a path whose last event is a deletion is removed, a path created since its last deletion is
+ * created, any other is updated. A path whose change
+ * is being applied is not handed out again until {@link #completed(Path)}, so changes of one path are applied in
+ * order. The methods are called from the watcher thread and the indexing workers.
+ */
+final class WatchEventCoalescer {
+
+    enum ChangeKind {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    /**
+     * @param firstEventNanos the time of the first event collapsed into the change
+     */
+    record PathChange(Path path, ChangeKind kind, long firstEventNanos) {
+    }
+
+    private final long quietWindowNanos;
+
+    private final Map<Path, Pending> pending;
+
+    private final Set<Path> inFlight;
+
+    /**
+     * @param quietWindowNanos how long no event must arrive for a path before its change is handed out
+     */
+    WatchEventCoalescer(long quietWindowNanos) {
+        this.quietWindowNanos = quietWindowNanos;
+        this.pending = new HashMap<>();
+        this.inFlight = new HashSet<>();
+    }
+
+    synchronized void add(Path path, ChangeKind kind, long nowNanos) {
+        pending.merge(path, new Pending(kind, nowNanos, nowNanos + quietWindowNanos), (current, added) ->
+                new Pending(current.kind == ChangeKind.CREATED && added.kind == ChangeKind.UPDATED
+                        ? ChangeKind.CREATED : added.kind, current.firstEventNanos, added.deadlineNanos));
+    }
+
+    /**
+     * Returns the changes whose quiet window elapsed, oldest deadline first, and marks their paths as in flight.
+     */
+    synchronized List<PathChange> drainReady(long nowNanos) {
+        List<Map.Entry<Path, Pending>> ready = new ArrayList<>();
+        for (Iterator<Map.Entry<Path, Pending>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Pending> entry = it.next();
+            if (entry.getValue().deadlineNanos - nowNanos <= 0 && !inFlight.contains(entry.getKey())) {
+                ready.add(entry);
+                it.remove();
+            }
+        }
+        // deadlines are compared by difference, as nano times may overflow
+        ready.sort((first, second) -> Long.signum(first.getValue().deadlineNanos - second.getValue().deadlineNanos));
+        List<PathChange> changes = new ArrayList<>(ready.size());
+        for (Map.Entry<Path, Pending> entry : ready) {
+            inFlight.add(entry.getKey());
+            changes.add(new PathChange(entry.getKey(), entry.getValue().kind, entry.getValue().firstEventNanos));
+        }
+        return changes;
+    }
+
+    /**
+     * Called once the change of the path handed out by {@link #drainReady(long)} is applied.
+     */
+    synchronized void completed(Path path) {
+        inFlight.remove(path);
+    }
+
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private record Pending(ChangeKind kind, long firstEventNanos, long deadlineNanos) {
+    }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.EnumSet;
+import java.util.Random;
 
 public class Fixtures {
     public static Path createTempFileWithContent(String fileName, String content) throws IOException {
@@ -23,6 +24,23 @@ public class Fixtures {
         return tempDir;
     }
 
+    /**
+     * Creates a directory of files filled with words picked from a generated vocabulary.
+     * The same arguments always produce the same corpus.
+     */
+    public static Path createTempDirWithCorpus(int filesCount, int wordsPerFile, int vocabularySize) throws IOException {
+        Path tempDir = Files.createTempDirectory("corpus" + filesCount);
+        Random random = new Random(filesCount * 31L + vocabularySize);
+        for (int i = 1; i <= filesCount; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int j = 0; j < wordsPerFile; j++) {
+                content.append("word").append(random.nextInt(vocabularySize)).append(j % 16 == 15 ? '\n' : ' ');
+            }
+            Files.writeString(tempDir.resolve("file" + i + ".txt"), content);
+        }
+        return tempDir;
+    }
+
     public static void deleteDir(Path path) throws IOException {
 
         if (Files.exists(path)) {
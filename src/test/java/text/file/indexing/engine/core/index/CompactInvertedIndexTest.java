@@ -0,0 +1,199 @@
+package text.file.indexing.engine.core.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.search.Position;
+import text.file.indexing.engine.core.search.ScoredPath;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static text.file.indexing.engine.Fixtures.*;
+
+public class CompactInvertedIndexTest {
+
+    private SimpleTextFileIndexer simpleTextFileIndexer;
+
+    @BeforeEach
+    void setUp() {
+        simpleTextFileIndexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex());
+    }
+
+    @Test
+    void testIndexReindexAndRemove() throws IOException {
+        Path tempFile1 = createTempFileWithContent("file1.txt", "test 1");
+        Path tempFile2 = createTempFileWithContent("file2.txt", "test 2");
+        simpleTextFileIndexer.indexFiles(List.of(tempFile1, tempFile2));
+
+        assertEquals(Set.of(tempFile1, tempFile2), simpleTextFileIndexer.searchFiles("TEST"));
+
+        Files.writeString(tempFile1, "changed 1");
+        simpleTextFileIndexer.reIndexFile(tempFile1);
+
+        assertEquals(Set.of(tempFile2), simpleTextFileIndexer.searchFiles("test"));
+        assertEquals(Set.of(tempFile1), simpleTextFileIndexer.searchFiles("changed"));
+
+        simpleTextFileIndexer.removeFromIndex(tempFile2);
+        Path tempFile3 = createTempFileWithContent("file3.txt", "test 3");
+        simpleTextFileIndexer.indexFile(tempFile3);
+
+        assertEquals(Set.of(tempFile3), simpleTextFileIndexer.searchFiles("test"));
+        assertTrue(simpleTextFileIndexer.searchFiles("2").isEmpty());
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+        Files.delete(tempFile3);
+    }
+
+    @Test
+    void testSearchBooleanQueryMatchesSetOperations() throws IOException {
+        Path corpus = createTempDirWithCorpus(500, 50, 200);
+        SimpleTextFileIndexer invertedIndexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new InvertedIndex());
+        simpleTextFileIndexer.indexFiles(List.of(corpus));
+        invertedIndexer.indexFiles(List.of(corpus));
+
+        for (String query : List.of("word1 AND word2", "word1 word2 NOT word3", "word1 OR word2 OR word3",
+                "(word1 OR word2) AND (word3 OR word4) AND NOT (word5 OR word6)", "word7 AND missing")) {
+            Set<Path> expected = invertedIndexer.search(query).collect(Collectors.toSet());
+            List<Path> actual = simpleTextFileIndexer.search(query).toList();
+            assertEquals(expected, Set.copyOf(actual), query);
+            assertEquals(expected.size(), actual.size(), query);
+        }
+        deleteDir(corpus);
+    }
+
+    @Test
+    void testSearchPhraseQuery() throws IOException {
+        SimpleTextFileIndexer positionalIndexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(),
+                new CompactInvertedIndex(true));
+        Path tempFile1 = createTempFileWithContent("file1.txt", "connection reset by peer");
+        Path tempFile2 = createTempFileWithContent("file2.txt", "reset connection\nconnection timed out");
+        positionalIndexer.indexFiles(List.of(tempFile1, tempFile2));
+
+        assertEquals(List.of(tempFile1), positionalIndexer.search("\"connection reset\"").toList());
+        assertEquals(List.of(tempFile2), positionalIndexer.search("connection NOT \"connection reset\"").toList());
+        assertEquals(List.of(tempFile1), positionalIndexer.search("\"connection peer\"~2").toList());
+        assertThrows(UnsupportedOperationException.class, () -> simpleTextFileIndexer.search("\"connection reset\""));
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+    }
+
+    @Test
+    void testSearchCandidatesWithTrigrams() throws IOException {
+        SimpleTextFileIndexer trigramIndexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(),
+                new CompactInvertedIndex(false, true));
+        Path tempFile1 = createTempFileWithContent("file1.txt", "unbelievable story");
+        Path tempFile2 = createTempFileWithContent("file2.txt", "Believe it or not");
+        trigramIndexer.indexFiles(List.of(tempFile1, tempFile2));
+
+        assertEquals(Set.of(tempFile1, tempFile2), trigramIndexer.searchCandidates("BELIEV").collect(Collectors.toSet()));
+        assertEquals(Set.of(tempFile1), trigramIndexer.searchCandidates("able sto").collect(Collectors.toSet()));
+        assertEquals(Set.of(tempFile1, tempFile2), trigramIndexer.searchCandidates("e").collect(Collectors.toSet()));
+        assertTrue(trigramIndexer.searchCandidates("missing").findAny().isEmpty());
+
+        Files.writeString(tempFile1, "plain story");
+        trigramIndexer.reIndexFile(tempFile1);
+        trigramIndexer.removeFromIndex(tempFile2);
+
+        assertTrue(trigramIndexer.searchCandidates("believ").findAny().isEmpty());
+        assertEquals(Set.of(tempFile1), trigramIndexer.searchCandidates("in sto").collect(Collectors.toSet()));
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+    }
+
+    @Test
+    void testReindexAppliesTermDiff() throws IOException {
+        SimpleTextFileIndexer indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(),
+                new CompactInvertedIndex(true, true));
+        Path tempFile = createTempFileWithContent("file.txt", "alpha beta alpha");
+        indexer.indexFile(tempFile);
+        Stream<Path> removedBefore = indexer.search("beta");
+        Stream<Path> addedBefore = indexer.search("gamma");
+
+        Files.writeString(tempFile, "gamma alpha");
+        indexer.reIndexFile(tempFile);
+
+        // searches started before the reindex still see the previous content
+        assertEquals(List.of(tempFile), removedBefore.toList());
+        assertEquals(List.of(), addedBefore.toList());
+        assertEquals(List.of(), indexer.search("beta").toList());
+        assertEquals(List.of(tempFile), indexer.search("gamma AND alpha").toList());
+        assertEquals(Map.of(tempFile, List.of(new Position(0, 0))), indexer.searchPhrase("gamma alpha", 0));
+        assertEquals(Set.of(tempFile), indexer.searchCandidates("mma alp").collect(Collectors.toSet()));
+        assertTrue(indexer.searchCandidates("beta").findAny().isEmpty());
+        assertEquals(0, indexer.skippedReindexCount());
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testSearchTopKRanksByBm25() throws IOException {
+        Path tempFile1 = createTempFileWithContent("file1.txt", "error error error in module");
+        Path tempFile2 = createTempFileWithContent("file2.txt", "error in a long module description with many words");
+        Path tempFile3 = createTempFileWithContent("file3.txt", "module warning");
+        Path tempFile4 = createTempFileWithContent("file4.txt", "nothing relevant");
+        simpleTextFileIndexer.indexFiles(List.of(tempFile1, tempFile2, tempFile3, tempFile4));
+
+        assertEquals(List.of(tempFile1, tempFile2), paths(simpleTextFileIndexer.searchTopK("ERROR", 5)));
+        assertEquals(List.of(tempFile3), paths(simpleTextFileIndexer.searchTopK("error warning", 1)));
+        assertEquals(List.of(tempFile3, tempFile1, tempFile2), paths(simpleTextFileIndexer.searchTopK("warning error", 3)));
+
+        Files.writeString(tempFile2, "error error error error error error");
+        simpleTextFileIndexer.reIndexFile(tempFile2);
+        simpleTextFileIndexer.removeFromIndex(tempFile3);
+
+        assertEquals(List.of(tempFile2, tempFile1), paths(simpleTextFileIndexer.searchTopK("error warning", 5)));
+        assertThrows(UnsupportedOperationException.class, () ->
+                new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new InvertedIndex()).searchTopK("error", 1));
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+        Files.delete(tempFile3);
+        Files.delete(tempFile4);
+    }
+
+    @Test
+    void testSearchTopKMatchesExhaustiveScoring() throws IOException {
+        Path corpus = createTempDirWithCorpus(500, 100, 200);
+        simpleTextFileIndexer.indexFiles(List.of(corpus));
+        String query = "word1 word17 word150 word42 missing";
+
+        List<ScoredPath> all = simpleTextFileIndexer.searchTopK(query, 500);
+        List<ScoredPath> top = simpleTextFileIndexer.searchTopK(query, 10);
+
+        assertEquals(all.subList(0, 10).stream().map(ScoredPath::score).toList(),
+                top.stream().map(ScoredPath::score).toList());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).score() >= all.get(i).score());
+        }
+        deleteDir(corpus);
+    }
+
+    private static List<Path> paths(List<ScoredPath> scoredPaths) {
+        return scoredPaths.stream().map(ScoredPath::path).toList();
+    }
+
+    @Test
+    void testPostingsTakeLessMemoryThanInvertedIndex() throws IOException {
+        Path corpus = createTempDirWithCorpus(200, 200, 1000);
+
+        InvertedIndex invertedIndex = buildIndex(new InvertedIndex(), corpus);
+        CompactInvertedIndex compactIndex = buildIndex(new CompactInvertedIndex(), corpus);
+
+        assertEquals(invertedIndex.postingCount(), compactIndex.postingCount());
+        assertTrue(compactIndex.postingsHeapBytes() * 2 < invertedIndex.postingsHeapBytes(),
+                "CompactInvertedIndex: " + compactIndex.postingsHeapBytes() + " bytes, InvertedIndex: "
+                        + invertedIndex.postingsHeapBytes() + " bytes");
+        deleteDir(corpus);
+    }
+
+    private static <T extends Index> T buildIndex(T index, Path corpus) {
+        new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), index).indexFiles(List.of(corpus));
+        return index;
+    }
+}
@@ -0,0 +1,140 @@
+package text.file.indexing.engine.core.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static text.file.indexing.engine.Fixtures.*;
+
+public class PersistentIndexTest {
+
+    private Path indexDir;
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        indexDir = Files.createTempDirectory("index");
+        tempDir = createTempDirWithFiles(20);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        deleteDir(indexDir);
+        deleteDir(tempDir);
+    }
+
+    @Test
+    void testSearchAfterReopen() throws IOException {
+        PersistentIndex index = PersistentIndex.open(indexDir);
+        indexer(index).indexFiles(List.of(tempDir));
+        index.flush();
+
+        SimpleTextFileIndexer reopened = indexer(PersistentIndex.open(indexDir));
+
+        assertEquals(0, reopened.pendingFilesCount());
+        assertEquals(20, reopened.searchFiles("test").size());
+        assertEquals(Set.of(tempDir.resolve("file7.txt")), reopened.searchFiles("7"));
+    }
+
+    @Test
+    void testChangedFilesAreRecheckedOnReopen() throws IOException {
+        PersistentIndex index = PersistentIndex.open(indexDir);
+        indexer(index).indexFiles(List.of(tempDir));
+        index.flush();
+        Path changedFile = tempDir.resolve("file1.txt");
+        Files.writeString(changedFile, "changed 1");
+        Files.setLastModifiedTime(changedFile, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        Files.delete(tempDir.resolve("file2.txt"));
+
+        SimpleTextFileIndexer reopened = indexer(PersistentIndex.open(indexDir));
+
+        assertEquals(1, reopened.pendingFilesCount());
+        assertTrue(reopened.searchFiles("2").isEmpty());
+
+        reopened.indexFiles(List.of(tempDir));
+
+        assertEquals(0, reopened.pendingFilesCount());
+        assertEquals(Set.of(changedFile), reopened.searchFiles("changed"));
+        assertEquals(18, reopened.searchFiles("test").size());
+    }
+
+    @Test
+    void testFlushMergesChangesIntoNewSegment() throws IOException {
+        PersistentIndex index = PersistentIndex.open(indexDir);
+        SimpleTextFileIndexer indexer = indexer(index);
+        indexer.indexFiles(List.of(tempDir));
+        index.flush();
+        Path newFile = Files.writeString(tempDir.resolve("new.txt"), "test new");
+        indexer.indexFile(newFile);
+        indexer.removeFromIndex(tempDir.resolve("file3.txt"));
+        Files.writeString(tempDir.resolve("file4.txt"), "changed 4");
+        indexer.reIndexFile(tempDir.resolve("file4.txt"));
+        index.flush();
+
+        SimpleTextFileIndexer reopened = indexer(PersistentIndex.open(indexDir));
+
+        assertEquals(19, reopened.searchFiles("test").size());
+        assertEquals(Set.of(newFile), reopened.searchFiles("new"));
+        assertEquals(Set.of(tempDir.resolve("file4.txt")), reopened.searchFiles("changed"));
+        assertTrue(reopened.searchFiles("3").isEmpty());
+        try (Stream<Path> segments = Files.list(indexDir)) {
+            assertEquals(1, segments.count());
+        }
+    }
+
+    @Test
+    void testFlushDuringBulkIndexingDoesNotStallWriters() throws Exception {
+        PersistentIndex index = PersistentIndex.open(indexDir);
+        SimpleTextFileIndexer indexer = indexer(index);
+        indexer.indexFiles(List.of(tempDir));
+        index.flush();
+        Path corpus = createTempDirWithCorpus(3000, 200, 1000);
+        try {
+            IndexingTask task = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), index, 1)
+                    .indexFilesAsync(List.of(corpus));
+            CompletableFuture<Void> flushed = new CompletableFuture<>();
+            Thread flusher = new Thread(() -> {
+                try {
+                    index.flush();
+                    flushed.complete(null);
+                } catch (IOException e) {
+                    flushed.completeExceptionally(e);
+                }
+            });
+            flusher.start();
+            while (flusher.getState() != Thread.State.WAITING && !flushed.isDone()) {
+                Thread.onSpinWait();
+            }
+
+            for (int i = 1; i <= 5; i++) {
+                indexer.reIndexFile(Files.writeString(tempDir.resolve("file" + i + ".txt"), "changed"));
+            }
+
+            assertFalse(task.isDone());
+            task.completion().join();
+            flushed.join();
+            SimpleTextFileIndexer reopened = indexer(PersistentIndex.open(indexDir));
+            assertEquals(5, reopened.searchFiles("changed").size());
+            assertEquals(0, reopened.pendingFilesCount());
+            assertFalse(reopened.searchFiles("word0").isEmpty());
+        } finally {
+            deleteDir(corpus);
+        }
+    }
+
+    private static SimpleTextFileIndexer indexer(PersistentIndex index) {
+        return new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), index);
+    }
+}
@@ -0,0 +1,115 @@
+package text.file.indexing.engine.core.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostingListTest {
+
+    @Test
+    void testAppendAndInsert() {
+        PostingList postingList = new PostingList("term");
+        postingList.add(3);
+        postingList.add(300);
+        postingList.add(70000);
+        postingList.add(0);
+        postingList.add(150);
+
+        assertFalse(postingList.add(300));
+        assertArrayEquals(new int[]{0, 3, 150, 300, 70000}, postingList.toArray());
+        assertTrue(postingList.contains(150));
+        assertFalse(postingList.contains(151));
+    }
+
+    @Test
+    void testRemove() {
+        PostingList postingList = new PostingList("term");
+        for (int docId : new int[]{1, 2, 200, 5000, 5001}) {
+            postingList.add(docId);
+        }
+
+        assertTrue(postingList.remove(2));
+        assertTrue(postingList.remove(5001));
+        assertFalse(postingList.remove(4));
+        assertArrayEquals(new int[]{1, 200, 5000}, postingList.toArray());
+
+        postingList.add(6000);
+        assertArrayEquals(new int[]{1, 200, 5000, 6000}, postingList.toArray());
+    }
+
+    @Test
+    void testMatchesSortedSet() {
+        PostingList postingList = new PostingList("term");
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int docId = random.nextInt(100_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(docId), postingList.remove(docId));
+            } else {
+                assertEquals(expected.add(docId), postingList.add(docId));
+            }
+        }
+
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), postingList.toArray());
+        assertEquals(expected.size(), postingList.size());
+    }
+
+    @Test
+    void testCursorAdvance() {
+        PostingList postingList = new PostingList("term");
+        for (int docId = 0; docId < 10_000; docId += 3) {
+            postingList.add(docId);
+        }
+        PostingList.Cursor cursor = postingList.cursor();
+        // the cursor keeps reading the snapshot taken before these changes
+        postingList.remove(3);
+        postingList.add(4);
+        postingList.add(20_000);
+
+        assertEquals(0, cursor.nextDoc());
+        assertEquals(3, cursor.nextDoc());
+        assertEquals(6, cursor.advance(5));
+        assertEquals(5001, cursor.advance(5000));
+        assertEquals(9999, cursor.advance(9998));
+        assertEquals(DocIdIterator.NO_MORE_DOCS, cursor.advance(10_000));
+
+        PostingList.Cursor updated = postingList.cursor();
+        assertEquals(4, updated.advance(4));
+        assertEquals(20_000, updated.advance(10_000));
+    }
+
+    @Test
+    void testFrequencies() {
+        PostingList postingList = new PostingList("term", true);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            int docId = random.nextInt(2_000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(docId) != null, postingList.remove(docId));
+            } else {
+                int frequency = 1 + random.nextInt(random.nextBoolean() ? 3 : 500);
+                assertEquals(expected.put(docId, frequency) == null, postingList.add(docId, frequency));
+            }
+        }
+
+        assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).toArray(), postingList.toArray());
+        PostingList.Cursor cursor = postingList.cursor();
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), cursor.nextDoc());
+            assertEquals(entry.getValue(), cursor.frequency());
+        }
+        int target = expected.higherKey(1_000);
+        assertEquals(target, postingList.cursor().advance(1_001));
+        PostingList.Cursor advanced = postingList.cursor();
+        advanced.advance(1_001);
+        assertEquals(expected.get(target), advanced.frequency());
+        assertTrue(postingList.maxFrequency() >= expected.values().stream().mapToInt(Integer::intValue).max().orElse(0));
+    }
+}
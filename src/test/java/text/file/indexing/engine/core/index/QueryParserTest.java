@@ -0,0 +1,43 @@
+package text.file.indexing.engine.core.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryParserTest {
+
+    @Test
+    void testParse() {
+        Query.Term foo = new Query.Term("foo");
+        Query.Term bar = new Query.Term("bar");
+        Query.Term baz = new Query.Term("baz");
+
+        assertEquals(foo, QueryParser.parse(" foo "));
+        assertEquals(new Query.And(List.of(foo, bar, baz)), QueryParser.parse("foo AND bar baz"));
+        assertEquals(new Query.Or(List.of(new Query.And(List.of(foo, bar)), baz)), QueryParser.parse("foo bar OR baz"));
+        assertEquals(new Query.And(List.of(foo, new Query.Not(new Query.Or(List.of(bar, baz))))),
+                QueryParser.parse("foo AND NOT (bar OR baz)"));
+        assertEquals(new Query.And(List.of(new Query.Term("and"), new Query.Term("or"))), QueryParser.parse("and or"));
+        assertEquals(new Query.And(List.of(new Query.Phrase(List.of("connection", "reset"), 2), foo)),
+                QueryParser.parse("\"connection  reset\"~2 AND foo"));
+    }
+
+    @Test
+    void testParseMultiTermQueries() {
+        assertEquals(new Query.Prefix("conn"), QueryParser.parse("conn*"));
+        assertEquals(new Query.Wildcard("c?nn*ion"), QueryParser.parse("c?nn*ion"));
+        assertEquals(new Query.Wildcard("*tion"), QueryParser.parse("*tion"));
+        assertEquals(new Query.Fuzzy("connection", 2), QueryParser.parse("connection~"));
+        assertEquals(new Query.And(List.of(new Query.Fuzzy("conection", 1), new Query.Term("reset"))),
+                QueryParser.parse("conection~1 reset"));
+    }
+
+    @Test
+    void testParseMalformedQuery() {
+        for (String query : List.of("", "foo AND", "(foo", "foo)", "OR foo", "foo AND OR bar", "NOT", "\"foo", "\"\"", "\"foo\"~x", "foo~3")) {
+            assertThrows(IllegalArgumentException.class, () -> QueryParser.parse(query), query);
+        }
+    }
+}
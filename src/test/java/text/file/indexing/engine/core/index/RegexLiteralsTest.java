@@ -0,0 +1,49 @@
+package text.file.indexing.engine.core.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegexLiteralsTest {
+
+    @Test
+    void testExtractRequiredLiterals() {
+        assertEquals(List.of(List.of("connection "), List.of("reset", "refused"), List.of(" by peer")),
+                literals("connection (reset|refused) by peer"));
+        assertEquals(List.of(List.of("error"), List.of(": timeout")), literals("error\\d+: timeout"));
+        assertEquals(List.of(List.of("foo"), List.of("bar")), literals("^foo.*bar$"));
+        assertEquals(List.of(List.of("colo"), List.of("r")), literals("colou?r"));
+        assertEquals(List.of(List.of("ab"), List.of("c")), literals("ab+c"));
+        assertEquals(List.of(List.of("x"), List.of("yz")), literals("x{2}yz"));
+        assertEquals(List.of(List.of("bcd")), literals("a{0,3}bcd"));
+        assertEquals(List.of(List.of("def")), literals("(abc)?def"));
+        assertEquals(List.of(List.of("def")), literals("(?=abc)def"));
+        assertEquals(List.of(List.of("xyz")), literals("[abc\\]]+xyz"));
+        assertEquals(List.of(List.of("bcd")), literals("\\x{41}bcd"));
+        assertEquals(List.of(List.of("a.b"), List.of("c")), literals("\\Qa.b\\E\\sc"));
+        assertEquals(List.of(List.of("a.b")), literals("a\\.b"));
+        assertEquals(List.of(List.of("foo", "bar")), literals("(?<name>x*foo|bar)"));
+        assertEquals(List.of(List.of("Error")), literals("(?i)Error"));
+    }
+
+    @Test
+    void testExtractNothingWhenAnyTextMayMatch() {
+        assertEquals(List.of(), literals("foo|.*"));
+        assertEquals(List.of(), literals("[a-z]+\\d*"));
+        assertEquals(List.of(), literals("(?x)foo bar"));
+        assertEquals(List.of(), RegexLiterals.requiredLiterals(Pattern.compile("foo", Pattern.COMMENTS)));
+        assertEquals(List.of(), RegexLiterals.requiredLiterals(
+                Pattern.compile("foo", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)));
+        assertEquals(List.of(), RegexLiterals.requiredLiterals(
+                Pattern.compile("foo", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CHARACTER_CLASS)));
+        assertEquals(List.of(), literals("foo(?i:(?U)sss)"));
+        assertEquals(List.of(List.of("a.b")), RegexLiterals.requiredLiterals(Pattern.compile("a.b", Pattern.LITERAL)));
+    }
+
+    private static List<List<String>> literals(String regex) {
+        return RegexLiterals.requiredLiterals(Pattern.compile(regex));
+    }
+}
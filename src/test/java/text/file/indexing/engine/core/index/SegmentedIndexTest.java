@@ -0,0 +1,105 @@
+package text.file.indexing.engine.core.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static text.file.indexing.engine.Fixtures.*;
+
+public class SegmentedIndexTest {
+
+    private SegmentedIndex segmentedIndex;
+
+    private SimpleTextFileIndexer simpleTextFileIndexer;
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        segmentedIndex = new SegmentedIndex(4, 3, 0.5);
+        simpleTextFileIndexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), segmentedIndex);
+        tempDir = createTempDirWithFiles(30);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        segmentedIndex.close();
+        deleteDir(tempDir);
+    }
+
+    @Test
+    void testBufferIsSealedAndSegmentsAreMerged() throws Exception {
+        for (int i = 1; i <= 30; i++) {
+            simpleTextFileIndexer.indexFile(tempDir.resolve("file" + i + ".txt"));
+        }
+        segmentedIndex.awaitMerges();
+
+        assertTrue(segmentedIndex.segmentCount() > 0);
+        assertTrue(segmentedIndex.segmentCount() < 30 / 4);
+        assertEquals(30, simpleTextFileIndexer.searchFiles("test").size());
+        assertEquals(Set.of(tempDir.resolve("file17.txt")), simpleTextFileIndexer.searchFiles("17"));
+    }
+
+    @Test
+    void testReindexAndRemoveSealedFiles() throws Exception {
+        simpleTextFileIndexer.indexFiles(List.of(tempDir));
+        segmentedIndex.awaitMerges();
+        assertEquals(1, segmentedIndex.segmentCount());
+
+        Path changedFile = tempDir.resolve("file5.txt");
+        Files.writeString(changedFile, "changed five");
+        simpleTextFileIndexer.reIndexFile(changedFile);
+        simpleTextFileIndexer.removeFromIndex(tempDir.resolve("file6.txt"));
+
+        assertEquals(Set.of(changedFile), simpleTextFileIndexer.searchFiles("changed"));
+        assertTrue(simpleTextFileIndexer.searchFiles("5").isEmpty());
+        assertTrue(simpleTextFileIndexer.searchFiles("6").isEmpty());
+        assertEquals(28, simpleTextFileIndexer.searchFiles("test").size());
+
+        simpleTextFileIndexer.indexFile(Files.writeString(tempDir.resolve("new1.txt"), "test new"));
+        simpleTextFileIndexer.indexFile(Files.writeString(tempDir.resolve("new2.txt"), "test new"));
+        simpleTextFileIndexer.indexFile(Files.writeString(tempDir.resolve("new3.txt"), "test new"));
+        segmentedIndex.awaitMerges();
+
+        assertEquals(2, segmentedIndex.segmentCount());
+        assertEquals(31, simpleTextFileIndexer.searchFiles("test").size());
+        assertEquals(Set.of(changedFile), simpleTextFileIndexer.searchFiles("changed"));
+        assertTrue(simpleTextFileIndexer.searchFiles("6").isEmpty());
+    }
+
+    @Test
+    void testWritersProgressDuringBulkIndexing() throws Exception {
+        simpleTextFileIndexer.indexFiles(List.of(tempDir));
+        segmentedIndex.awaitMerges();
+        Path corpus = createTempDirWithCorpus(3000, 200, 1000);
+        try {
+            SimpleTextFileIndexer bulkIndexer =
+                    new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), segmentedIndex, 1);
+            IndexingTask task = bulkIndexer.indexFilesAsync(List.of(corpus));
+
+            // enough reindexed files to request a seal, which must not stall the writers behind the bulk indexing
+            for (int i = 1; i <= 8; i++) {
+                simpleTextFileIndexer.reIndexFile(Files.writeString(tempDir.resolve("file" + i + ".txt"), "changed"));
+            }
+            segmentedIndex.awaitMerges();
+
+            assertFalse(task.isDone());
+            assertEquals(8, simpleTextFileIndexer.searchFiles("changed").size());
+            task.completion().join();
+            segmentedIndex.awaitMerges();
+            assertEquals(2, segmentedIndex.segmentCount());
+            assertEquals(22, simpleTextFileIndexer.searchFiles("test").size());
+            assertEquals(8, simpleTextFileIndexer.searchFiles("changed").size());
+        } finally {
+            deleteDir(corpus);
+        }
+    }
+}
@@ -7,13 +7,19 @@ import text.file.indexing.engine.core.Token;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.*;
 import static text.file.indexing.engine.Fixtures.*;
 
@@ -100,6 +106,217 @@ public class SimpleTextFileIndexerTest {
 
     }
 
+    @Test
+    void testIndexFileDoesNotReindexAlreadyIndexedFiles() throws IOException {
+        Path tempFile1 = createTempFileWithContent("file1.txt", "test 1");
+        Path tempFile2 = createTempFileWithContent("file2.txt", "test 2");
+
+        simpleTextFileIndexer.indexFile(tempFile1);
+        Files.writeString(tempFile1, "changed 1");
+        simpleTextFileIndexer.indexFile(tempFile2);
+
+        assertTrue(simpleTextFileIndexer.searchFiles("changed").isEmpty());
+        assertEquals(2, simpleTextFileIndexer.searchFiles("test").size());
+
+        simpleTextFileIndexer.reIndexFile(tempFile1);
+
+        assertEquals(Set.of(tempFile1), simpleTextFileIndexer.searchFiles("changed"));
+        assertEquals(Set.of(tempFile2), simpleTextFileIndexer.searchFiles("test"));
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+    }
+
+    @Test
+    void testRemoveDirectoryKeepsSiblingsWithSameNamePrefix() throws IOException {
+        Path tempDir = createTempDirWithFiles(3);
+        Path sibling = Files.createDirectory(Path.of(tempDir + "-sibling"));
+        Path siblingFile = Files.writeString(sibling.resolve("file.txt"), "test sibling");
+        simpleTextFileIndexer.indexFiles(List.of(tempDir, sibling));
+
+        assertEquals(4, simpleTextFileIndexer.searchFiles("test").size());
+
+        simpleTextFileIndexer.removeFromIndex(tempDir);
+
+        assertEquals(Set.of(siblingFile), simpleTextFileIndexer.searchFiles("test"));
+        assertTrue(simpleTextFileIndexer.searchFiles("1").isEmpty());
+        deleteDir(tempDir);
+        deleteDir(sibling);
+    }
+
+    @Test
+    void testPendingFilesCount() throws IOException {
+        Path tempDir = createTempDirWithFiles(10);
+        invertedIndex.addFilesToIndex(List.of(tempDir), Token.defaultWhiteSpaceToken());
+
+        assertEquals(10, simpleTextFileIndexer.pendingFilesCount());
+
+        invertedIndex.indexFiles(Token.defaultWhiteSpaceToken());
+
+        assertEquals(0, simpleTextFileIndexer.pendingFilesCount());
+        assertEquals(10, simpleTextFileIndexer.searchFiles("test").size());
+        deleteDir(tempDir);
+    }
+
+    @Test
+    void testIndexFilesAsync() throws IOException {
+        Path tempDir1 = createTempDirWithFiles(700);
+        Path tempDir2 = createTempDirWithFiles(300);
+        SimpleTextFileIndexer parallelIndexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), invertedIndex, 4);
+
+        IndexingTask task = parallelIndexer.indexFilesAsync(List.of(tempDir1, tempDir2, tempDir1));
+        task.completion().join();
+
+        assertEquals(1000, task.discoveredFiles());
+        assertEquals(1000, task.indexedFiles());
+        assertEquals(0, parallelIndexer.pendingFilesCount());
+        assertEquals(1000, parallelIndexer.searchFiles("test").size());
+        assertEquals(2, parallelIndexer.searchFiles("300").size());
+        deleteDir(tempDir1);
+        deleteDir(tempDir2);
+    }
+
+    @Test
+    void testSearchBooleanQuery() throws IOException {
+        Path tempFile1 = createTempFileWithContent("file1.txt", "apple banana cherry");
+        Path tempFile2 = createTempFileWithContent("file2.txt", "apple banana");
+        Path tempFile3 = createTempFileWithContent("file3.txt", "banana date");
+        simpleTextFileIndexer.indexFiles(List.of(tempFile1, tempFile2, tempFile3));
+
+        assertEquals(Set.of(tempFile1, tempFile2), simpleTextFileIndexer.search("apple AND BANANA").collect(toSet()));
+        assertEquals(Set.of(tempFile2), simpleTextFileIndexer.search("apple NOT cherry").collect(toSet()));
+        assertEquals(Set.of(tempFile1, tempFile3),
+                simpleTextFileIndexer.search("banana (cherry OR date)").collect(toSet()));
+        assertEquals(3, simpleTextFileIndexer.search("apple OR banana OR missing").count());
+        assertEquals(0, simpleTextFileIndexer.search("apple AND missing").count());
+        assertThrows(IllegalArgumentException.class, () -> simpleTextFileIndexer.search("NOT apple"));
+        assertThrows(IllegalArgumentException.class, () -> simpleTextFileIndexer.search("apple AND (banana"));
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+        Files.delete(tempFile3);
+    }
+
+    @Test
+    void testSearchMultiTermQuery() throws IOException {
+        Path tempFile1 = createTempFileWithContent("file1.txt", "connection reset");
+        Path tempFile2 = createTempFileWithContent("file2.txt", "Connected to server");
+        Path tempFile3 = createTempFileWithContent("file3.txt", "disconnected");
+        simpleTextFileIndexer.indexFiles(List.of(tempFile1, tempFile2, tempFile3));
+
+        assertEquals(Set.of(tempFile1, tempFile2), simpleTextFileIndexer.search("CONN*").collect(toSet()));
+        assertEquals(Set.of(tempFile2, tempFile3), simpleTextFileIndexer.search("*connect?d").collect(toSet()));
+        assertEquals(Set.of(tempFile1), simpleTextFileIndexer.search("conection~1 AND res*").collect(toSet()));
+        assertEquals(Set.of(tempFile2), simpleTextFileIndexer.search("srver~1 NOT conn*ion").collect(toSet()));
+
+        simpleTextFileIndexer.removeFromIndex(tempFile1);
+
+        assertEquals(Set.of(tempFile2), simpleTextFileIndexer.search("conn*").collect(toSet()));
+
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i <= Query.MultiTerm.MAX_EXPANDED_TERMS; i++) {
+            words.append("word").append(i).append(' ');
+        }
+        Path tempFile4 = createTempFileWithContent("file4.txt", words.toString());
+        simpleTextFileIndexer.indexFile(tempFile4);
+
+        assertEquals(Set.of(tempFile4), simpleTextFileIndexer.search("word1?").collect(toSet()));
+        assertThrows(IllegalArgumentException.class, () -> simpleTextFileIndexer.search("word*"));
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+        Files.delete(tempFile3);
+        Files.delete(tempFile4);
+    }
+
+    @Test
+    void testQueryStreamReadsItsEpochAfterReindex() throws IOException {
+        Path tempFile1 = createTempFileWithContent("file1.txt", "apple banana");
+        Path tempFile2 = createTempFileWithContent("file2.txt", "apple cherry");
+        simpleTextFileIndexer.indexFiles(List.of(tempFile1, tempFile2));
+
+        try (Stream<Path> results = simpleTextFileIndexer.search("apple AND banana")) {
+            Files.writeString(tempFile1, "cherry");
+            simpleTextFileIndexer.reIndexFile(tempFile1);
+            invertedIndex.cleanupIndex();
+
+            assertEquals(List.of(tempFile1), results.toList());
+        }
+        assertEquals(Set.of(tempFile2), simpleTextFileIndexer.search("apple").collect(toSet()));
+        assertEquals(Set.of(tempFile1, tempFile2), simpleTextFileIndexer.searchFiles("cherry"));
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+    }
+
+    @Test
+    void testSearchDuringReindexSeesWholeVersions() throws Exception {
+        for (Index index : List.of(invertedIndex, new CompactInvertedIndex())) {
+            SimpleTextFileIndexer indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), index);
+            Path tempFile = createTempFileWithContent("file.txt", "alpha common");
+            Path nextContent = tempFile.resolveSibling(tempFile.getFileName() + ".next");
+            indexer.indexFile(tempFile);
+            AtomicBoolean done = new AtomicBoolean();
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 300; i++) {
+                    Files.writeString(nextContent, i % 2 == 0 ? "beta common" : "alpha common");
+                    Files.move(nextContent, tempFile, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    indexer.reIndexFile(tempFile);
+                }
+                done.set(true);
+                return null;
+            });
+
+            while (!done.get()) {
+                assertEquals(Set.of(tempFile), indexer.searchFiles("common"));
+                assertEquals(Set.of(tempFile), indexer.search("alpha OR beta").collect(toSet()));
+                assertEquals(Set.of(), indexer.search("alpha AND beta").collect(toSet()));
+            }
+            writer.get();
+            executor.shutdown();
+            assertEquals(Set.of(tempFile), indexer.searchFiles("alpha"));
+            assertTrue(indexer.searchFiles("beta").isEmpty());
+            Files.delete(tempFile);
+        }
+    }
+
+    @Test
+    void testReconcileAppliesOnlyDifferences() throws IOException, InterruptedException {
+        Path tempDir = createTempDirWithFiles(5);
+        simpleTextFileIndexer.indexFiles(List.of(tempDir));
+        Files.writeString(tempDir.resolve("file1.txt"), "changed content");
+        Files.delete(tempDir.resolve("file2.txt"));
+        Path added = Files.writeString(tempDir.resolve("file6.txt"), "test 6 added");
+
+        assertEquals(3, simpleTextFileIndexer.reconcile(tempDir, 1000));
+
+        assertEquals(Set.of(tempDir.resolve("file1.txt")), simpleTextFileIndexer.searchFiles("changed"));
+        assertEquals(Set.of(added), simpleTextFileIndexer.searchFiles("added"));
+        assertEquals(4, simpleTextFileIndexer.searchFiles("test").size());
+        assertEquals(0, simpleTextFileIndexer.reconcile(tempDir, 1000));
+        deleteDir(tempDir);
+    }
+
+    @Test
+    void testReindexSkipsUnchangedContent() throws IOException {
+        Path tempFile = createTempFileWithContent("file.txt", "alpha beta");
+        simpleTextFileIndexer.indexFile(tempFile);
+
+        simpleTextFileIndexer.reIndexFile(tempFile);
+        Files.writeString(tempFile, "alpha beta");
+        simpleTextFileIndexer.reIndexFile(tempFile);
+        Files.setLastModifiedTime(tempFile, FileTime.fromMillis(0));
+        simpleTextFileIndexer.reIndexFile(tempFile);
+        assertEquals(3, simpleTextFileIndexer.skippedReindexCount());
+
+        Files.writeString(tempFile, "alpha gamma");
+        simpleTextFileIndexer.reIndexFile(tempFile);
+
+        assertEquals(3, simpleTextFileIndexer.skippedReindexCount());
+        assertEquals(Set.of(tempFile), simpleTextFileIndexer.searchFiles("alpha"));
+        assertEquals(Set.of(tempFile), simpleTextFileIndexer.searchFiles("gamma"));
+        assertEquals(Set.of(), simpleTextFileIndexer.searchFiles("beta"));
+        Files.delete(tempFile);
+    }
+
     @Test
     void testSearchFiles_NotFound() {
         Set<Path> result = simpleTextFileIndexer.searchFiles("not_exist");
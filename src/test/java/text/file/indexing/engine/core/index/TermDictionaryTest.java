@@ -0,0 +1,123 @@
+package text.file.indexing.engine.core.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TermDictionaryTest {
+
+    @Test
+    void testVisitMatchesBruteForce() {
+        SortedSet<String> terms = randomTerms(20_000, new Random(42));
+        TermDictionary.Builder builder = new TermDictionary.Builder();
+        terms.forEach(builder::add);
+        TermDictionary dictionary = builder.build();
+
+        assertEquals(terms.size(), dictionary.size());
+        List<Query.MultiTerm> queries = List.of(new Query.Prefix("ab"), new Query.Prefix("zzzz"),
+                new Query.Wildcard("a*c?"), new Query.Wildcard("*ba*"), new Query.Wildcard("?"),
+                new Query.Fuzzy("abcab", 1), new Query.Fuzzy("cab", 2), new Query.Fuzzy("bb", 0));
+        for (Query.MultiTerm query : queries) {
+            List<String> visited = new ArrayList<>();
+            dictionary.visit(TermAutomaton.of(query), visited::add);
+
+            assertEquals(terms.stream().filter(term -> matches(query, term)).toList(), visited, query.toString());
+        }
+    }
+
+    @Test
+    void testIndexedTermsMergeAddedTerms() {
+        Set<String> indexed = ConcurrentHashMap.newKeySet();
+        IndexedTerms indexedTerms = new IndexedTerms(indexed::contains);
+        for (int i = 0; i < 10_000; i++) {
+            indexed.add("term" + i);
+            indexedTerms.add("term" + i);
+            indexedTerms.maybeMerge();
+        }
+        indexed.remove("term12");
+        indexed.add("other");
+        indexedTerms.add("other");
+
+        assertEquals(List.of("term10", "term11", "term13", "term14", "term15", "term16", "term17",
+                "term18", "term19"), indexedTerms.expand(new Query.Wildcard("term1?"), 100));
+        assertEquals(List.of("other"), indexedTerms.expand(new Query.Fuzzy("othr", 1), 100));
+        assertThrows(IllegalArgumentException.class, () -> indexedTerms.expand(new Query.Prefix("term"), 100));
+    }
+
+    @Test
+    void testUsesLessMemoryThanHashMapKeys() {
+        SortedSet<String> terms = randomTerms(200_000, new Random(7));
+
+        long mapBytes = measureRetainedHeap(() -> {
+            Map<String, Boolean> map = new ConcurrentHashMap<>();
+            terms.forEach(term -> map.put(new String(term.toCharArray()), true));
+            return map;
+        });
+        long dictionaryBytes = measureRetainedHeap(() -> {
+            TermDictionary.Builder builder = new TermDictionary.Builder();
+            terms.forEach(builder::add);
+            return builder.build();
+        });
+
+        assertTrue(dictionaryBytes * 4 < mapBytes, "TermDictionary: " + dictionaryBytes + " bytes, map: " + mapBytes + " bytes");
+    }
+
+    private static SortedSet<String> randomTerms(int count, Random random) {
+        SortedSet<String> terms = new TreeSet<>();
+        while (terms.size() < count) {
+            char[] term = new char[1 + random.nextInt(8)];
+            for (int i = 0; i < term.length; i++) {
+                term[i] = (char) ('a' + random.nextInt(3 + i));
+            }
+            terms.add(new String(term));
+        }
+        return terms;
+    }
+
+    private static boolean matches(Query.MultiTerm query, String term) {
+        if (query instanceof Query.Prefix prefix) {
+            return term.startsWith(prefix.prefix());
+        }
+        if (query instanceof Query.Wildcard wildcard) {
+            String regex = Pattern.quote(wildcard.pattern()).replace("*", "\\E.*\\Q").replace("?", "\\E.\\Q");
+            return term.matches(regex);
+        }
+        Query.Fuzzy fuzzy = (Query.Fuzzy) query;
+        return distance(fuzzy.term(), term) <= fuzzy.maxEdits();
+    }
+
+    private static int distance(String first, String second) {
+        int[][] distances = new int[first.length() + 1][second.length() + 1];
+        for (int i = 0; i <= first.length(); i++) {
+            for (int j = 0; j <= second.length(); j++) {
+                distances[i][j] = i == 0 ? j : j == 0 ? i : Math.min(
+                        distances[i - 1][j - 1] + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1),
+                        Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+            }
+        }
+        return distances[first.length()][second.length()];
+    }
+
+    private static long measureRetainedHeap(Supplier<Object> supplier) {
+        long before = usedHeapAfterGc();
+        Object retained = supplier.get();
+        long after = usedHeapAfterGc();
+        assertNotNull(retained);
+        return after - before;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,66 @@
+package text.file.indexing.engine.core.index;
+
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenizerTest {
+
+    private static final String TEXT = "Hello, World;  the\tQUICK brown,,fox\r\nJumps over; the lazy DOG\n\nend";
+
+    @Test
+    void testTokenizeMatchesSplit() throws IOException {
+        for (String regex : List.of("\\s+", " ", "[,;\\s]+", "\\W+", ",", "\\s*[,;]\\s*", "o(?=x)|\\s")) {
+            assertEquals(splitTerms(TEXT, regex), readTerms(TEXT, new Token(regex)), regex);
+        }
+    }
+
+    @Test
+    void testTermsSpanningChunks() throws IOException {
+        StringBuilder text = new StringBuilder();
+        String longTerm = "x".repeat(20_000);
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            text.append("word").append(random.nextInt(1_000)).append(i % 10 == 0 ? '\n' : ' ');
+        }
+        text.append(longTerm).append(" tail");
+
+        String singleLine = text.toString().replace('\n', ' ');
+        for (Token token : List.of(Token.defaultWhiteSpaceToken(), new Token("\\s(?!\\s)"))) {
+            assertEquals(splitTerms(text.toString(), token.token()), readTerms(text.toString(), token));
+            assertEquals(splitTerms(singleLine, token.token()), readTerms(singleLine, token));
+        }
+    }
+
+    @Test
+    void testFoldCase() {
+        assertEquals("stra\u00dfe \u01c6 \ud801\udc28", Tokenizer.foldCase("STRA\u00dfE \u01c4 \ud801\udc00"));
+    }
+
+    private static Set<String> readTerms(String text, Token token) throws IOException {
+        Path file = Files.createTempFile("tokenizer", ".txt");
+        try {
+            Files.writeString(file, text);
+            List<String> terms = TermReader.readTerms(file, Tokenizer.forToken(token), () -> false);
+            assertEquals(terms.size(), new HashSet<>(terms).size());
+            return new TreeSet<>(terms);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Set<String> splitTerms(String text, String regex) {
+        Set<String> terms = new TreeSet<>();
+        text.lines().forEach(line -> Arrays.stream(line.split(regex))
+                .filter(term -> !term.isEmpty())
+                .map(term -> term.toLowerCase(Locale.ROOT))
+                .forEach(terms::add));
+        return terms;
+    }
+}
@@ -0,0 +1,71 @@
+package text.file.indexing.engine.core.search;
+
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AhoCorasickTextFileSearcherTest {
+
+    @Test
+    void testFindSamePositionsAsSearchingEachPattern() throws IOException {
+        Random random = new Random(11);
+        String[] pieces = {"he", "she", "his", "hers", "s", " ", "\n", "\r\n", "\r", "\u00e9", "\ud83d\ude00"};
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            StringBuilder content = new StringBuilder();
+            // long enough to span several chunks, with matches crossing the chunk boundaries
+            while (content.length() < 100_000) {
+                content.append(pieces[random.nextInt(pieces.length)]);
+            }
+            files.add(Files.writeString(Files.createTempFile("aho", ".txt"), content));
+        }
+        SimpleTextFileIndexer indexer =
+                new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex(false, true));
+        indexer.indexFiles(files);
+        AhoCorasickTextFileSearcher searcher = new AhoCorasickTextFileSearcher(indexer);
+        LiteralTextFileSearcher literalSearcher = new LiteralTextFileSearcher(indexer);
+
+        List<String> patterns = List.of("he", "she", "hers", "his", "shehe", "s\u00e9he", "\ud83d\ude00he",
+                "hishers", "ehs", "a\nb", "she");
+        Map<String, List<PathWithPosition>> results = searcher.searchPatterns(patterns);
+        assertEquals(List.of("he", "she", "hers", "his", "shehe", "s\u00e9he", "\ud83d\ude00he", "hishers", "ehs",
+                "a\nb"), List.copyOf(results.keySet()));
+        for (String pattern : patterns) {
+            List<PathWithPosition> expected = literalSearcher.searchPathWithPosition(pattern);
+            assertEquals(expected, results.get(pattern), pattern);
+            assertEquals(expected, searcher.searchPathWithPosition(pattern), pattern);
+        }
+        assertFalse(results.get("shehe").isEmpty());
+        assertEquals(results, new BoyerMooreTextFileSearcher(indexer).searchPatterns(patterns));
+        for (Path file : files) {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testReportPatternOnlyInItsCandidates() throws IOException {
+        Path file = Files.writeString(Files.createTempFile("aho", ".txt"), "connection reset\nreset connection");
+        SimpleTextFileIndexer indexer = new SimpleTextFileIndexer();
+        indexer.indexFiles(List.of(file));
+
+        Map<String, List<PathWithPosition>> results =
+                new AhoCorasickTextFileSearcher(indexer).searchPatterns(List.of("reset", "connect"));
+
+        assertEquals(List.of(new PathWithPosition(file, List.of(new Position(0, 11), new Position(1, 0)))),
+                results.get("reset"));
+        // not a whole term, so not a candidate without a trigram index
+        assertEquals(List.of(), results.get("connect"));
+        Files.delete(file);
+    }
+}
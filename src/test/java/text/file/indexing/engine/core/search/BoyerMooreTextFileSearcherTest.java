@@ -2,6 +2,8 @@ package text.file.indexing.engine.core.search;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
 import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
 
 import java.io.IOException;
@@ -48,9 +50,13 @@ public class BoyerMooreTextFileSearcherTest {
 
         Path tempFile3 = createTempFileWithContent("test2.txt", "emptyfile");
 
-        simpleTextFileIndexer.indexFiles(List.of(tempFile, tempFile2, tempFile3));
+        List<Path> files = List.of(tempFile, tempFile2, tempFile3);
+        simpleTextFileIndexer.indexFiles(files);
 
-        List<PathWithPosition> pathWithPositions = searcher.searchPathWithPosition("file");
+        // the candidates come in no particular order
+        List<PathWithPosition> pathWithPositions = new ArrayList<>(searcher.searchPathWithPosition("file"));
+        pathWithPositions.sort((first, second) -> Integer.compare(files.indexOf(first.getPath()),
+                files.indexOf(second.getPath())));
 
         List<PathWithPosition> expected = new ArrayList<>();
         expected.add(new PathWithPosition(tempFile, List.of(new Position(3, 15),
@@ -65,6 +71,47 @@ public class BoyerMooreTextFileSearcherTest {
         Files.delete(tempFile3);
     }
 
+    @Test
+    void testSearchLongLinesAcrossChunks() throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<Position> expected = new ArrayList<>();
+        for (int line = 0; line < 3; line++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 40_000; i++) {
+                if (i % 997 == line) {
+                    expected.add(new Position(line, text.length()));
+                    text.append("needle");
+                }
+                text.append("haystack ");
+            }
+            content.append(text).append(line == 0 ? "\r\n" : "\n");
+        }
+        Path tempFile = createTempFileWithContent("long.txt", content.toString());
+
+        simpleTextFileIndexer.indexFiles(List.of(tempFile));
+        List<PathWithPosition> pathWithPositions = searcher.searchPathWithPosition("needlehaystack");
+
+        assertEquals(List.of(new PathWithPosition(tempFile, expected)), pathWithPositions);
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testSearchSubstringWithTrigramIndex() throws IOException {
+        SimpleTextFileIndexer trigramIndexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(),
+                new CompactInvertedIndex(false, true));
+        BoyerMooreTextFileSearcher substringSearcher = new BoyerMooreTextFileSearcher(trigramIndexer);
+        Path tempFile = createTempFileWithContent("test.txt", "indexing engine\nreindex it");
+        Path tempFile2 = createTempFileWithContent("test2.txt", "INDEX only");
+        trigramIndexer.indexFiles(List.of(tempFile, tempFile2));
+
+        assertEquals(List.of(new PathWithPosition(tempFile, List.of(new Position(0, 0), new Position(1, 2)))),
+                substringSearcher.searchPathWithPosition("index"));
+        assertEquals(List.of(new PathWithPosition(tempFile, List.of(new Position(0, 5)))),
+                substringSearcher.searchPathWithPosition("ing eng"));
+        Files.delete(tempFile);
+        Files.delete(tempFile2);
+    }
+
     @Test
     void testBuildCharTable() {
         String pattern = "abc";
@@ -0,0 +1,62 @@
+package text.file.indexing.engine.core.search;
+
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LiteralTextFileSearcherTest {
+
+    @Test
+    void testFindSamePositionsAsBoyerMoore() throws IOException {
+        Random random = new Random(7);
+        String[] pieces = {"ab", "aab", "b", " ", "\n", "\r\n", "\r", "\u00e9", "\u20ac", "\ud83d\ude00", "abab"};
+        StringBuilder content = new StringBuilder();
+        // long enough to span several chunks, with lines crossing the chunk boundaries
+        while (content.length() < 300_000) {
+            content.append(pieces[random.nextInt(pieces.length)]);
+        }
+        Path file = Files.writeString(Files.createTempFile("literal", ".txt"), content);
+        SimpleTextFileIndexer indexer =
+                new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex(false, true));
+        indexer.indexFiles(List.of(file));
+        LiteralTextFileSearcher literalSearcher = new LiteralTextFileSearcher(indexer);
+        BoyerMooreTextFileSearcher boyerMooreSearcher = new BoyerMooreTextFileSearcher(indexer);
+
+        for (String pattern : List.of("aba", "abab", "b\u00e9a", "\u20ac\ud83d\ude00", "ab ab", "babababa")) {
+            List<PathWithPosition> expected = boyerMooreSearcher.searchPathWithPosition(pattern);
+            assertFalse(expected.isEmpty(), pattern);
+            assertEquals(expected, literalSearcher.searchPathWithPosition(pattern), pattern);
+        }
+        assertEquals(List.of(), literalSearcher.searchPathWithPosition("a\nb"));
+        Files.delete(file);
+    }
+
+    @Test
+    void testMatchBytesAtEveryOffset() {
+        byte[] text = new byte[1000];
+        for (int length = 1; length <= 40; length++) {
+            byte[] pattern = new byte[length];
+            Arrays.fill(pattern, (byte) 'x');
+            pattern[length - 1] = 'y';
+            ByteMatcher matcher = ByteMatcher.forPattern(pattern);
+            for (int offset = 0; offset + length <= text.length; offset += 37) {
+                Arrays.fill(text, (byte) 'x');
+                System.arraycopy(pattern, 0, text, offset, length);
+                assertEquals(offset, matcher.indexOf(text, 0, text.length));
+                assertEquals(-1, matcher.indexOf(text, 0, offset + length - 1));
+                assertEquals(-1, matcher.indexOf(text, offset + 1, text.length));
+            }
+        }
+        assertEquals(Boolean.getBoolean(ByteMatcher.VECTOR_PROPERTY), ByteMatcher.isVectorized());
+    }
+}
@@ -0,0 +1,70 @@
+package text.file.indexing.engine.core.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static text.file.indexing.engine.Fixtures.createTempFileWithContent;
+
+public class PhraseTextFileSearcherTest {
+
+    private SimpleTextFileIndexer simpleTextFileIndexer;
+
+    @BeforeEach
+    void setUp() {
+        simpleTextFileIndexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex(true));
+    }
+
+    @Test
+    void testSearchPhrase() throws IOException {
+        Path tempFile1 = createTempFileWithContent("file1.txt", """
+                connection reset by peer
+                the Connection   reset again
+                reset connection
+                """);
+        Path tempFile2 = createTempFileWithContent("file2.txt", "connection was reset");
+        simpleTextFileIndexer.indexFiles(List.of(tempFile1, tempFile2));
+
+        assertEquals(List.of(new PathWithPosition(tempFile1, List.of(new Position(0, 0), new Position(1, 4)))),
+                new PhraseTextFileSearcher(simpleTextFileIndexer).searchPathWithPosition("connection reset"));
+        assertEquals(2, new PhraseTextFileSearcher(simpleTextFileIndexer, 1).searchPathWithPosition("connection reset").size());
+
+        Files.writeString(tempFile2, "no connection reset here");
+        simpleTextFileIndexer.reIndexFile(tempFile2);
+        assertEquals(List.of(new Position(0, 3)),
+                simpleTextFileIndexer.searchPhrase("connection reset", 0).get(tempFile2));
+        Files.delete(tempFile1);
+        Files.delete(tempFile2);
+    }
+
+    @Test
+    void testPositionsMatchBoyerMoore() throws IOException {
+        Random random = new Random(11);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            content.append(random.nextInt(4) == 0 ? "alpha" : "beta").append(random.nextInt(20) == 0 ? "\r\n" : " ");
+        }
+        Path tempFile = createTempFileWithContent("large.txt", content.toString());
+        simpleTextFileIndexer.indexFiles(List.of(tempFile));
+
+        List<PathWithPosition> expected = new BoyerMooreTextFileSearcher(simpleTextFileIndexer).searchPathWithPosition("alpha");
+        assertEquals(expected, new PhraseTextFileSearcher(simpleTextFileIndexer).searchPathWithPosition("alpha"));
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testIndexWithoutPositions() throws IOException {
+        SimpleTextFileIndexer indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex());
+
+        assertThrows(UnsupportedOperationException.class, () -> indexer.searchPhrase("connection reset", 0));
+    }
+}
@@ -0,0 +1,92 @@
+package text.file.indexing.engine.core.search;
+
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegexTextFileSearcherTest {
+
+    @Test
+    void testSearchPathWithPosition() throws IOException {
+        Path ascii = Files.writeString(Files.createTempFile("regex", ".txt"),
+                "connection reset by peer\r\nerror 42: timeout\nconnection refused by peer");
+        Path unicode = Files.writeString(Files.createTempFile("regex", ".txt"),
+                "caf\u00e9 \ud83d\ude00 error 7: timeout\rerror 8: timeout");
+        Path other = Files.writeString(Files.createTempFile("regex", ".txt"), "nothing to see here");
+        SimpleTextFileIndexer indexer =
+                new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex(false, true));
+        indexer.indexFiles(List.of(ascii, unicode, other));
+        RegexTextFileSearcher searcher = new RegexTextFileSearcher(indexer);
+
+        assertEquals(List.of(new PathWithPosition(ascii, List.of(new Position(0, 0), new Position(2, 0)))),
+                searcher.searchPathWithPosition("connection re(set|fused) by peer"));
+        assertEquals(List.of(new PathWithPosition(unicode, List.of(new Position(0, 8), new Position(1, 0)))),
+                searcher.searchPathWithPosition(Pattern.compile("ERROR [78]", Pattern.CASE_INSENSITIVE)));
+        assertEquals(2, searcher.searchPathWithPosition("error \\d+: timeout").size());
+        assertEquals(Set.of(ascii, unicode),
+                indexer.searchRegexCandidates(Pattern.compile("e\\w+r \\d+: timeout")).collect(Collectors.toSet()));
+        assertEquals(3, indexer.searchRegexCandidates(Pattern.compile("\\w+")).count());
+        for (Path file : List.of(ascii, unicode, other)) {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testFindSameMatchesAsWithoutPruning() throws IOException {
+        String[] words = {"alpha", "beta", "gamma", "delta", "error", "42", "\n", "\r\n", " ", "\u00e9"};
+        Random random = new Random(5);
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int word = 0; word < 40; word++) {
+                content.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            files.add(Files.writeString(Files.createTempFile("regex", ".txt"), content));
+        }
+        SimpleTextFileIndexer indexer =
+                new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(), new CompactInvertedIndex(false, true));
+        indexer.indexFiles(files);
+        RegexTextFileSearcher searcher = new RegexTextFileSearcher(indexer);
+
+        for (String regex : List.of("alpha beta", "(gamma|delta) error", "error\\s+42", "be?ta\\s*gam+a",
+                "\u00e9 (alpha|42)", "42 \\R")) {
+            Pattern pattern = Pattern.compile(regex);
+            List<PathWithPosition> expected = new ArrayList<>();
+            for (Path file : files) {
+                List<Position> positions = RegexTextFileSearcher.search(Files.readString(file), pattern);
+                if (!positions.isEmpty()) {
+                    expected.add(new PathWithPosition(file, positions));
+                }
+            }
+            List<PathWithPosition> found = new ArrayList<>(searcher.searchPathWithPosition(pattern));
+            found.sort((first, second) -> Integer.compare(files.indexOf(first.getPath()),
+                    files.indexOf(second.getPath())));
+            assertFalse(expected.isEmpty(), regex);
+            assertEquals(expected, found, regex);
+        }
+        for (Path file : files) {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testRequireTrigramIndex() {
+        RegexTextFileSearcher searcher = new RegexTextFileSearcher(new SimpleTextFileIndexer());
+
+        assertThrows(UnsupportedOperationException.class, () -> searcher.searchPathWithPosition("foo.*bar"));
+        assertThrows(IllegalArgumentException.class, () -> searcher.searchPathWithPosition("foo("));
+    }
+}
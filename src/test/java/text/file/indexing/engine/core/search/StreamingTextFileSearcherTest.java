@@ -0,0 +1,131 @@
+package text.file.indexing.engine.core.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingTextFileSearcherTest {
+
+    private final List<Path> files = new ArrayList<>();
+
+    private SimpleTextFileIndexer indexer;
+
+    @BeforeEach
+    void indexFiles() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            files.add(Files.writeString(Files.createTempFile("streaming", ".txt"),
+                    "error one\nno problem\n".repeat(100 + i)));
+        }
+        indexer = new SimpleTextFileIndexer();
+        indexer.indexFiles(files);
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        for (Path file : files) {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testStreamSameResultsAsLiteralSearcher() {
+        List<PathWithPosition> results = new CopyOnWriteArrayList<>();
+        try (StreamingTextFileSearcher searcher = new StreamingTextFileSearcher(indexer, 4)) {
+            SearchTask task = searcher.search("error", Integer.MAX_VALUE, Duration.ofMinutes(1), results::add);
+
+            assertEquals(SearchTask.Status.COMPLETED, task.completion().join());
+            assertEquals(20, task.searchedFiles());
+            assertEquals(new HashSet<>(new LiteralTextFileSearcher(indexer).searchPathWithPosition("error")),
+                    new HashSet<>(results));
+            assertEquals(results.stream().mapToLong(it -> it.getPositions().size()).sum(), task.deliveredPositions());
+        }
+    }
+
+    @Test
+    void testStopAtLimit() {
+        List<PathWithPosition> results = new CopyOnWriteArrayList<>();
+        try (StreamingTextFileSearcher searcher = new StreamingTextFileSearcher(indexer, 1)) {
+            SearchTask task = searcher.search("error", 5, Duration.ofMinutes(1), results::add);
+
+            assertEquals(SearchTask.Status.LIMIT_REACHED, task.completion().join());
+            assertEquals(1, results.size());
+            assertEquals(List.of(new Position(0, 0), new Position(2, 0), new Position(4, 0), new Position(6, 0),
+                    new Position(8, 0)), results.get(0).getPositions());
+            assertEquals(5, task.deliveredPositions());
+        }
+    }
+
+    @Test
+    void testDeliverNothingAfterCancel() {
+        List<PathWithPosition> results = new CopyOnWriteArrayList<>();
+        AtomicReference<SearchTask> taskReference = new AtomicReference<>();
+        try (StreamingTextFileSearcher searcher = new StreamingTextFileSearcher(indexer, 4)) {
+            SearchTask task = searcher.search("error", Integer.MAX_VALUE, Duration.ofMinutes(1), result -> {
+                results.add(result);
+                while (taskReference.get() == null) {
+                    Thread.onSpinWait();
+                }
+                taskReference.get().cancel();
+            });
+            taskReference.set(task);
+
+            assertEquals(SearchTask.Status.CANCELLED, task.completion().join());
+            assertEquals(1, results.size());
+        }
+    }
+
+    @Test
+    void testStopAtTimeout() {
+        try (StreamingTextFileSearcher searcher = new StreamingTextFileSearcher(indexer, 1)) {
+            SearchTask task = searcher.search("error", Integer.MAX_VALUE, Duration.ofMillis(50), result -> {
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            assertEquals(SearchTask.Status.TIMED_OUT, task.completion().join());
+            assertTrue(task.searchedFiles() < 20);
+        }
+    }
+
+    @Test
+    void testCancelTimeoutOfFinishedSearch() throws InterruptedException {
+        try (StreamingTextFileSearcher searcher = new StreamingTextFileSearcher(indexer, 4)) {
+            SearchTask task = searcher.search("error", Integer.MAX_VALUE, Duration.ofSeconds(Long.MAX_VALUE),
+                    result -> { });
+
+            assertEquals(SearchTask.Status.COMPLETED, task.completion().join());
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (searcher.pendingTimeoutsCount() > 0) {
+                assertTrue(System.nanoTime() < deadline, "timed out");
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    void testRejectSearchWhenClosed() {
+        StreamingTextFileSearcher searcher = new StreamingTextFileSearcher(indexer, 1);
+        searcher.close();
+
+        assertThrows(IllegalStateException.class,
+                () -> searcher.search("error", 1, Duration.ofSeconds(1), result -> { }));
+        assertThrows(IllegalArgumentException.class,
+                () -> new StreamingTextFileSearcher(indexer, 0));
+    }
+}
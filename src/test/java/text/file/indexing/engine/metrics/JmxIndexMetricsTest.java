@@ -0,0 +1,95 @@
+package text.file.indexing.engine.metrics;
+
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+import text.file.indexing.engine.watcher.FileSystemWatchServiceWatcher;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static text.file.indexing.engine.Fixtures.*;
+
+public class JmxIndexMetricsTest {
+
+    @Test
+    void testHistogramPercentilesWithinResolution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000, histogram.max());
+        assertEquals(50_000.5, histogram.mean(), 0.001);
+        assertEquals(50_000, histogram.valueAtPercentile(50), 50_000 / 32.0);
+        assertEquals(99_000, histogram.valueAtPercentile(99), 99_000 / 32.0);
+        assertEquals(100_000, histogram.valueAtPercentile(100));
+        assertEquals(1, histogram.valueAtPercentile(0));
+    }
+
+    @Test
+    void testPublishIndexingAndSearchMetrics() throws IOException {
+        Path dir = createTempDirWithCorpus(20, 100, 50);
+        long bytes;
+        try (Stream<Path> files = Files.list(dir)) {
+            bytes = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try (JmxIndexMetrics metrics = JmxIndexMetrics.register("test")) {
+            assertThrows(IllegalArgumentException.class, () -> JmxIndexMetrics.register("test"));
+            SimpleTextFileIndexer indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(),
+                    new CompactInvertedIndex(), 2, metrics);
+            indexer.indexFiles(List.of(dir));
+            int results = indexer.searchFiles("word1").size();
+            assertTrue(indexer.searchFiles("missing").isEmpty());
+
+            IndexMetricsMXBean published = JMX.newMXBeanProxy(server, metrics.objectName(), IndexMetricsMXBean.class);
+            assertEquals(20, published.getFilesIndexed());
+            assertEquals(2000, published.getTokensIndexed());
+            assertEquals(bytes, published.getBytesIndexed());
+            assertEquals(20, published.getIndexLatency().getCount());
+            assertTrue(published.getIndexLatency().getMaxMicros() > 0);
+            Map<String, LatencySnapshot> queryLatency = published.getQueryLatencyByResultSize();
+            assertEquals(List.of("0", "1-9", "10-99", "100-999", "1000+"), List.copyOf(queryLatency.keySet()));
+            assertEquals(1, queryLatency.get("0").getCount());
+            assertEquals(1, queryLatency.get(results < 10 ? "1-9" : "10-99").getCount());
+            Map<String, Long> gauges = published.getGauges();
+            assertEquals(50, gauges.get(IndexMetrics.TERMS));
+            assertTrue(gauges.get(IndexMetrics.POSTINGS) >= 50);
+            assertTrue(gauges.get(IndexMetrics.ESTIMATED_HEAP_BYTES) > 0);
+            assertEquals(0, gauges.get(IndexMetrics.PENDING_FILES));
+            assertEquals(0, published.getWatchOverflows());
+        } finally {
+            deleteDir(dir);
+        }
+        assertTrue(server.queryNames(null, null).stream()
+                .noneMatch(name -> name.getDomain().equals(JmxIndexMetrics.DOMAIN)));
+    }
+
+    @Test
+    void testWatcherGaugesRemovedOnClose() {
+        try (JmxIndexMetrics metrics = JmxIndexMetrics.register("test-watcher")) {
+            SimpleTextFileIndexer indexer = new SimpleTextFileIndexer(Token.defaultWhiteSpaceToken(),
+                    new CompactInvertedIndex(), 2, metrics);
+            FileSystemWatchServiceWatcher watcher = new FileSystemWatchServiceWatcher(indexer);
+            assertEquals(0, metrics.getGauges().get(IndexMetrics.WATCHER_PENDING_CHANGES));
+
+            watcher.close();
+
+            Map<String, Long> gauges = metrics.getGauges();
+            assertFalse(gauges.containsKey(IndexMetrics.WATCHER_PENDING_CHANGES));
+            assertFalse(gauges.containsKey(IndexMetrics.WATCHER_QUEUED_BATCHES));
+            assertTrue(gauges.containsKey(IndexMetrics.TERMS));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package text.file.indexing.engine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+public class ChunkedFileReaderTest {
+
+    @Test
+    void testReadSmallAndMappedFiles() throws IOException {
+        // multi-byte chars are split between chunks and mapped windows
+        String unit = "line \u00e9\u00e8 \u20ac \ud83d\ude00 end\n";
+        for (int units : new int[]{0, 1, 10_000, 100_000}) {
+            String content = unit.repeat(units);
+            Path file = Files.writeString(Files.createTempFile("chunked", ".txt"), content);
+            CRC32C checksum = new CRC32C();
+            try (ChunkedFileReader reader = ChunkedFileReader.open(file, checksum)) {
+                assertEquals(Files.size(file) > ChunkedFileReader.MAPPING_THRESHOLD, reader.isMapped());
+                assertEquals(content, readAll(reader));
+                CRC32C expected = new CRC32C();
+                expected.update(Files.readAllBytes(file));
+                assertEquals(expected.getValue(), checksum.getValue());
+                assertEquals(expected.getValue(), ChunkedFileReader.checksum(file, new CRC32C()));
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void testMalformedInput() throws IOException {
+        Path file = Files.createTempFile("malformed", ".txt");
+        Files.write(file, new byte[]{'a', ' ', (byte) 0xC3});
+        try (ChunkedFileReader reader = ChunkedFileReader.open(file)) {
+            assertThrows(MalformedInputException.class, () -> readAll(reader));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[1000];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            content.append(buffer, 0, read);
+        }
+        return content.toString();
+    }
+}
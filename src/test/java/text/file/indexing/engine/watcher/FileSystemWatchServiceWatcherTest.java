@@ -0,0 +1,122 @@
+package text.file.indexing.engine.watcher;
+
+import org.junit.jupiter.api.Test;
+import text.file.indexing.engine.core.Token;
+import text.file.indexing.engine.core.index.CompactInvertedIndex;
+import text.file.indexing.engine.core.index.SimpleTextFileIndexer;
+import text.file.indexing.engine.core.index.WatcherTextFileIndexer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static text.file.indexing.engine.Fixtures.deleteDir;
+
+public class FileSystemWatchServiceWatcherTest {
+
+    @Test
+    void testRegisterAndUnregisterTree() throws IOException {
+        Path root = Files.createTempDirectory("watched");
+        Files.createDirectories(root.resolve("a/b/c"));
+        Files.createDirectories(root.resolve("a-sibling"));
+        Files.createDirectories(root.resolve("empty"));
+        Files.writeString(root.resolve("a/b/file.txt"), "test");
+        try (FileSystemWatchServiceWatcher watcher = new FileSystemWatchServiceWatcher(new SimpleTextFileIndexer())) {
+            watcher.registerTree(root);
+            watcher.registerTree(root.resolve("a"));
+
+            assertEquals(6, watcher.watchedDirsCount());
+
+            watcher.unregisterTree(root.resolve("a"));
+
+            assertEquals(3, watcher.watchedDirsCount());
+        } finally {
+            deleteDir(root);
+        }
+    }
+
+    @Test
+    void testStopDrainsChangesAndReleasesWatchThread() throws IOException, InterruptedException {
+        Path root = Files.createTempDirectory("watched");
+        SimpleTextFileIndexer indexer = new SimpleTextFileIndexer();
+        ExecutorService indexingWorkers = Executors.newSingleThreadExecutor();
+        FileSystemWatchServiceWatcher watcher = new FileSystemWatchServiceWatcher(indexer, Duration.ofMinutes(1),
+                indexingWorkers);
+
+        for (int session = 0; session < 3; session++) {
+            watcher.startWatching(List.of(root));
+            awaitTrue(() -> watcher.watchedDirsCount() == 1);
+            Path file = Files.writeString(root.resolve("file" + session + ".txt"), "session" + session);
+            awaitTrue(() -> watcher.pendingChangesCount() > 0);
+
+            watcher.stopWatching();
+
+            // applied although the quiet window did not elapse
+            assertEquals(Set.of(file), indexer.searchFiles("session" + session));
+            assertEquals(0, watcher.watchedDirsCount());
+            assertFalse(watchThreadAlive());
+        }
+        watcher.close();
+
+        assertThrows(IllegalStateException.class, () -> watcher.startWatching(List.of(root)));
+        assertFalse(indexingWorkers.isShutdown());
+        indexingWorkers.shutdown();
+        deleteDir(root);
+    }
+
+    @Test
+    void testWatcherTextFileIndexerAppliesChangesOnGivenWorkers() throws IOException, InterruptedException {
+        Path root = Files.createTempDirectory("watched");
+        ExecutorService indexingWorkers = Executors.newSingleThreadExecutor();
+        AtomicInteger executions = new AtomicInteger();
+        try (WatcherTextFileIndexer indexer = new WatcherTextFileIndexer(new CompactInvertedIndex(),
+                Token.defaultWhiteSpaceToken(), Duration.ZERO, task -> {
+            executions.incrementAndGet();
+            indexingWorkers.execute(task);
+        })) {
+            indexer.startWatching(List.of(root));
+            Path file = root.resolve("file.txt");
+
+            // rewritten until seen, as the directory is registered on the watch thread
+            awaitTrue(() -> {
+                writeString(file, "watched");
+                return indexer.searchFiles("watched").equals(Set.of(file));
+            });
+            assertTrue(executions.get() > 0);
+        } finally {
+            assertFalse(indexingWorkers.isShutdown());
+            indexingWorkers.shutdown();
+            deleteDir(root);
+        }
+    }
+
+    private static void writeString(Path file, String content) {
+        try {
+            Files.writeString(file, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean watchThreadAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("file-system-watching") && thread.isAlive());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package text.file.indexing.engine.watcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static text.file.indexing.engine.watcher.WatchEventCoalescer.ChangeKind.CREATED;
+import static text.file.indexing.engine.watcher.WatchEventCoalescer.ChangeKind.DELETED;
+import static text.file.indexing.engine.watcher.WatchEventCoalescer.ChangeKind.UPDATED;
+
+public class WatchEventCoalescerTest {
+
+    private static final long WINDOW = 100;
+
+    @Test
+    void testCoalesceEventsIntoNetChange() {
+        WatchEventCoalescer coalescer = new WatchEventCoalescer(WINDOW);
+        Path modified = Path.of("modified.txt");
+        Path created = Path.of("created.txt");
+        Path recreated = Path.of("recreated.txt");
+        for (int i = 0; i < 5; i++) {
+            coalescer.add(modified, UPDATED, i * 10);
+        }
+        coalescer.add(created, CREATED, 0);
+        coalescer.add(created, DELETED, 20);
+        coalescer.add(recreated, DELETED, 0);
+        coalescer.add(recreated, CREATED, 5);
+        coalescer.add(recreated, UPDATED, 10);
+
+        assertEquals(List.of(), coalescer.drainReady(100));
+        assertEquals(List.of(new WatchEventCoalescer.PathChange(recreated, CREATED, 0)), coalescer.drainReady(110));
+        assertEquals(List.of(new WatchEventCoalescer.PathChange(created, DELETED, 0),
+                new WatchEventCoalescer.PathChange(modified, UPDATED, 0)), coalescer.drainReady(140));
+        assertEquals(0, coalescer.pendingCount());
+    }
+
+    @Test
+    void testHoldChangeOfPathInFlight() {
+        WatchEventCoalescer coalescer = new WatchEventCoalescer(WINDOW);
+        Path path = Path.of("file.txt");
+        coalescer.add(path, UPDATED, 0);
+        assertEquals(1, coalescer.drainReady(100).size());
+
+        coalescer.add(path, DELETED, 100);
+
+        assertEquals(List.of(), coalescer.drainReady(300));
+        coalescer.completed(path);
+        assertEquals(List.of(new WatchEventCoalescer.PathChange(path, DELETED, 100)), coalescer.drainReady(300));
+    }
+}